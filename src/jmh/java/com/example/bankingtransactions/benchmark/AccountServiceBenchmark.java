@@ -0,0 +1,193 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.dto.AccountSummaryDto;
+import com.example.bankingtransactions.dto.DepositRequest;
+import com.example.bankingtransactions.dto.TransactionDto;
+import com.example.bankingtransactions.dto.TransactionPageDto;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.dto.WithdrawRequest;
+import com.example.bankingtransactions.enums.EngineMode;
+import com.example.bankingtransactions.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency percentiles of the service's money and history paths, single-threaded and with one
+ * thread per processor. With SKEWED access, 90% of operations go to the hottest 1% of accounts.
+ * <p>
+ * Every iteration ends by checking that each account's balance change matches its transaction history.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public abstract class AccountServiceBenchmark {
+
+    // Enough to never run out of money during a run
+    private static final long INITIAL_BALANCE = 100_000_000_000L;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+    private static final int HISTORY_SIZE = 10_000;
+
+    @Threads(1)
+    public static class SingleThreaded extends AccountServiceBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MultiThreaded extends AccountServiceBenchmark {
+    }
+
+    @Benchmark
+    public TransactionDto transferFunds(LedgerState state, Requests requests) {
+        return state.accountService.transferFunds(requests.nextTransfer());
+    }
+
+    // A retried transfer answered from the idempotency cache
+    @Benchmark
+    public TransactionDto replayTransfer(LedgerState state, Requests requests) {
+        int i = requests.nextReplay();
+        return state.accountService.transferFunds(requests.transfers[i], requests.idempotencyKeys[i]);
+    }
+
+    @Benchmark
+    public TransactionDto depositFunds(LedgerState state, Requests requests) {
+        return state.accountService.depositFunds(requests.nextDeposit());
+    }
+
+    @Benchmark
+    public TransactionDto withdrawFunds(LedgerState state, Requests requests) {
+        return state.accountService.withdrawFunds(requests.nextWithdrawal());
+    }
+
+    @Benchmark
+    public TransactionPageDto getTransactionHistory(LedgerState state) {
+        return state.accountService.getTransactionHistory(state.historyAccountId,
+                AccountService.DEFAULT_HISTORY_PAGE_SIZE, null, null, null);
+    }
+
+    // Read from running totals, so it should not slow down as the account's history grows
+    @Benchmark
+    public AccountSummaryDto getAccountSummary(LedgerState state) {
+        return state.accountService.getAccountSummary(state.historyAccountId);
+    }
+
+    @State(Scope.Benchmark)
+    public static class LedgerState {
+
+        @Param({"LOCKING", "PARTITIONED"})
+        public EngineMode mode;
+
+        @Param({"10000"})
+        public int accounts;
+
+        @Param({"UNIFORM", "SKEWED"})
+        public String access;
+
+        BenchmarkLedger ledger;
+        AccountService accountService;
+        UUID historyAccountId;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ledger = new BenchmarkLedger(mode, accounts, INITIAL_BALANCE);
+            accountService = ledger.accountService;
+            historyAccountId = ledger.accountIds[0];
+        }
+
+        @Setup(Level.Iteration)
+        public void startIteration() {
+            ledger.startIteration();
+            DepositRequest deposit = new DepositRequest();
+            deposit.setToAccountId(historyAccountId);
+            deposit.setAmount(AMOUNT);
+            for (int i = 0; i < HISTORY_SIZE; i++) {
+                accountService.depositFunds(deposit);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void checkConservation() {
+            ledger.checkConservation();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            ledger.close();
+        }
+    }
+
+    /**
+     * Requests built ahead of time for each thread, so the benchmarks measure the service rather than the
+     * random number generator.
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private static final int SIZE = 1 << 16;
+        // Few enough per thread that the idempotency cache never evicts them
+        private static final int REPLAYS = 1 << 10;
+
+        private final TransferRequest[] transfers = new TransferRequest[SIZE];
+        private final DepositRequest[] deposits = new DepositRequest[SIZE];
+        private final WithdrawRequest[] withdrawals = new WithdrawRequest[SIZE];
+        private final String[] idempotencyKeys = new String[REPLAYS];
+        private int next;
+        private int nextReplay;
+
+        @Setup(Level.Trial)
+        public void setUp(LedgerState state) {
+            UUID[] accountIds = state.ledger.accountIds;
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+            int hotAccounts = Math.max(2, accountIds.length / 100);
+            for (int i = 0; i < SIZE; i++) {
+                UUID from = pick(state.access, accountIds, hotAccounts, random);
+                UUID to;
+                do {
+                    to = pick(state.access, accountIds, hotAccounts, random);
+                } while (to.equals(from));
+
+                transfers[i] = new TransferRequest();
+                transfers[i].setFromAccountId(from);
+                transfers[i].setToAccountId(to);
+                transfers[i].setAmount(AMOUNT);
+                deposits[i] = new DepositRequest();
+                deposits[i].setToAccountId(to);
+                deposits[i].setAmount(AMOUNT);
+                withdrawals[i] = new WithdrawRequest();
+                withdrawals[i].setFromAccountId(from);
+                withdrawals[i].setAmount(AMOUNT);
+            }
+            for (int i = 0; i < REPLAYS; i++) {
+                idempotencyKeys[i] = UUID.randomUUID().toString();
+                state.accountService.transferFunds(transfers[i], idempotencyKeys[i]);
+            }
+        }
+
+        TransferRequest nextTransfer() {
+            return transfers[next++ & (SIZE - 1)];
+        }
+
+        DepositRequest nextDeposit() {
+            return deposits[next++ & (SIZE - 1)];
+        }
+
+        int nextReplay() {
+            return nextReplay++ & (REPLAYS - 1);
+        }
+
+        WithdrawRequest nextWithdrawal() {
+            return withdrawals[next++ & (SIZE - 1)];
+        }
+
+        private static UUID pick(String access, UUID[] accountIds, int hotAccounts, SplittableRandom random) {
+            if ("SKEWED".equals(access) && random.nextInt(10) < 9) {
+                return accountIds[random.nextInt(hotAccounts)];
+            }
+            return accountIds[random.nextInt(accountIds.length)];
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bankingtransactions.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import com.example.bankingtransactions.audit.AuditEvent;
+import com.example.bankingtransactions.audit.FileAuditLog;
+import com.example.bankingtransactions.config.AuditProperties;
+import com.example.bankingtransactions.enums.AuditEventType;
+import com.example.bankingtransactions.enums.AuditOverflowPolicy;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.util.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost to a request of leaving a record of a transfer: LOG writes the two INFO lines a transfer used to log through
+ * a synchronous file appender, while AUDIT_BLOCK and AUDIT_DROP publish one event to the audit trail under each
+ * overflow policy. Under BLOCK, throughput is bounded by the audit writer once its queue fills.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class AuditBenchmark {
+
+    public enum Sink {
+        LOG, AUDIT_BLOCK, AUDIT_DROP
+    }
+
+    @Param({"LOG", "AUDIT_BLOCK", "AUDIT_DROP"})
+    public Sink sink;
+
+    Path directory;
+    Logger logger;
+    FileAppender<ILoggingEvent> appender;
+    FileAuditLog auditLog;
+    Transaction transaction;
+
+    @Threads(1)
+    public static class SingleThreaded extends AuditBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MultiThreaded extends AuditBenchmark {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audit-benchmark");
+        transaction = new Transaction(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), 12_345,
+                TransactionType.TRANSFER, "Invoice 42", LocalDateTime.now());
+        if (sink == Sink.LOG) {
+            LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+            PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+            encoder.setContext(context);
+            encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p %t --- %logger : %m%n");
+            encoder.start();
+            appender = new FileAppender<>();
+            appender.setContext(context);
+            appender.setFile(directory.resolve("application.log").toString());
+            appender.setEncoder(encoder);
+            appender.start();
+            logger = context.getLogger(AuditBenchmark.class);
+            logger.setAdditive(false);
+            logger.setLevel(ch.qos.logback.classic.Level.INFO);
+            logger.addAppender(appender);
+        } else {
+            AuditProperties properties = new AuditProperties();
+            properties.setDirectory(directory.toString());
+            properties.setOverflowPolicy(sink == Sink.AUDIT_BLOCK ? AuditOverflowPolicy.BLOCK : AuditOverflowPolicy.DROP);
+            auditLog = new FileAuditLog(properties, new SimpleMeterRegistry());
+            auditLog.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        if (appender != null) {
+            logger.detachAppender(appender);
+            appender.stop();
+        }
+        if (auditLog != null) {
+            auditLog.stop();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void recordTransfer() {
+        long balance = 1_000_000;
+        if (sink == Sink.LOG) {
+            logger.info("Processing transfer of ${} from account {} to account {}", Money.format(transaction.getAmount()),
+                    transaction.getFromAccountId(), transaction.getToAccountId());
+            logger.info("Transfer successful. Transaction ID: {}. New account balances: Account {}: {}, Account {}: {}",
+                    transaction.getId(), transaction.getFromAccountId(), Money.format(balance),
+                    transaction.getToAccountId(), Money.format(balance));
+        } else {
+            auditLog.publish(AuditEvent.of(AuditEventType.TRANSFER, transaction, transaction.getFromAccountId(), balance));
+        }
+    }
+}
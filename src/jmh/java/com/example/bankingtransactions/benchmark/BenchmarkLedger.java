@@ -0,0 +1,160 @@
+package com.example.bankingtransactions.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.bankingtransactions.audit.NoOpAuditLog;
+import com.example.bankingtransactions.cluster.ShardRouter;
+import com.example.bankingtransactions.config.ClusterProperties;
+import com.example.bankingtransactions.config.EngineProperties;
+import com.example.bankingtransactions.config.FeedProperties;
+import com.example.bankingtransactions.config.HotAccountProperties;
+import com.example.bankingtransactions.config.IdempotencyProperties;
+import com.example.bankingtransactions.config.WorkerExecutors;
+import com.example.bankingtransactions.engine.LedgerEngine;
+import com.example.bankingtransactions.engine.LedgerOperations;
+import com.example.bankingtransactions.engine.LockingLedgerEngine;
+import com.example.bankingtransactions.engine.PartitionedLedgerEngine;
+import com.example.bankingtransactions.enums.EngineMode;
+import com.example.bankingtransactions.feed.BalanceFeed;
+import com.example.bankingtransactions.id.IdGenerator;
+import com.example.bankingtransactions.id.TimeOrderedIdGenerator;
+import com.example.bankingtransactions.idempotency.IdempotencyCache;
+import com.example.bankingtransactions.journal.LedgerJournal;
+import com.example.bankingtransactions.journal.NoOpLedgerJournal;
+import com.example.bankingtransactions.metrics.LedgerMetrics;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.ObjectTransactionRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import com.example.bankingtransactions.service.AccountService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The service wired by hand, without a Spring context, over an in-memory journal. Also checks that money is
+ * conserved: every account's balance change must match the transactions in its history.
+ */
+final class BenchmarkLedger {
+
+    final AccountRepository accountRepository;
+    final TransactionRepository transactionRepository = new ObjectTransactionRepository();
+    final AccountSummaryRepository accountSummaryRepository = new AccountSummaryRepository();
+    final AccountService accountService;
+    final LedgerOperations ledgerOperations;
+    final IdGenerator idGenerator = new TimeOrderedIdGenerator();
+    final ShardRouter shardRouter = new ShardRouter(new ClusterProperties(), idGenerator);
+    final UUID[] accountIds;
+
+    private final LedgerEngine ledgerEngine;
+    private final ExecutorService batchTransferExecutor;
+    private long[] startBalances;
+
+    BenchmarkLedger(EngineMode mode, int accounts, long initialBalance) {
+        this(mode, accounts, initialBalance, 0, 1);
+    }
+
+    /**
+     * Splits the balances of the first {@code hotAccounts} accounts over {@code subBalances} sub-balances each.
+     */
+    BenchmarkLedger(EngineMode mode, int accounts, long initialBalance, int hotAccounts, int subBalances) {
+        // Request logging would dominate the measurements
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        accountIds = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = UUID.randomUUID();
+        }
+        HotAccountProperties hotAccountProperties = new HotAccountProperties();
+        hotAccountProperties.setIds(Arrays.asList(accountIds).subList(0, hotAccounts));
+        hotAccountProperties.setSubBalances(subBalances);
+        accountRepository = new AccountRepository(hotAccountProperties);
+
+        LedgerJournal journal = new NoOpLedgerJournal();
+        ledgerOperations = new LedgerOperations(transactionRepository, journal, accountSummaryRepository,
+                idGenerator);
+        batchTransferExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        if (mode == EngineMode.PARTITIONED) {
+            PartitionedLedgerEngine engine = new PartitionedLedgerEngine(accountRepository, ledgerOperations,
+                    new EngineProperties());
+            engine.start();
+            ledgerEngine = engine;
+        } else {
+            ledgerEngine = new LockingLedgerEngine(accountRepository, ledgerOperations, batchTransferExecutor);
+        }
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LedgerMetrics metrics = new LedgerMetrics(registry, accountRepository, transactionRepository);
+        IdempotencyCache idempotencyCache = new IdempotencyCache(new IdempotencyProperties(), new ObjectMapper(),
+                registry);
+        accountService = new AccountService(accountRepository, transactionRepository, journal, ledgerEngine,
+                new ObjectMapper(), metrics, idempotencyCache, accountSummaryRepository,
+                shardRouter, ledgerOperations, new NoOpAuditLog(),
+                new BalanceFeed(accountRepository, shardRouter, new WorkerExecutors(new StandardEnvironment()),
+                        new FeedProperties(), registry),
+                Optional.empty());
+
+        for (int i = 0; i < accounts; i++) {
+            accountRepository.save(new Account(accountIds[i], "account-" + i, initialBalance, LocalDateTime.now(), 0));
+        }
+    }
+
+    /**
+     * Clears the history and remembers the current balances for {@link #checkConservation()}.
+     */
+    void startIteration() {
+        transactionRepository.deleteAll();
+        accountSummaryRepository.deleteAll();
+        startBalances = new long[accountIds.length];
+        for (int i = 0; i < accountIds.length; i++) {
+            startBalances[i] = accountRepository.findById(accountIds[i]).orElseThrow().getBalance();
+        }
+    }
+
+    void checkConservation() {
+        for (int i = 0; i < accountIds.length; i++) {
+            UUID accountId = accountIds[i];
+            long expected = startBalances[i];
+            List<Transaction> history = transactionRepository.findTransactionsByAccountId(accountId);
+            if (history != null) {
+                for (Transaction transaction : history) {
+                    if (accountId.equals(transaction.getToAccountId())) {
+                        expected += transaction.getAmount();
+                    }
+                    if (accountId.equals(transaction.getFromAccountId())) {
+                        expected -= transaction.getAmount();
+                    }
+                }
+            }
+            long actual = accountRepository.findById(accountId).orElseThrow().getBalance();
+            if (actual != expected) {
+                throw new IllegalStateException("Money not conserved for account " + accountId
+                        + ": balance " + actual + ", history implies " + expected);
+            }
+            long summarized = accountSummaryRepository.findById(accountId)
+                    .map(s -> s.getTotalDeposited() - s.getTotalWithdrawn() + s.getTotalTransferredIn() - s.getTotalTransferredOut())
+                    .orElse(0L);
+            if (actual - startBalances[i] != summarized) {
+                throw new IllegalStateException("Summary of account " + accountId + " implies a balance change of "
+                        + summarized + ", balance changed by " + (actual - startBalances[i]));
+            }
+        }
+    }
+
+    void close() throws InterruptedException {
+        if (ledgerEngine instanceof PartitionedLedgerEngine engine) {
+            engine.stop();
+        }
+        batchTransferExecutor.shutdown();
+    }
+}
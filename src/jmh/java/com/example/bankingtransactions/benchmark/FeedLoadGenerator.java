@@ -0,0 +1,198 @@
+package com.example.bankingtransactions.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens many balance feed subscriptions to a running application, then sends random transfers between the watched
+ * accounts over REST, keeping a fixed number in flight. It prints the rate of transfers and of balance events
+ * received, how many transactions were coalesced into later events, and percentiles of the delay from a transaction
+ * to the event announcing it, measured against the transaction's timestamp, so run it on the same host as the
+ * application. Run with:
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.example.bankingtransactions.benchmark.FeedLoadGenerator \
+ *     -Djmh.args="--subscribers=10000 --accounts=100 --seconds=20"
+ * </pre>
+ * Options, with their defaults: {@code --host=localhost}, {@code --port=8080}, {@code --accounts=100},
+ * {@code --subscribers=1000}, {@code --accounts-per-subscriber=1}, {@code --concurrency=16}, {@code --seconds=20}.
+ * Each subscription holds a connection, so the open file limit of both processes must allow for them.
+ */
+public final class FeedLoadGenerator {
+
+    private static final String TIMESTAMP_FIELD = "\"timestamp\":\"";
+    private static final String COALESCED_FIELD = "\"coalescedTransactions\":";
+    // Transaction timestamps are in the application's time zone
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private FeedLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "host", "localhost", "port", "8080", "accounts", "100", "subscribers", "1000",
+                "accounts-per-subscriber", "1", "concurrency", "16", "seconds", "20"));
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (!options.containsKey(option[0]) || option.length < 2) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            options.put(option[0], option[1]);
+        }
+        String baseUrl = "http://" + options.get("host") + ":" + options.get("port");
+        int subscribers = Integer.parseInt(options.get("subscribers"));
+        int accountsPerSubscriber = Integer.parseInt(options.get("accounts-per-subscriber"));
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        long seconds = Long.parseLong(options.get("seconds"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+        UUID[] accountIds = HttpLoadGenerator.createAccounts(http, baseUrl,
+                Integer.parseInt(options.get("accounts")));
+
+        Recorder lags = new Recorder(3);
+        AtomicLong events = new AtomicLong();
+        AtomicLong coalesced = new AtomicLong();
+        AtomicLong connected = new AtomicLong();
+        AtomicLong closed = new AtomicLong();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < subscribers; i++) {
+            StringBuilder query = new StringBuilder();
+            for (int j = 0; j < accountsPerSubscriber; j++) {
+                query.append(j == 0 ? "" : ",").append(accountIds[random.nextInt(accountIds.length)]);
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts/feed?accountIds="
+                            + query))
+                    .header("Accept", "text/event-stream")
+                    .build();
+            http.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(
+                    new EventSubscriber(lags, events, coalesced, connected)))
+                    .whenComplete((response, failure) -> closed.incrementAndGet());
+        }
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (connected.get() + closed.get() < subscribers && System.nanoTime() < waitUntil) {
+            Thread.sleep(100);
+        }
+        System.out.printf("%d subscriptions open, %d failed or closed; sending transfers for %d s%n",
+                connected.get(), closed.get(), seconds);
+        lags.reset();
+        events.set(0);
+        coalesced.set(0);
+
+        URI uri = URI.create(baseUrl + "/api/accounts/transfer");
+        AtomicLong transfers = new AtomicLong();
+        Semaphore window = new Semaphore(concurrency);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < deadline) {
+            window.acquire();
+            int from = random.nextInt(accountIds.length);
+            int to = random.nextInt(accountIds.length - 1);
+            String body = "{\"fromAccountId\":\"" + accountIds[from] + "\",\"toAccountId\":\""
+                    + accountIds[to >= from ? to + 1 : to] + "\",\"amount\":0.01,\"description\":\"feed test\"}";
+            http.sendAsync(HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        if (failure == null && response.statusCode() / 100 == 2) {
+                            transfers.incrementAndGet();
+                        }
+                        window.release();
+                    });
+        }
+        window.acquire(concurrency);
+        // Let the last events arrive
+        Thread.sleep(1000);
+
+        Histogram histogram = lags.getIntervalHistogram();
+        System.out.printf("%.0f transfers/s, %.0f events/s received, %d transactions coalesced%n",
+                (double) transfers.get() / seconds, (double) events.get() / seconds, coalesced.get());
+        System.out.printf("  Delay to event (ms): p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMaxValue() / 1e3);
+        System.exit(0);
+    }
+
+    // Reads one subscription's events, recording the delay of those that carry a transaction
+    private static final class EventSubscriber implements Flow.Subscriber<String> {
+
+        private final Recorder lags;
+        private final AtomicLong events;
+        private final AtomicLong coalesced;
+        private final AtomicLong connected;
+        private boolean receiving;
+
+        EventSubscriber(Recorder lags, AtomicLong events, AtomicLong coalesced, AtomicLong connected) {
+            this.lags = lags;
+            this.events = events;
+            this.coalesced = coalesced;
+            this.connected = connected;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (!line.startsWith("data:")) {
+                return;
+            }
+            if (!receiving) {
+                // The first event is the current balance
+                receiving = true;
+                connected.incrementAndGet();
+            }
+            events.incrementAndGet();
+            int coalescedAt = line.indexOf(COALESCED_FIELD);
+            if (coalescedAt >= 0) {
+                int start = coalescedAt + COALESCED_FIELD.length();
+                int end = start;
+                while (end < line.length() && Character.isDigit(line.charAt(end))) {
+                    end++;
+                }
+                coalesced.addAndGet(Long.parseLong(line, start, end, 10));
+            }
+            int timestampAt = line.indexOf(TIMESTAMP_FIELD);
+            if (timestampAt >= 0) {
+                int start = timestampAt + TIMESTAMP_FIELD.length();
+                LocalDateTime timestamp = LocalDateTime.parse(line.substring(start, line.indexOf('"', start)));
+                lags.recordValue(Math.max(0, ChronoUnit.MICROS.between(timestamp.atZone(ZONE).toInstant(),
+                        Instant.now())));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.enums.HistoryStore;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by a million transfers in each history store, reported as the {@code bytesPerTransaction} counter,
+ * alongside the time taken to store them. Transactions are built as requests would build them, each with its own
+ * id and description, so the object store pays for everything it keeps.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class HistoryMemoryBenchmark {
+
+    private static final int TRANSACTIONS = 1_000_000;
+
+    @Param({"OBJECTS", "COLUMNAR"})
+    public HistoryStore store;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private UUID[] accountIds;
+    private TransactionRepository transactionRepository;
+    private long heapBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountIds = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = UUID.randomUUID();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        transactionRepository = null;
+        heapBefore = usedHeap();
+        transactionRepository = RepositoryBenchmark.newTransactionRepository(store);
+    }
+
+    @Benchmark
+    public TransactionRepository saveTransfers() {
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            transactionRepository.save(new Transaction(UUID.randomUUID(), accountIds[from], accountIds[to],
+                    random.nextLong(1, 100_000), TransactionType.TRANSFER, "Invoice " + (i % 1000),
+                    start.plusNanos(i * 1000L)));
+        }
+        return transactionRepository;
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureFootprint(Footprint footprint) {
+        footprint.bytesPerTransaction = (usedHeap() - heapBefore) / TRANSACTIONS;
+    }
+
+    private long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerTransaction;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.dto.DepositRequest;
+import com.example.bankingtransactions.dto.TransactionDto;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.dto.WithdrawRequest;
+import com.example.bankingtransactions.enums.EngineMode;
+import com.example.bankingtransactions.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every thread moving money in and out of one merchant account, with its balance kept whole
+ * ({@code subBalances=0}) or split over sub-balances. Payments from other accounts and deposits only credit the
+ * merchant account; payouts debit it, borrowing across sub-balances when the one they take runs short.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class HotAccountBenchmark {
+
+    // Enough to never run out of money during a run
+    private static final long INITIAL_BALANCE = 100_000_000_000L;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"LOCKING", "PARTITIONED"})
+    public EngineMode mode;
+
+    @Param({"0", "16"})
+    public int subBalances;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private BenchmarkLedger ledger;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ledger = subBalances > 0
+                ? new BenchmarkLedger(mode, accounts, INITIAL_BALANCE, 1, subBalances)
+                : new BenchmarkLedger(mode, accounts, INITIAL_BALANCE);
+        accountService = ledger.accountService;
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        ledger.startIteration();
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkConservation() {
+        ledger.checkConservation();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        ledger.close();
+    }
+
+    @Benchmark
+    public TransactionDto payMerchant(Requests requests) {
+        return accountService.transferFunds(requests.nextPayment());
+    }
+
+    @Benchmark
+    public TransactionDto depositToMerchant(Requests requests) {
+        return accountService.depositFunds(requests.deposit);
+    }
+
+    @Benchmark
+    public TransactionDto withdrawFromMerchant(Requests requests) {
+        return accountService.withdrawFunds(requests.withdrawal);
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private static final int SIZE = 1 << 12;
+
+        private final TransferRequest[] payments = new TransferRequest[SIZE];
+        private final DepositRequest deposit = new DepositRequest();
+        private final WithdrawRequest withdrawal = new WithdrawRequest();
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(HotAccountBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+            UUID[] accountIds = benchmark.ledger.accountIds;
+            for (int i = 0; i < SIZE; i++) {
+                payments[i] = new TransferRequest();
+                payments[i].setFromAccountId(accountIds[1 + random.nextInt(accountIds.length - 1)]);
+                payments[i].setToAccountId(accountIds[0]);
+                payments[i].setAmount(AMOUNT);
+            }
+            deposit.setToAccountId(accountIds[0]);
+            deposit.setAmount(AMOUNT);
+            withdrawal.setFromAccountId(accountIds[0]);
+            withdrawal.setAmount(AMOUNT);
+        }
+
+        TransferRequest nextPayment() {
+            return payments[next++ & (SIZE - 1)];
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends random transfers to a running application over REST, keeping a fixed number of requests in flight, at each
+ * of a series of concurrency levels in turn. For each level it prints throughput and latency percentiles of the
+ * successful requests, the requests shed by admission control or failed, and the most requests the server reported
+ * in progress at once. Run it against the application started
+ * with and without {@code --spring.threads.virtual.enabled=true} to compare the two modes; with the journal enabled,
+ * requests wait for the group commit, which is where platform threads run out first. Run with:
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.example.bankingtransactions.benchmark.HttpLoadGenerator \
+ *     -Djmh.args="--concurrency=50,200,800,1600 --seconds=20"
+ * </pre>
+ * Options, with their defaults: {@code --host=localhost}, {@code --port=8080}, {@code --accounts=1000},
+ * {@code --concurrency=50,200,800}, {@code --seconds=20}.
+ */
+public final class HttpLoadGenerator {
+
+    private static final long INITIAL_BALANCE_DOLLARS = 1_000_000_000L;
+    private static final long SAMPLE_INTERVAL_MS = 100;
+
+    private HttpLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "host", "localhost", "port", "8080", "accounts", "1000", "concurrency", "50,200,800",
+                "seconds", "20"));
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (!options.containsKey(option[0]) || option.length < 2) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            options.put(option[0], option[1]);
+        }
+        String baseUrl = "http://" + options.get("host") + ":" + options.get("port");
+        int[] levels = Arrays.stream(options.get("concurrency").split(",")).mapToInt(Integer::parseInt).toArray();
+        long seconds = Long.parseLong(options.get("seconds"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+        UUID[] accountIds = createAccounts(http, baseUrl, Integer.parseInt(options.get("accounts")));
+        System.out.printf("Created %d accounts; sending transfers for %d s at each concurrency level%n",
+                accountIds.length, seconds);
+
+        for (int concurrency : levels) {
+            run(http, baseUrl, accountIds, concurrency, seconds);
+        }
+        executor.shutdown();
+    }
+
+    private static void run(HttpClient http, String baseUrl, UUID[] accountIds, int concurrency, long seconds)
+            throws InterruptedException {
+        URI uri = URI.create(baseUrl + "/api/accounts/transfer");
+        Recorder latencies = new Recorder(3);
+        AtomicLong failures = new AtomicLong();
+        AtomicLong shed = new AtomicLong();
+        PeakSampler sampler = new PeakSampler(http, URI.create(baseUrl
+                + "/actuator/metrics/http.server.requests.active"));
+        Thread samplerThread = new Thread(sampler, "active-request-sampler");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+
+        Semaphore window = new Semaphore(concurrency);
+        SplittableRandom random = new SplittableRandom(concurrency);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < deadline) {
+            window.acquire();
+            int from = random.nextInt(accountIds.length);
+            int to = random.nextInt(accountIds.length - 1);
+            String body = "{\"fromAccountId\":\"" + accountIds[from] + "\",\"toAccountId\":\""
+                    + accountIds[to >= from ? to + 1 : to] + "\",\"amount\":0.01,\"description\":\"load test\"}";
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            long start = System.nanoTime();
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (failure == null && response.statusCode() == 429) {
+                    shed.incrementAndGet();
+                } else if (failure != null || response.statusCode() / 100 != 2) {
+                    failures.incrementAndGet();
+                } else {
+                    latencies.recordValue(System.nanoTime() - start);
+                }
+                window.release();
+            });
+        }
+        // Let the last requests finish
+        window.acquire(concurrency);
+        samplerThread.interrupt();
+        samplerThread.join();
+
+        Histogram histogram = latencies.getIntervalHistogram();
+        System.out.printf("Concurrency %d: %.0f requests/s, %d shed with 429, %d failed%n", concurrency,
+                (double) histogram.getTotalCount() / seconds, shed.get(), failures.get());
+        System.out.printf("  Latency (ms): p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getMaxValue() / 1e6);
+        System.out.printf("  Most requests in progress on the server: %d%n", sampler.peak);
+    }
+
+    static UUID[] createAccounts(HttpClient http, String baseUrl, int count) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        URI uri = URI.create(baseUrl + "/api/accounts");
+        UUID[] accountIds = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            String body = "{\"name\":\"Load test " + i + "\",\"initialBalance\":" + INITIAL_BALANCE_DOLLARS + "}";
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Could not create an account: " + response.body());
+            }
+            accountIds[i] = UUID.fromString(mapper.readTree(response.body()).get("id").asText());
+        }
+        return accountIds;
+    }
+
+    // Polls the server's count of requests in progress and keeps the highest seen. The poll is itself a request, so
+    // when every request thread is busy it waits its turn too
+    private static final class PeakSampler implements Runnable {
+
+        private final HttpClient http;
+        private final URI uri;
+        private final ObjectMapper mapper = new ObjectMapper();
+        private volatile long peak;
+
+        PeakSampler(HttpClient http, URI uri) {
+            this.http = http;
+            this.uri = uri;
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri).build(),
+                            HttpResponse.BodyHandlers.ofString());
+                    for (JsonNode measurement : mapper.readTree(response.body()).path("measurements")) {
+                        if ("ACTIVE_TASKS".equals(measurement.path("statistic").asText())) {
+                            // Less the sampling request itself
+                            peak = Math.max(peak, measurement.path("value").asLong() - 1);
+                        }
+                    }
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    // Missed samples only make the peak an underestimate
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.enums.IdStrategy;
+import com.example.bankingtransactions.id.IdGenerator;
+import com.example.bankingtransactions.id.RandomIdGenerator;
+import com.example.bankingtransactions.id.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating an id under each strategy. RANDOM draws from the shared {@code SecureRandom}, so its threads
+ * contend for one lock, while TIME_ORDERED keeps its state per thread and should scale with them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class IdGeneratorBenchmark {
+
+    @Param({"RANDOM", "TIME_ORDERED"})
+    public IdStrategy strategy;
+
+    IdGenerator idGenerator;
+
+    @Threads(1)
+    public static class SingleThreaded extends IdGeneratorBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MultiThreaded extends IdGeneratorBenchmark {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        idGenerator = strategy == IdStrategy.RANDOM ? new RandomIdGenerator() : new TimeOrderedIdGenerator();
+    }
+
+    @Benchmark
+    public UUID newId() {
+        return idGenerator.newId();
+    }
+}
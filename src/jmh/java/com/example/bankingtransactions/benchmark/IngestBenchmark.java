@@ -0,0 +1,181 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.BankingApp;
+import com.example.bankingtransactions.dto.AccountDto;
+import com.example.bankingtransactions.dto.CreateAccountRequest;
+import com.example.bankingtransactions.enums.IngestStatus;
+import com.example.bankingtransactions.ingest.BinaryIngestServer;
+import com.example.bankingtransactions.ingest.IngestClient;
+import com.example.bankingtransactions.ingest.IngestProtocol.Request;
+import com.example.bankingtransactions.ingest.IngestProtocol.Response;
+import com.example.bankingtransactions.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same transfer sent to a running application over REST and over the binary ingestion protocol, one request
+ * at a time per connection, and over the binary protocol with {@link #PIPELINE_DEPTH} requests in flight per
+ * connection. Unlike the other benchmarks this starts the whole application, so the numbers include the network
+ * stack, parsing and serialization.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+
+    static final int PIPELINE_DEPTH = 64;
+    // Enough to never run out of money during a run
+    private static final long INITIAL_BALANCE = 100_000_000_000L;
+
+    @Param({"1000"})
+    public int accounts;
+
+    private ConfigurableApplicationContext context;
+    private UUID[] accountIds;
+    private String transferUrl;
+    private int ingestPort;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SpringApplication.run(BankingApp.class,
+                "--server.port=0",
+                "--banking.ingest.enabled=true",
+                "--banking.ingest.port=0",
+                // Request logging would dominate the measurements
+                "--logging.level.root=WARN");
+        transferUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort()
+                + "/api/accounts/transfer";
+        ingestPort = context.getBean(BinaryIngestServer.class).getPort();
+
+        AccountService accountService = context.getBean(AccountService.class);
+        accountIds = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            CreateAccountRequest request = new CreateAccountRequest();
+            request.setName("Account " + i);
+            request.setInitialBalance(new BigDecimal(INITIAL_BALANCE).movePointLeft(2));
+            AccountDto account = accountService.createAccount(request);
+            accountIds[i] = account.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Response binaryTransfer(Binary binary) throws Exception {
+        return binary.check(binary.client.send(binary.nextTransfer()).get());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public void binaryPipelinedTransfer(Binary binary) throws Exception {
+        CompletableFuture<?>[] responses = binary.inFlight;
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            responses[i] = binary.client.send(binary.nextTransfer()).thenApply(binary::check);
+        }
+        CompletableFuture.allOf(responses).get();
+    }
+
+    @Benchmark
+    public byte[] restTransfer(Rest rest) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) rest.url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(rest.nextTransfer());
+        }
+        if (connection.getResponseCode() != 200) {
+            throw new IllegalStateException("Transfer failed with " + connection.getResponseCode());
+        }
+        // Reading the whole body returns the connection to the keep-alive cache
+        try (InputStream in = connection.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static UUID[] randomPair(SplittableRandom random, UUID[] accountIds) {
+        int from = random.nextInt(accountIds.length);
+        int to = random.nextInt(accountIds.length - 1);
+        return new UUID[]{accountIds[from], accountIds[to >= from ? to + 1 : to]};
+    }
+
+    @State(Scope.Thread)
+    public static class Binary {
+
+        private IngestClient client;
+        private final CompletableFuture<?>[] inFlight = new CompletableFuture<?>[PIPELINE_DEPTH];
+        private UUID[] accountIds;
+        private SplittableRandom random;
+        private long nextRequestId;
+
+        @Setup(Level.Trial)
+        public void setUp(IngestBenchmark benchmark) throws IOException {
+            client = new IngestClient("localhost", benchmark.ingestPort);
+            accountIds = benchmark.accountIds;
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+
+        Request nextTransfer() {
+            UUID[] pair = randomPair(random, accountIds);
+            return Request.transfer(nextRequestId++, pair[0], pair[1], 1, "benchmark", null);
+        }
+
+        Response check(Response response) {
+            if (response.status() != IngestStatus.OK) {
+                throw new IllegalStateException("Transfer failed with " + response.status() + ": " + response.message());
+            }
+            return response;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Rest {
+
+        private URL url;
+        private UUID[] accountIds;
+        private SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp(IngestBenchmark benchmark) throws IOException {
+            url = URI.create(benchmark.transferUrl).toURL();
+            accountIds = benchmark.accountIds;
+            random = new SplittableRandom(Thread.currentThread().getId());
+        }
+
+        // HttpURLConnection sends the headers and body in one write. The JDK HttpClient writes them separately, which
+        // stalls each request on delayed acknowledgements
+        byte[] nextTransfer() {
+            UUID[] pair = randomPair(random, accountIds);
+            String body = "{\"fromAccountId\":\"" + pair[0] + "\",\"toAccountId\":\"" + pair[1]
+                    + "\",\"amount\":0.01,\"description\":\"benchmark\"}";
+            return body.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
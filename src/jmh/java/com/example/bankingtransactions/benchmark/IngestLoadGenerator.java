@@ -0,0 +1,142 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.enums.IngestStatus;
+import com.example.bankingtransactions.ingest.IngestClient;
+import com.example.bankingtransactions.ingest.IngestProtocol.Request;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends random transfers to a running application over the binary ingestion protocol for a fixed time, keeping a
+ * number of requests in flight on each connection, then prints throughput, latency percentiles and the count of
+ * each response status. Accounts are created over REST first. Run with:
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec -Dbenchmark.main=com.example.bankingtransactions.benchmark.IngestLoadGenerator \
+ *     -Djmh.args="--connections=4 --depth=64 --seconds=30"
+ * </pre>
+ * Options, with their defaults: {@code --host=localhost}, {@code --http-port=8080}, {@code --port=9090},
+ * {@code --accounts=1000}, {@code --connections=4}, {@code --depth=64}, {@code --seconds=30}.
+ */
+public final class IngestLoadGenerator {
+
+    private static final long INITIAL_BALANCE_DOLLARS = 1_000_000_000L;
+
+    private IngestLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "host", "localhost", "http-port", "8080", "port", "9090", "accounts", "1000",
+                "connections", "4", "depth", "64", "seconds", "30"));
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (!options.containsKey(option[0]) || option.length < 2) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            options.put(option[0], option[1]);
+        }
+        String host = options.get("host");
+        int connections = Integer.parseInt(options.get("connections"));
+        int depth = Integer.parseInt(options.get("depth"));
+        long seconds = Long.parseLong(options.get("seconds"));
+
+        UUID[] accountIds = createAccounts(host, Integer.parseInt(options.get("http-port")),
+                Integer.parseInt(options.get("accounts")));
+        System.out.printf("Created %d accounts; sending transfers on %d connections, %d in flight each, for %d s%n",
+                accountIds.length, connections, depth, seconds);
+
+        Recorder latencies = new Recorder(3);
+        AtomicLongArray statusCounts = new AtomicLongArray(IngestStatus.values().length);
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> senders = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            IngestClient client = new IngestClient(host, Integer.parseInt(options.get("port")));
+            SplittableRandom random = new SplittableRandom(c);
+            Thread sender = new Thread(() -> {
+                Semaphore window = new Semaphore(depth);
+                long requestId = 0;
+                try (client) {
+                    while (System.nanoTime() < deadline) {
+                        window.acquire();
+                        int from = random.nextInt(accountIds.length);
+                        int to = random.nextInt(accountIds.length - 1);
+                        Request request = Request.transfer(requestId++, accountIds[from],
+                                accountIds[to >= from ? to + 1 : to], 1, "load test", null);
+                        long start = System.nanoTime();
+                        client.send(request).whenComplete((response, failure) -> {
+                            if (failure != null) {
+                                failures.incrementAndGet();
+                            } else {
+                                latencies.recordValue(System.nanoTime() - start);
+                                statusCounts.incrementAndGet(response.status().ordinal());
+                            }
+                            window.release();
+                        });
+                    }
+                    // Let the last requests finish
+                    window.acquire(depth);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, "load-" + c);
+            sender.start();
+            senders.add(sender);
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        Histogram histogram = latencies.getIntervalHistogram();
+        System.out.printf("%d requests in %d s: %.0f requests/s%n", histogram.getTotalCount(), seconds,
+                (double) histogram.getTotalCount() / seconds);
+        System.out.printf("Latency (us): p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+        Map<IngestStatus, Long> counts = new EnumMap<>(IngestStatus.class);
+        for (IngestStatus status : IngestStatus.values()) {
+            if (statusCounts.get(status.ordinal()) > 0) {
+                counts.put(status, statusCounts.get(status.ordinal()));
+            }
+        }
+        System.out.println("Statuses: " + counts + (failures.get() > 0 ? ", connection failures: " + failures : ""));
+    }
+
+    private static UUID[] createAccounts(String host, int httpPort, int count) throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        ObjectMapper mapper = new ObjectMapper();
+        URI uri = URI.create("http://" + host + ":" + httpPort + "/api/accounts");
+        UUID[] accountIds = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            String body = "{\"name\":\"Load test " + i + "\",\"initialBalance\":" + INITIAL_BALANCE_DOLLARS + "}";
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Could not create an account: " + response.body());
+            }
+            accountIds[i] = UUID.fromString(mapper.readTree(response.body()).get("id").asText());
+        }
+        return accountIds;
+    }
+}
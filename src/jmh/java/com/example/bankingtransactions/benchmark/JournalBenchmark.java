@@ -0,0 +1,79 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.config.JournalProperties;
+import com.example.bankingtransactions.enums.FsyncPolicy;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.journal.MappedLedgerJournal;
+import com.example.bankingtransactions.model.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of journaling a transfer and waiting until it is durable under each fsync policy. GROUP should approach
+ * OS throughput as threads are added, while PER_OP pays a disk flush per operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class JournalBenchmark {
+
+    @Param({"PER_OP", "GROUP", "OS"})
+    public FsyncPolicy fsyncPolicy;
+
+    Path directory;
+    MappedLedgerJournal journal;
+
+    @Threads(1)
+    public static class SingleThreaded extends JournalBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MultiThreaded extends JournalBenchmark {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        JournalProperties properties = new JournalProperties();
+        properties.setDirectory(directory.toString());
+        properties.setFsyncPolicy(fsyncPolicy);
+        journal = new MappedLedgerJournal(properties);
+        journal.recover(0, record -> {
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public long appendTransfer(Transfer transfer) {
+        long offset = journal.appendTransaction(transfer.transaction);
+        journal.awaitDurable(offset);
+        return offset;
+    }
+
+    @State(Scope.Thread)
+    public static class Transfer {
+
+        final Transaction transaction = new Transaction(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                100, TransactionType.TRANSFER, "benchmark", LocalDateTime.now());
+    }
+}
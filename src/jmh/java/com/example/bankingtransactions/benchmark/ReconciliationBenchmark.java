@@ -0,0 +1,80 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.config.ReconciliationProperties;
+import com.example.bankingtransactions.dto.ReconciliationReportDto;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.enums.EngineMode;
+import com.example.bankingtransactions.reconciliation.LedgerReconciler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full reconciliation run over accounts with a million history entries between them, on 1 to 8 threads. The run
+ * should take less time with more threads, up to the number of processors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ReconciliationBenchmark {
+
+    private static final long INITIAL_BALANCE = 100_000_000L;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({"500000"})
+    public int transfers;
+
+    private BenchmarkLedger ledger;
+    private LedgerReconciler reconciler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ledger = new BenchmarkLedger(EngineMode.LOCKING, accounts, INITIAL_BALANCE);
+        for (UUID accountId : ledger.accountIds) {
+            ledger.accountSummaryRepository.open(accountId, INITIAL_BALANCE);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        TransferRequest request = new TransferRequest();
+        request.setAmount(AMOUNT);
+        for (int i = 0; i < transfers; i++) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            request.setFromAccountId(ledger.accountIds[from]);
+            request.setToAccountId(ledger.accountIds[to]);
+            ledger.accountService.transferFunds(request);
+        }
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.setParallelism(parallelism);
+        reconciler = new LedgerReconciler(ledger.accountRepository, ledger.transactionRepository,
+                ledger.accountSummaryRepository, ledger.ledgerOperations, ledger.shardRouter, properties,
+                new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        reconciler.stop();
+        ledger.close();
+    }
+
+    @Benchmark
+    public ReconciliationReportDto reconcile() {
+        ReconciliationReportDto report = reconciler.reconcile();
+        if (report.getDriftedAccounts() > 0 || !Boolean.TRUE.equals(report.getConserved())) {
+            throw new IllegalStateException(report.getMessage());
+        }
+        return report;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bankingtransactions.benchmark;
+
+import com.example.bankingtransactions.enums.HistoryStore;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.model.TransactionPage;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.ColumnarTransactionRepository;
+import com.example.bankingtransactions.repository.ObjectTransactionRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the repository lookups underneath every service call: account lookup, taking an account lock and
+ * reading a page of history.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class RepositoryBenchmark {
+
+    private static final int HISTORY_SIZE = 100_000;
+
+    @Param({"10000", "1000000"})
+    public int accounts;
+
+    @Param({"OBJECTS", "COLUMNAR"})
+    public HistoryStore store;
+
+    AccountRepository accountRepository;
+    TransactionRepository transactionRepository;
+    UUID[] accountIds;
+
+    @Threads(1)
+    public static class SingleThreaded extends RepositoryBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MultiThreaded extends RepositoryBenchmark {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountRepository = new AccountRepository();
+        transactionRepository = newTransactionRepository(store);
+        accountIds = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = UUID.randomUUID();
+            accountRepository.save(new Account(accountIds[i], "account-" + i, 0, LocalDateTime.now(), 0));
+        }
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            transactionRepository.save(new Transaction(UUID.randomUUID(), null, accountIds[0], 1,
+                    TransactionType.DEPOSIT, null, start.plusNanos(i * 1000L)));
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> findById(Cursor cursor) {
+        return accountRepository.findById(accountIds[cursor.next(accountIds.length)]);
+    }
+
+    @Benchmark
+    public long withAccountLock(Cursor cursor) {
+        Account account = accountRepository.findById(accountIds[cursor.next(accountIds.length)]).orElseThrow();
+        return accountRepository.withAccountLock(account.getId(), account::getBalance);
+    }
+
+    @Benchmark
+    public TransactionPage findPage() {
+        return transactionRepository.findPage(accountIds[0], null, null, null, 50);
+    }
+
+    static TransactionRepository newTransactionRepository(HistoryStore store) {
+        return store == HistoryStore.COLUMNAR ? new ColumnarTransactionRepository() : new ObjectTransactionRepository();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+}
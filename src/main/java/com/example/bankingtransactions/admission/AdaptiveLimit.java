@@ -0,0 +1,127 @@
+package com.example.bankingtransactions.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows latency, in the style of a gradient limiter. Completed requests are timed, and once
+ * per window the limit is multiplied by the ratio of the long-run average latency, with some tolerance, to the
+ * window's average, which is 1 until latency rises and shrinks the limit in proportion once it does, and then raised
+ * by its square root, so it keeps probing upwards while latency holds. Changes are smoothed over several windows.
+ * <p>
+ * The limit only rises while it is at least half used, so a quiet period does not leave it too high to protect
+ * against the next burst. The long-run average follows the window's slowly, and quickly back down after overload.
+ */
+final class AdaptiveLimit {
+
+    // Windows with fewer samples are merged into the next one
+    private static final int MIN_SAMPLES = 10;
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_RUN_SMOOTHING = 0.05;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Most requests in progress at once during the current window
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder sampledNanos = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final ReentrantLock windowLock = new ReentrantLock();
+    private volatile int limit;
+    private volatile long windowEnd;
+
+    // Guarded by windowLock
+    private double estimatedLimit;
+    private double longRunNanos;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, long windowNanos) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Admission limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.windowNanos = windowNanos;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+        this.windowEnd = System.nanoTime() + windowNanos;
+    }
+
+    /**
+     * Counts a request in progress, or returns false if the limit has been reached.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > peakInFlight.get()) {
+                    peakInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request started by a successful {@link #tryAcquire()}, given how long it took, or -1 to leave it out of
+     * the latency samples.
+     */
+    void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        if (latencyNanos < 0) {
+            return;
+        }
+        sampledNanos.add(latencyNanos);
+        samples.increment();
+        long now = System.nanoTime();
+        if (now - windowEnd >= 0 && windowLock.tryLock()) {
+            try {
+                if (now - windowEnd >= 0) {
+                    windowEnd = now + windowNanos;
+                    adjust();
+                }
+            } finally {
+                windowLock.unlock();
+            }
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void adjust() {
+        if (samples.sum() < MIN_SAMPLES) {
+            return;
+        }
+        double recentNanos = (double) sampledNanos.sumThenReset() / samples.sumThenReset();
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        if (longRunNanos == 0) {
+            longRunNanos = recentNanos;
+        } else {
+            longRunNanos += (recentNanos - longRunNanos) * LONG_RUN_SMOOTHING;
+            if (longRunNanos > 2 * recentNanos) {
+                longRunNanos *= 0.9;
+            }
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRunNanos / recentNanos));
+        if (gradient == 1.0 && peak < estimatedLimit / 2) {
+            return;
+        }
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit + (target - estimatedLimit) * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bankingtransactions.admission;
+
+import com.example.bankingtransactions.config.AdmissionProperties;
+import com.example.bankingtransactions.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+/**
+ * Admits requests that change the ledger, rejecting the rest with {@link TooManyRequestsException} at once rather
+ * than letting them queue on account locks and the journal. Requests in progress are bounded overall by an
+ * {@link AdaptiveLimit} that falls as latency rises, and for each account involved by a fixed limit, so a burst on
+ * one account is turned away without using up the capacity left for the others. Accounts share per-account counts
+ * in stripes, so an account occasionally shares its count with a busy one.
+ */
+@Component
+public class AdmissionControl {
+
+    // Must be a power of two
+    private static final int ACCOUNT_STRIPES = 16384;
+
+    private final boolean enabled;
+    private final int maxInFlightPerAccount;
+    private final AdaptiveLimit limit;
+    private final AtomicIntegerArray accountsInFlight = new AtomicIntegerArray(ACCOUNT_STRIPES);
+    private final Counter limitRejections;
+    private final Counter accountRejections;
+
+    public AdmissionControl(AdmissionProperties properties, MeterRegistry registry) {
+        if (properties.getMaxInFlightPerAccount() < 1) {
+            throw new IllegalArgumentException("banking.admission.max-in-flight-per-account must be at least 1");
+        }
+        this.enabled = properties.isEnabled();
+        this.maxInFlightPerAccount = properties.getMaxInFlightPerAccount();
+        this.limit = new AdaptiveLimit(properties.getInitialLimit(), properties.getMinLimit(),
+                properties.getMaxLimit(), properties.getLatencyTolerance(),
+                TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs()));
+        Gauge.builder("ledger.admission.limit", limit, AdaptiveLimit::getLimit)
+                .description("Requests changing the ledger that may be in progress at once")
+                .register(registry);
+        Gauge.builder("ledger.admission.in.flight", limit, AdaptiveLimit::getInFlight)
+                .description("Requests changing the ledger in progress")
+                .register(registry);
+        this.limitRejections = rejections(registry, "limit");
+        this.accountRejections = rejections(registry, "account");
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("ledger.admission.rejected")
+                .description("Requests rejected because too many were in progress overall or on one account")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /**
+     * Runs the operation if it is admitted.
+     *
+     * @param accountIds accounts the operation involves, which may repeat
+     * @throws TooManyRequestsException if too many requests are in progress overall or on one of the accounts
+     */
+    public <T> T admit(Collection<UUID> accountIds, Supplier<T> operation) {
+        return admit(accountIds, true, operation);
+    }
+
+    /**
+     * Runs a batch if it is admitted. A batch takes one place in the overall limit, but its latency, which grows
+     * with its size, does not adjust the limit.
+     *
+     * @throws TooManyRequestsException if too many requests are in progress overall or on one of the accounts
+     */
+    public <T> T admitBatch(Collection<UUID> accountIds, Supplier<T> operation) {
+        return admit(accountIds, false, operation);
+    }
+
+    private <T> T admit(Collection<UUID> accountIds, boolean sampled, Supplier<T> operation) {
+        if (!enabled) {
+            return operation.get();
+        }
+        int[] stripes = stripesOf(accountIds);
+        for (int i = 0; i < stripes.length; i++) {
+            if (accountsInFlight.incrementAndGet(stripes[i]) > maxInFlightPerAccount) {
+                release(stripes, i + 1);
+                accountRejections.increment();
+                throw new TooManyRequestsException("Too many requests in progress for one of the accounts. "
+                        + "Try again later");
+            }
+        }
+        if (!limit.tryAcquire()) {
+            release(stripes, stripes.length);
+            limitRejections.increment();
+            throw new TooManyRequestsException("Too many requests in progress. Try again later");
+        }
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            limit.release(sampled ? System.nanoTime() - start : -1);
+            release(stripes, stripes.length);
+        }
+    }
+
+    private void release(int[] stripes, int count) {
+        for (int i = 0; i < count; i++) {
+            accountsInFlight.decrementAndGet(stripes[i]);
+        }
+    }
+
+    // Distinct stripes of the accounts, in ascending order
+    private static int[] stripesOf(Collection<UUID> accountIds) {
+        int[] stripes = new int[accountIds.size()];
+        int i = 0;
+        for (UUID accountId : accountIds) {
+            stripes[i++] = stripeOf(accountId);
+        }
+        Arrays.sort(stripes);
+        int distinct = 0;
+        for (int j = 0; j < stripes.length; j++) {
+            if (j == 0 || stripes[j] != stripes[j - 1]) {
+                stripes[distinct++] = stripes[j];
+            }
+        }
+        return Arrays.copyOf(stripes, distinct);
+    }
+
+    private static int stripeOf(UUID accountId) {
+        int h = accountId.hashCode();
+        return (h ^ (h >>> 16)) & (ACCOUNT_STRIPES - 1);
+    }
+}
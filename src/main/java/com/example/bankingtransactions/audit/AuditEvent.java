@@ -0,0 +1,26 @@
+package com.example.bankingtransactions.audit;
+
+import com.example.bankingtransactions.enums.AuditEventType;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One entry in the audit trail: an account opened with a balance, or a transaction and the balance it left on the
+ * account it was requested for, the source of a transfer. Only references and longs the caller already holds are
+ * captured; formatting happens on the audit writer's thread.
+ */
+public record AuditEvent(AuditEventType type, LocalDateTime time, UUID accountId, long balance,
+                         Transaction transaction) {
+
+    public static AuditEvent accountCreated(Account account) {
+        return new AuditEvent(AuditEventType.ACCOUNT_CREATED, account.getCreatedAt(), account.getId(),
+                account.getBalance(), null);
+    }
+
+    public static AuditEvent of(AuditEventType type, Transaction transaction, UUID accountId, long balance) {
+        return new AuditEvent(type, transaction.getTimestamp(), accountId, balance, transaction);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bankingtransactions.audit;
+
+/**
+ * Audit trail of the ledger's changes. Publishing hands the event to a background writer, so the caller does no
+ * I/O; what happens when the writer falls behind is set by {@code banking.audit.overflow-policy}.
+ */
+public interface AuditLog {
+
+    void publish(AuditEvent event);
+}
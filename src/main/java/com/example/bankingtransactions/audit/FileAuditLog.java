@@ -0,0 +1,275 @@
+package com.example.bankingtransactions.audit;
+
+import com.example.bankingtransactions.config.AuditProperties;
+import com.example.bankingtransactions.enums.AuditEventType;
+import com.example.bankingtransactions.enums.AuditOverflowPolicy;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.util.Money;
+import com.example.bankingtransactions.util.MpscRingBuffer;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Audit trail written as newline-delimited JSON to numbered files, moving on to the next file once one reaches
+ * {@code banking.audit.max-file-bytes}. Files are never deleted or appended to after a restart.
+ * <p>
+ * Publishing offers the event to a bounded lock-free queue and returns; nothing is formatted on the caller's thread.
+ * A single writer thread drains the queue in batches, writes them through one buffer and flushes once per batch,
+ * then sleeps briefly when the queue is empty. Callers only wake it when the queue is full, and then either wait for
+ * space or drop the event, counting it, as the overflow policy says. The writer notes each gap in the trail with
+ * the number of events dropped. If a write fails the writer retries the batch in a new file, so events may appear
+ * twice but are not lost. A blocked caller waits at most {@code banking.audit.max-block-ms}; after that the writer
+ * counts as stalled, and events are dropped without waiting until it writes again.
+ * <p>
+ * The trail is complete only up to a clean shutdown, which drains the queue: events still queued when the process
+ * is killed are lost. The journal remains the durable record of every transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.audit.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class FileAuditLog implements AuditLog {
+
+    private static final String FILE_PREFIX = "audit-";
+    private static final String FILE_SUFFIX = ".ndjson";
+    // Events written between flushes
+    private static final int BATCH_SIZE = 1024;
+    // How long the writer sleeps on an empty queue, which bounds how long an event waits to be written
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Failed offers spent spinning before a blocked caller parks
+    private static final int SPIN_LIMIT = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final Path directory;
+    private final AuditOverflowPolicy overflowPolicy;
+    private final long maxFileBytes;
+    private final long maxBlockNanos;
+    private final MpscRingBuffer<AuditEvent> queue;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Counter writtenEvents;
+    private final Counter droppedEvents;
+    // Dropped since the writer last noted a gap
+    private final AtomicLong unnotedDrops = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Set when a caller gave up waiting for the writer, until the writer next writes
+    private volatile boolean stalled;
+
+    // Only touched by the writer
+    private final List<AuditEvent> batch = new ArrayList<>(BATCH_SIZE);
+    private long fileNumber;
+    private FileChannel channel;
+    private JsonGenerator generator;
+
+    public FileAuditLog(AuditProperties properties, MeterRegistry registry) {
+        this.directory = Path.of(properties.getDirectory());
+        this.overflowPolicy = properties.getOverflowPolicy();
+        this.maxFileBytes = properties.getMaxFileBytes();
+        this.maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxBlockMs());
+        this.queue = new MpscRingBuffer<>(properties.getQueueCapacity());
+        this.writtenEvents = Counter.builder("ledger.audit.events.written")
+                .description("Audit events written to the audit trail")
+                .register(registry);
+        this.droppedEvents = Counter.builder("ledger.audit.events.dropped")
+                .description("Audit events dropped because the audit queue was full")
+                .register(registry);
+        this.writer = new Thread(this::run, "audit-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            fileNumber = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX))
+                    .mapToLong(name -> Long.parseLong(
+                            name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())))
+                    .max()
+                    .orElse(0);
+        }
+        writer.start();
+        log.info("Writing the audit trail to {}", directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(SHUTDOWN_TIMEOUT_MS);
+        if (writer.isAlive()) {
+            log.warn("Audit writer did not finish its queued events within {} ms", SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    @Override
+    public void publish(AuditEvent event) {
+        if (queue.offer(event)) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        if (overflowPolicy == AuditOverflowPolicy.DROP || stalled) {
+            drop();
+            return;
+        }
+        long deadline = System.nanoTime() + maxBlockNanos;
+        int attempts = 0;
+        while (!queue.offer(event)) {
+            if (!running) {
+                // Nothing will drain the queue any more
+                drop();
+                return;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                if (!stalled) {
+                    stalled = true;
+                    log.warn("Audit writer has not freed queue space for {} ms. Dropping audit events until it does",
+                            TimeUnit.NANOSECONDS.toMillis(maxBlockNanos));
+                }
+                drop();
+                return;
+            }
+            if (++attempts < SPIN_LIMIT) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(1_000);
+            }
+        }
+    }
+
+    private void drop() {
+        unnotedDrops.incrementAndGet();
+        droppedEvents.increment();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            AuditEvent event;
+            while (batch.size() < BATCH_SIZE && (event = queue.poll()) != null) {
+                batch.add(event);
+            }
+            // Events are only dropped while the queue is full, so a gap goes after the last batch that empties it
+            long drops = batch.size() < BATCH_SIZE ? unnotedDrops.getAndSet(0) : 0;
+            if (batch.isEmpty() && drops == 0) {
+                if (running) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                continue;
+            }
+            write(drops);
+            batch.clear();
+        }
+        closeFile();
+    }
+
+    // Writes the batch and then the gap, retrying in a new file until they are written
+    private void write(long drops) {
+        while (true) {
+            try {
+                if (generator == null) {
+                    openFile();
+                }
+                for (AuditEvent event : batch) {
+                    writeEvent(event);
+                }
+                if (drops > 0) {
+                    writeGap(drops);
+                }
+                generator.flush();
+                writtenEvents.increment(batch.size());
+                if (stalled) {
+                    stalled = false;
+                    log.info("Audit writer is writing again");
+                }
+                if (channel.size() >= maxFileBytes) {
+                    closeFile();
+                }
+                return;
+            } catch (IOException e) {
+                log.error("Failed to write {} audit events to {}. Retrying in a new file", batch.size(), directory, e);
+                closeFile();
+                LockSupport.parkNanos(this, RETRY_NANOS);
+            }
+        }
+    }
+
+    private void writeEvent(AuditEvent event) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("time", String.valueOf(event.time()));
+        generator.writeStringField("type", event.type().name());
+        Transaction transaction = event.transaction();
+        if (transaction != null) {
+            generator.writeStringField("transactionId", transaction.getId().toString());
+            if (transaction.getFromAccountId() != null) {
+                generator.writeStringField("fromAccountId", transaction.getFromAccountId().toString());
+            }
+            if (transaction.getToAccountId() != null) {
+                generator.writeStringField("toAccountId", transaction.getToAccountId().toString());
+            }
+            generator.writeStringField("amount", Money.format(transaction.getAmount()));
+            if (transaction.getDescription() != null) {
+                generator.writeStringField("description", transaction.getDescription());
+            }
+        }
+        generator.writeStringField("accountId", event.accountId().toString());
+        generator.writeStringField("balance", Money.format(event.balance()));
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeGap(long drops) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("time", LocalDateTime.now().toString());
+        generator.writeStringField("type", AuditEventType.EVENTS_DROPPED.name());
+        generator.writeNumberField("count", drops);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void openFile() throws IOException {
+        Path file = directory.resolve(String.format("%s%010d%s", FILE_PREFIX, ++fileNumber, FILE_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        generator = jsonFactory.createGenerator(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16),
+                JsonEncoding.UTF8);
+        // One object per line rather than the default space between root values
+        generator.setRootValueSeparator(null);
+    }
+
+    private void closeFile() {
+        if (generator == null) {
+            return;
+        }
+        try {
+            // Closes the channel too
+            generator.close();
+        } catch (IOException e) {
+            log.warn("Failed to close audit file", e);
+        }
+        generator = null;
+        channel = null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bankingtransactions.audit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Used when the audit trail is disabled
+ */
+@Component
+@ConditionalOnProperty(name = "banking.audit.enabled", havingValue = "false")
+public class NoOpAuditLog implements AuditLog {
+
+    @Override
+    public void publish(AuditEvent event) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.bankingtransactions.cluster;
+
+import com.example.bankingtransactions.config.ClusterProperties;
+import com.example.bankingtransactions.exception.AccountNotFoundException;
+import com.example.bankingtransactions.exception.NodeUnavailableException;
+import com.example.bankingtransactions.exception.TransferException;
+import com.example.bankingtransactions.model.Transaction;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * HTTP calls between cluster nodes: forwarded API requests and the two phases of transfers between nodes. A node
+ * that cannot be reached, or answers with a server error, is reported as a {@link NodeUnavailableException}.
+ * Forwarded requests go to a node's public URL; transfer phases go to its internal URL with the cluster secret.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.cluster.enabled", havingValue = "true")
+public class ClusterClient {
+
+    // Marks a request forwarded by another node, which the receiving node must handle itself
+    public static final String FORWARDED_HEADER = "X-Banking-Forwarded-By";
+    public static final String SECRET_HEADER = "X-Banking-Cluster-Secret";
+    public static final String PREPARE_PATH = "/internal/cluster/transfers/prepare";
+    public static final String COMMIT_PATH = "/internal/cluster/transfers/commit";
+
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final String secret;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    public ClusterClient(ShardRouter shardRouter, ObjectMapper objectMapper, ClusterProperties properties) {
+        if (properties.getSecret() == null || properties.getSecret().isBlank()) {
+            throw new IllegalStateException("banking.cluster.secret must be set when the cluster is enabled");
+        }
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.secret = properties.getSecret();
+        this.timeout = Duration.ofMillis(properties.getRequestTimeoutMs());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Sends a request on to the given node and returns its response, with the body still to be read.
+     */
+    public HttpResponse<InputStream> forward(String node, String method, String pathAndQuery,
+                                             Map<String, String> headers, byte[] body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(node + pathAndQuery))
+                .timeout(timeout)
+                .header(FORWARDED_HEADER, shardRouter.getSelf())
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        headers.forEach(request::header);
+        return send(node, request.build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Asks the node owning the destination account whether it can take the transfer's credit.
+     */
+    public void prepare(String node, Transaction transaction) {
+        post(node, PREPARE_PATH, transaction);
+    }
+
+    /**
+     * Tells the node owning the destination account to apply the transfer's credit.
+     */
+    public void commit(String node, Transaction transaction) {
+        post(node, COMMIT_PATH, transaction);
+    }
+
+    private void post(String node, String path, Transaction transaction) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(transaction);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize transaction " + transaction.getId(), e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(shardRouter.internalUrlOf(node) + path))
+                .timeout(timeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header(FORWARDED_HEADER, shardRouter.getSelf())
+                .header(SECRET_HEADER, secret)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<byte[]> response = send(node, request, HttpResponse.BodyHandlers.ofByteArray());
+        int status = response.statusCode();
+        if (status == 404) {
+            throw new AccountNotFoundException(transaction.getToAccountId());
+        }
+        if (status >= 400 && status < 500) {
+            throw new TransferException(errorMessage(response.body(), node, status));
+        }
+        if (status >= 500) {
+            throw new NodeUnavailableException(errorMessage(response.body(), node, status));
+        }
+    }
+
+    private <T> HttpResponse<T> send(String node, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        try {
+            return httpClient.send(request, handler);
+        } catch (IOException e) {
+            throw new NodeUnavailableException("Node " + node + " is unavailable"
+                    + (e.getMessage() == null ? "" : ": " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NodeUnavailableException("Interrupted while calling node " + node);
+        }
+    }
+
+    private String errorMessage(byte[] body, String node, int status) {
+        try {
+            JsonNode message = objectMapper.readTree(body).get("message");
+            if (message != null && message.isTextual()) {
+                return message.asText();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not an error response from this application
+        }
+        return "Node " + node + " answered with status " + status;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bankingtransactions.cluster;
+
+import com.example.bankingtransactions.config.ClusterProperties;
+import com.example.bankingtransactions.dto.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+
+/**
+ * Keeps the cluster endpoints on their own listener. They are not found on the public port, the internal port
+ * serves nothing else, and calls to them must carry the cluster secret.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.cluster.enabled", havingValue = "true")
+public class ClusterEndpointFilter extends OncePerRequestFilter {
+
+    private static final String CLUSTER_PATH = "/internal/cluster/";
+
+    private final int internalPort;
+    private final byte[] secret;
+    private final ObjectMapper objectMapper;
+
+    public ClusterEndpointFilter(ShardRouter shardRouter, ClusterProperties properties, ObjectMapper objectMapper) {
+        this.internalPort = shardRouter.getInternalPort();
+        this.secret = properties.getSecret().getBytes(StandardCharsets.UTF_8);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean internal = request.getLocalPort() == internalPort;
+        if (internal != request.getRequestURI().startsWith(CLUSTER_PATH)) {
+            reject(response, HttpStatus.NOT_FOUND, "Not found");
+            return;
+        }
+        if (internal && !hasSecret(request)) {
+            reject(response, HttpStatus.UNAUTHORIZED, "Missing or wrong cluster secret");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean hasSecret(HttpServletRequest request) {
+        String header = request.getHeader(ClusterClient.SECRET_HEADER);
+        // Compared in constant time, so the secret cannot be guessed byte by byte
+        return header != null && MessageDigest.isEqual(secret, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(status.value(), message, LocalDateTime.now()));
+    }
+}
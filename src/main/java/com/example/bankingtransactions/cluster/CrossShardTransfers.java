@@ -0,0 +1,261 @@
+package com.example.bankingtransactions.cluster;
+
+import com.example.bankingtransactions.config.ClusterProperties;
+import com.example.bankingtransactions.engine.BalanceUpdate;
+import com.example.bankingtransactions.engine.LedgerEngine;
+import com.example.bankingtransactions.engine.LedgerOperations;
+import com.example.bankingtransactions.exception.AccountNotFoundException;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.exception.NodeUnavailableException;
+import com.example.bankingtransactions.exception.TransferException;
+import com.example.bankingtransactions.feed.BalanceFeed;
+import com.example.bankingtransactions.journal.JournalRecovery;
+import com.example.bankingtransactions.journal.LedgerJournal;
+import com.example.bankingtransactions.journal.PendingCredit;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers to accounts owned by another node, in two phases. In the first, the destination node confirms it can
+ * take the credit and the source account is debited, reserving the money as a pending transfer in the journal. In
+ * the second, the destination node commits the credit, after which the transfer is completed in this node's journal.
+ * <p>
+ * A reserved transfer always ends up credited, or refunded if the destination refuses the credit. Commits that
+ * cannot reach the destination are retried in the background, as are pending transfers that journal recovery
+ * restores after a crash. Commits may therefore be repeated, and the destination applies each one once: it
+ * remembers the transfers it has credited, rebuilding the set from its journal on restart. A repeated commit that
+ * arrives while the first is still being applied waits for it, so it never reports a credit that is not yet durable.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.cluster.enabled", havingValue = "true")
+@Slf4j
+public class CrossShardTransfers {
+
+    private static final CompletableFuture<Void> CREDITED = CompletableFuture.completedFuture(null);
+
+    private final ShardRouter shardRouter;
+    private final ClusterClient clusterClient;
+    private final AccountRepository accountRepository;
+    private final LedgerEngine ledgerEngine;
+    private final LedgerOperations ledgerOperations;
+    private final LedgerJournal ledgerJournal;
+    private final ObjectProvider<JournalRecovery> journalRecovery;
+    private final BalanceFeed balanceFeed;
+    private final long retryIntervalMs;
+    // Transfers from other nodes credited here, or being credited while their future is incomplete
+    private final Map<UUID, CompletableFuture<Void>> commits = new ConcurrentHashMap<>();
+    // Transfers from this node whose commit is being sent, so the retry task leaves them alone
+    private final Set<UUID> committing = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public CrossShardTransfers(ShardRouter shardRouter, ClusterClient clusterClient,
+                               AccountRepository accountRepository, LedgerEngine ledgerEngine,
+                               LedgerOperations ledgerOperations, LedgerJournal ledgerJournal,
+                               ObjectProvider<JournalRecovery> journalRecovery, BalanceFeed balanceFeed,
+                               ClusterProperties properties) {
+        this.shardRouter = shardRouter;
+        this.clusterClient = clusterClient;
+        this.accountRepository = accountRepository;
+        this.ledgerEngine = ledgerEngine;
+        this.ledgerOperations = ledgerOperations;
+        this.ledgerJournal = ledgerJournal;
+        this.journalRecovery = journalRecovery;
+        this.balanceFeed = balanceFeed;
+        this.retryIntervalMs = properties.getRetryIntervalMs();
+    }
+
+    /**
+     * @param credited false if the destination could not be reached after the debit, in which case the credit is
+     *                 retried in the background
+     */
+    public record Result(BalanceUpdate debit, boolean credited) {
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cross-shard-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::retryPendingSafely, retryIntervalMs, retryIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(retryIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Transfers from a local account to an account on another node.
+     */
+    public Result transfer(Account from, UUID toAccountId, long amount, String description) {
+        String node = shardRouter.ownerOf(toAccountId);
+        Transaction transaction = ledgerOperations.newTransferTransaction(from.getId(), toAccountId, amount, description);
+        clusterClient.prepare(node, transaction);
+
+        committing.add(transaction.getId());
+        try {
+            BalanceUpdate debit = await(ledgerEngine.debit(from, transaction));
+            // The reservation must survive a crash before the destination is credited
+            ledgerJournal.awaitDurable(debit.journalOffset());
+            boolean credited = deliver(transaction);
+            if (!credited) {
+                log.warn("Could not commit transfer {} on {}. Retrying in the background", transaction.getId(), node);
+            }
+            return new Result(debit, credited);
+        } finally {
+            committing.remove(transaction.getId());
+        }
+    }
+
+    /**
+     * First phase on the destination node: checks that the credit can be applied. Nothing is held, since a credit
+     * to an existing account can only fail by overflowing its balance.
+     */
+    public void prepare(String node, Transaction transaction) {
+        checkSender(node, transaction);
+        Account to = findLocalAccount(transaction.getToAccountId());
+        if (to.getBalance() > Long.MAX_VALUE - transaction.getAmount()) {
+            throw new TransferException("Failed to deposit funds into account " + to.getId() + ". Transfer cancelled.");
+        }
+    }
+
+    /**
+     * Second phase on the destination node: credits the destination account, unless this transfer was credited
+     * before.
+     */
+    public void commit(String node, Transaction transaction) {
+        checkSender(node, transaction);
+        JournalRecovery recovery = journalRecovery.getIfAvailable();
+        if (recovery != null && !recovery.isHistoryComplete()) {
+            // Transfers credited before the last snapshot are not all known yet
+            throw new NodeUnavailableException("Node is still restoring its journal");
+        }
+        Account to = findLocalAccount(transaction.getToAccountId());
+        CompletableFuture<Void> attempt = new CompletableFuture<>();
+        CompletableFuture<Void> earlier = commits.putIfAbsent(transaction.getId(), attempt);
+        if (earlier != null) {
+            // Fails as the earlier attempt did, if it does, so the sender retries
+            await(earlier);
+            return;
+        }
+        try {
+            ledgerJournal.awaitDurable(await(ledgerEngine.credit(to, transaction)));
+        } catch (RuntimeException e) {
+            commits.remove(transaction.getId(), attempt);
+            attempt.completeExceptionally(e);
+            throw e;
+        }
+        commits.replace(transaction.getId(), attempt, CREDITED);
+        attempt.complete(null);
+        balanceFeed.publish(transaction);
+    }
+
+    /**
+     * Remembers a transfer from another node that journal recovery found credited.
+     */
+    public void registerCommitted(UUID transactionId) {
+        commits.put(transactionId, CREDITED);
+    }
+
+    /**
+     * Commits the credit on the destination node and completes the transfer here. Returns false if the destination
+     * could not be reached, leaving the transfer pending.
+     */
+    private boolean deliver(Transaction transaction) {
+        String node = shardRouter.ownerOf(transaction.getToAccountId());
+        try {
+            clusterClient.commit(node, transaction);
+        } catch (NodeUnavailableException e) {
+            log.debug("Failed to commit transfer {} on {}: {}", transaction.getId(), node, e.getMessage());
+            return false;
+        } catch (AccountNotFoundException | TransferException e) {
+            // The destination refused the credit, so the money goes back to the source account
+            refund(transaction);
+            throw e;
+        }
+        ledgerJournal.awaitDurable(ledgerOperations.completeRemoteCredit(transaction));
+        return true;
+    }
+
+    private void refund(Transaction transaction) {
+        Account from = accountRepository.findById(transaction.getFromAccountId()).orElseThrow();
+        ledgerJournal.awaitDurable(await(ledgerEngine.credit(from, transaction)));
+        balanceFeed.publish(transaction);
+        log.info("Refunded transfer {} to account {}", transaction.getId(), from.getId());
+    }
+
+    private void retryPendingSafely() {
+        try {
+            retryPending();
+        } catch (RuntimeException e) {
+            log.error("Failed to retry transfers to other nodes", e);
+        }
+    }
+
+    private void retryPending() {
+        for (PendingCredit pending : ledgerOperations.pendingCredits()) {
+            Transaction transaction = pending.transaction();
+            // Transfers between engine partitions are credited locally
+            if (shardRouter.isLocal(transaction.getToAccountId()) || !committing.add(transaction.getId())) {
+                continue;
+            }
+            try {
+                // The transfer may have been completed since the pending credits were listed
+                if (ledgerOperations.isPending(transaction.getId()) && deliver(transaction)) {
+                    log.info("Completed transfer {} to account {}", transaction.getId(), transaction.getToAccountId());
+                }
+            } catch (AccountNotFoundException | TransferException e) {
+                log.warn("Transfer {} was refused by its destination: {}", transaction.getId(), e.getMessage());
+            } finally {
+                committing.remove(transaction.getId());
+            }
+        }
+    }
+
+    // Only the node owning the source account can have debited it, so only it may have the credit applied
+    private void checkSender(String node, Transaction transaction) {
+        if (transaction.getId() == null || transaction.getFromAccountId() == null
+                || transaction.getToAccountId() == null || transaction.getAmount() <= 0) {
+            throw new InvalidRequestException("Transfer " + transaction.getId() + " is incomplete");
+        }
+        if (!shardRouter.ownerOf(transaction.getFromAccountId()).equals(node)) {
+            throw new InvalidRequestException("Transfer " + transaction.getId() + " is from account "
+                    + transaction.getFromAccountId() + ", which " + node + " does not own");
+        }
+    }
+
+    private Account findLocalAccount(UUID accountId) {
+        return accountRepository.findById(accountId).orElseThrow(() -> new AccountNotFoundException(accountId));
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.bankingtransactions.cluster;
+
+import com.example.bankingtransactions.config.ClusterProperties;
+import com.example.bankingtransactions.id.IdGenerator;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Assigns accounts to cluster nodes by consistent hashing of the account id. Each node places a number of virtual
+ * nodes on a hash ring and owns the accounts that hash to the arcs ending at them, so adding or removing a node only
+ * moves the accounts on the arcs it gains or loses. Without a cluster every account is local.
+ * <p>
+ * Nodes are named by their public base URL. Each also has an internal URL, on a separate listener, where other nodes
+ * call its cluster endpoints.
+ */
+@Component
+public class ShardRouter {
+
+    private final boolean enabled;
+    private final String self;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final Map<String, String> internalUrls = new HashMap<>();
+    private final IdGenerator idGenerator;
+
+    public ShardRouter(ClusterProperties properties, IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        enabled = properties.isEnabled();
+        self = enabled ? normalize(properties.getSelf()) : null;
+        if (!enabled) {
+            return;
+        }
+        List<String> nodes = properties.getNodes().stream().map(ShardRouter::normalize).toList();
+        if (!nodes.contains(self)) {
+            throw new IllegalStateException("banking.cluster.self must be one of banking.cluster.nodes: " + self);
+        }
+        List<String> internalNodes = properties.getInternalNodes().stream().map(ShardRouter::normalize).toList();
+        if (internalNodes.size() != nodes.size()) {
+            throw new IllegalStateException("banking.cluster.internal-nodes must give the internal URL of each of "
+                    + "banking.cluster.nodes, in the same order");
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            internalUrls.put(nodes.get(i), internalNodes.get(i));
+        }
+        if (getInternalPort() < 0) {
+            throw new IllegalStateException("The internal URL of this node must give its port: "
+                    + internalUrls.get(self));
+        }
+        for (String node : nodes) {
+            for (int i = 0; i < properties.getVirtualNodes(); i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * Base URL of the node's cluster endpoints
+     */
+    public String internalUrlOf(String node) {
+        return internalUrls.get(node);
+    }
+
+    /**
+     * Port this node serves its cluster endpoints on
+     */
+    public int getInternalPort() {
+        return URI.create(internalUrls.get(self)).getPort();
+    }
+
+    public String ownerOf(UUID accountId) {
+        if (!enabled) {
+            return self;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(accountId));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public boolean isLocal(UUID accountId) {
+        return !enabled || self.equals(ownerOf(accountId));
+    }
+
+    /**
+     * Returns a new account id owned by this node, so an account is created where it will live.
+     */
+    public UUID newAccountId() {
+        UUID id;
+        do {
+            id = idGenerator.newId();
+        } while (!isLocal(id));
+        return id;
+    }
+
+    // Time-ordered ids share their leading bits, so a finalizer spreads them over the ring like random ones
+    private static long hash(UUID accountId) {
+        return mix(accountId.getMostSignificantBits() ^ mix(accountId.getLeastSignificantBits()));
+    }
+
+    private static long hash(String virtualNode) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(virtualNode.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // MurmurHash3 64-bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String normalize(String url) {
+        if (url == null) {
+            throw new IllegalStateException("banking.cluster.self must be set when the cluster is enabled");
+        }
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
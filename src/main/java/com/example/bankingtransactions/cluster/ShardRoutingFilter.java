@@ -0,0 +1,200 @@
+package com.example.bankingtransactions.cluster;
+
+import com.example.bankingtransactions.controller.AccountController;
+import com.example.bankingtransactions.dto.ErrorResponse;
+import com.example.bankingtransactions.exception.NodeUnavailableException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends each account API request to the node that owns the account it acts on: the account in the path, the source
+ * of a transfer or withdrawal, or the destination of a deposit. New accounts and batch transfers are handled by the
+ * node that receives them. A request is forwarded at most once; the receiving node handles it even if the nodes
+ * disagree about ownership, so a misconfigured cluster answers with errors rather than forwarding in a loop.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.cluster.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    private static final String ACCOUNTS_PATH = "/api/accounts/";
+    private static final List<String> REQUEST_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT, AccountController.IDEMPOTENCY_KEY_HEADER);
+    private static final List<String> RESPONSE_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_DISPOSITION);
+
+    private final ShardRouter shardRouter;
+    private final ClusterClient clusterClient;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(ACCOUNTS_PATH)
+                || request.getHeader(ClusterClient.FORWARDED_HEADER) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(ACCOUNTS_PATH.length());
+        byte[] body = null;
+        UUID accountId;
+        if ("POST".equals(request.getMethod())) {
+            String field = switch (path) {
+                case "transfer", "withdraw" -> "fromAccountId";
+                case "deposit" -> "toAccountId";
+                default -> null;
+            };
+            if (field == null) {
+                chain.doFilter(request, response);
+                return;
+            }
+            body = request.getInputStream().readAllBytes();
+            accountId = accountIdIn(body, field);
+            request = new CachedBodyRequest(request, body);
+        } else {
+            int end = path.indexOf('/');
+            accountId = parseAccountId(end < 0 ? path : path.substring(0, end));
+        }
+
+        // Requests without a valid account id are left to the controller to reject
+        if (accountId == null || shardRouter.isLocal(accountId)) {
+            chain.doFilter(request, response);
+        } else {
+            forward(shardRouter.ownerOf(accountId), request, body, response);
+        }
+    }
+
+    private void forward(String node, HttpServletRequest request, byte[] body, HttpServletResponse response)
+            throws IOException {
+        String target = request.getQueryString() == null
+                ? request.getRequestURI()
+                : request.getRequestURI() + "?" + request.getQueryString();
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String header : REQUEST_HEADERS) {
+            if (request.getHeader(header) != null) {
+                headers.put(header, request.getHeader(header));
+            }
+        }
+
+        HttpResponse<InputStream> forwarded;
+        try {
+            forwarded = clusterClient.forward(node, request.getMethod(), target, headers, body);
+        } catch (NodeUnavailableException e) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage(), LocalDateTime.now()));
+            return;
+        }
+        response.setStatus(forwarded.statusCode());
+        for (String header : RESPONSE_HEADERS) {
+            forwarded.headers().firstValue(header).ifPresent(value -> response.setHeader(header, value));
+        }
+        // Copied as it arrives, so forwarded exports still stream
+        try (InputStream in = forwarded.body()) {
+            in.transferTo(response.getOutputStream());
+        }
+    }
+
+    private UUID accountIdIn(byte[] body, String field) {
+        try {
+            JsonNode value = objectMapper.readTree(body).get(field);
+            return value != null && value.isTextual() ? parseAccountId(value.asText()) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static UUID parseAccountId(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Replays a request body that was read to find the account it acts on
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already here, so a listener is told so at once
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
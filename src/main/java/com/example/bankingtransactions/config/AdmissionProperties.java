@@ -0,0 +1,38 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.admission")
+public class AdmissionProperties {
+
+    /**
+     * Reject deposits, withdrawals, transfers and new accounts with 429 when too many are already in progress
+     */
+    private boolean enabled = true;
+
+    /**
+     * Limit on requests in progress at startup, adjusted from then on by their latency
+     */
+    private int initialLimit = 64;
+
+    private int minLimit = 8;
+
+    private int maxLimit = 1024;
+
+    /**
+     * How many times its usual latency a request may take before the limit is lowered
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * Interval between adjustments of the limit
+     */
+    private long windowMs = 100;
+
+    /**
+     * Requests in progress that may involve any one account
+     */
+    private int maxInFlightPerAccount = 32;
+}
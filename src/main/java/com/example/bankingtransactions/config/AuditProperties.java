@@ -0,0 +1,35 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.enums.AuditOverflowPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.audit")
+public class AuditProperties {
+
+    /**
+     * Write an audit trail of every account created and transaction recorded
+     */
+    private boolean enabled = true;
+
+    private String directory = "data/audit";
+
+    /**
+     * Events waiting for the writer, rounded up to a power of two
+     */
+    private int queueCapacity = 65536;
+
+    private AuditOverflowPolicy overflowPolicy = AuditOverflowPolicy.BLOCK;
+
+    /**
+     * Longest a request waits for space in the queue under the BLOCK policy. Past it the event is dropped, and so are
+     * later ones without waiting until the writer catches up, so a disk that cannot be written does not stall requests
+     */
+    private long maxBlockMs = 1000;
+
+    /**
+     * Size in bytes at which the writer moves on to a new file
+     */
+    private long maxFileBytes = 64 * 1024 * 1024;
+}
@@ -0,0 +1,26 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.cluster.ShardRouter;
+import org.apache.catalina.connector.Connector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Opens the separate listener that other nodes call the cluster endpoints on
+ */
+@Configuration
+@ConditionalOnProperty(name = "banking.cluster.enabled", havingValue = "true")
+public class ClusterListenerConfig {
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> clusterListener(ShardRouter shardRouter) {
+        return factory -> {
+            Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+            connector.setPort(shardRouter.getInternalPort());
+            factory.addAdditionalTomcatConnectors(connector);
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "banking.cluster")
+public class ClusterProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Base URL of this node, as it appears in nodes
+     */
+    private String self;
+
+    /**
+     * Base URLs of every node in the cluster, including this one
+     */
+    private List<String> nodes = new ArrayList<>();
+
+    /**
+     * Base URLs of the listener each node serves the cluster endpoints on, in the same order as nodes. This node's
+     * own entry gives the port it listens on, which should only be reachable by the other nodes
+     */
+    private List<String> internalNodes = new ArrayList<>();
+
+    /**
+     * Shared by every node and sent with each call to the cluster endpoints, which reject calls without it
+     */
+    private String secret;
+
+    /**
+     * Points per node on the hash ring; more points spread accounts more evenly
+     */
+    private int virtualNodes = 128;
+
+    private long requestTimeoutMs = 5000;
+
+    /**
+     * How often transfers still to be credited on another node are retried
+     */
+    private long retryIntervalMs = 1000;
+}
@@ -0,0 +1,22 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.enums.EngineMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.engine")
+public class EngineProperties {
+
+    private EngineMode mode = EngineMode.LOCKING;
+
+    /**
+     * Number of partitions in PARTITIONED mode, or 0 for one per available processor
+     */
+    private int partitions = 0;
+
+    /**
+     * Capacity of each partition's command ring buffer, rounded up to a power of two
+     */
+    private int ringSize = 16384;
+}
@@ -0,0 +1,33 @@
+package com.example.bankingtransactions.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Runs the independent groups of a batch transfer in parallel
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService batchTransferExecutor(WorkerExecutors workerExecutors) {
+        return workerExecutors.newExecutor("batch-transfer", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Parses and validates the rows of bulk imports in parallel. CPU-bound, so always on platform threads
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService importValidationExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "import-validation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.feed")
+public class FeedProperties {
+
+    /**
+     * Balance feed subscriptions open at once, beyond which new ones are rejected with 429. Each holds a connection,
+     * whose buffers take about 120 KB of heap
+     */
+    private int maxSubscribers = 20_000;
+
+    private int maxAccountsPerSubscription = 100;
+
+    /**
+     * How long a subscription stays open before the client has to reconnect
+     */
+    private long timeoutMs = 3_600_000;
+
+    /**
+     * Interval of the comments sent to idle subscriptions, which keep proxies from closing them and find clients
+     * that have gone away
+     */
+    private long heartbeatMs = 15_000;
+
+    /**
+     * Longest a write to a subscriber may take before the subscription is closed, so a client that stops reading
+     * drops out of the feed. The write itself gives up when Tomcat's connection timeout passes, which should be longer
+     */
+    private long sendTimeoutMs = 5_000;
+
+    /**
+     * Threads writing events to subscribers, when not on virtual threads. A subscriber that stops reading holds one
+     * until its write times out
+     */
+    private int senderThreads = 16;
+}
@@ -0,0 +1,41 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.enums.HistoryStore;
+import com.example.bankingtransactions.journal.JournalRecovery;
+import com.example.bankingtransactions.repository.ColumnarTransactionRepository;
+import com.example.bankingtransactions.repository.EvictableTransactionRepository;
+import com.example.bankingtransactions.repository.HistorySegmentStore;
+import com.example.bankingtransactions.repository.ObjectTransactionRepository;
+import com.example.bankingtransactions.repository.TieredTransactionRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class HistoryConfig {
+
+    /**
+     * The in-memory history store, behind a tiered store that spills older history to disk when enabled
+     */
+    @Bean
+    public TransactionRepository transactionRepository(HistoryProperties properties,
+                                                       ObjectProvider<JournalRecovery> journalRecovery) {
+        EvictableTransactionRepository store = properties.getStore() == HistoryStore.COLUMNAR
+                ? new ColumnarTransactionRepository()
+                : new ObjectTransactionRepository();
+        if (!properties.isTiered()) {
+            return store;
+        }
+        HistorySegmentStore segments = new HistorySegmentStore(Path.of(properties.getColdDirectory()),
+                properties.getColdSegmentSize());
+        // Looked up lazily: recovery itself depends on this repository
+        return new TieredTransactionRepository(store, segments, properties.getHotWindowMs(),
+                properties.getMaxHotPerAccount(), properties.getSpillIntervalMs(), () -> {
+            JournalRecovery recovery = journalRecovery.getIfAvailable();
+            return recovery == null ? Long.MAX_VALUE : recovery.getHistoryRestoredUpTo();
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.enums.HistoryStore;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.history")
+public class HistoryProperties {
+
+    private HistoryStore store = HistoryStore.OBJECTS;
+
+    /**
+     * Move older history out of memory into compressed segment files
+     */
+    private boolean tiered = false;
+
+    /**
+     * Transactions older than this are moved to segment files
+     */
+    private long hotWindowMs = 14L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Transactions kept in memory per account, beyond which the oldest are moved to segment files
+     */
+    private int maxHotPerAccount = 10_000;
+
+    private long spillIntervalMs = 60_000;
+
+    private String coldDirectory = "data/history";
+
+    /**
+     * Size at which a new segment file is started, in bytes
+     */
+    private long coldSegmentSize = 256L * 1024 * 1024;
+}
@@ -0,0 +1,24 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@ConfigurationProperties(prefix = "banking.hot-accounts")
+public class HotAccountProperties {
+
+    /**
+     * Accounts whose balance is spread over sub-balances, so that concurrent deposits and transfers to them do not
+     * queue on one lock
+     */
+    private List<UUID> ids = new ArrayList<>();
+
+    /**
+     * Sub-balances per hot account, each with its own lock
+     */
+    private int subBalances = 16;
+}
@@ -0,0 +1,19 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.enums.IdStrategy;
+import com.example.bankingtransactions.id.IdGenerator;
+import com.example.bankingtransactions.id.RandomIdGenerator;
+import com.example.bankingtransactions.id.TimeOrderedIdGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdConfig {
+
+    @Bean
+    public IdGenerator idGenerator(IdProperties properties) {
+        return properties.getStrategy() == IdStrategy.RANDOM
+                ? new RandomIdGenerator()
+                : new TimeOrderedIdGenerator();
+    }
+}
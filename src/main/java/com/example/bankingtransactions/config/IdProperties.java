@@ -0,0 +1,12 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.enums.IdStrategy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.ids")
+public class IdProperties {
+
+    private IdStrategy strategy = IdStrategy.TIME_ORDERED;
+}
@@ -0,0 +1,19 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * How long the result of a request is replayed for retries carrying the same Idempotency-Key
+     */
+    private long ttlMs = 3_600_000;
+
+    /**
+     * Upper bound on remembered keys; the oldest keys are forgotten first once it is reached
+     */
+    private int maxEntries = 500_000;
+}
@@ -0,0 +1,20 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.import")
+public class ImportProperties {
+
+    /**
+     * Rows validated together and written to the journal and repositories in one go
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Batches read ahead of the one being written, validated in parallel meanwhile. With the batch size, this bounds
+     * the rows an import holds in memory
+     */
+    private int batchesInFlight = 16;
+}
@@ -0,0 +1,24 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.ingest")
+public class IngestProperties {
+
+    private boolean enabled = false;
+
+    private int port = 9090;
+
+    /**
+     * Threads running binary requests. Each waits until its update is durable, so this bounds the requests
+     * in progress across all connections. Not used with virtual threads, which run every request on its own thread
+     */
+    private int workerThreads = 64;
+
+    /**
+     * Requests a connection may have outstanding before the server stops reading from it until responses drain
+     */
+    private int maxInFlightPerConnection = 1024;
+}
@@ -0,0 +1,34 @@
+package com.example.bankingtransactions.config;
+
+import com.example.bankingtransactions.enums.FsyncPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.journal")
+public class JournalProperties {
+
+    /**
+     * Persist accounts and transactions to the journal and replay it on startup
+     */
+    private boolean enabled = false;
+
+    private String directory = "data/journal";
+
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.GROUP;
+
+    /**
+     * Interval between flushes when using the GROUP fsync policy
+     */
+    private long groupCommitIntervalMs = 5;
+
+    /**
+     * Longest a request waits for a GROUP flush to cover its records before failing with 503
+     */
+    private long durableTimeoutMs = 5_000;
+
+    /**
+     * Size of each memory-mapped segment file in bytes
+     */
+    private int segmentSize = 64 * 1024 * 1024;
+}
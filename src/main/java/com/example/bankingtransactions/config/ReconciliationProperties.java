@@ -0,0 +1,21 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.reconciliation")
+public class ReconciliationProperties {
+
+    /**
+     * Reconcile balances with the history on a schedule. Runs can always be started through the API.
+     */
+    private boolean scheduled = false;
+
+    private long intervalMs = 15L * 60 * 1000;
+
+    /**
+     * Threads checking accounts during a run, 0 for one per processor
+     */
+    private int parallelism = 0;
+}
@@ -0,0 +1,23 @@
+package com.example.bankingtransactions.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "banking.snapshot")
+public class SnapshotProperties {
+
+    /**
+     * Periodically snapshot account balances so startup only replays the journal tail. Requires the journal.
+     */
+    private boolean enabled = true;
+
+    private String directory = "data/snapshots";
+
+    private long intervalMs = 60_000;
+
+    /**
+     * Number of snapshot files to keep, newest first
+     */
+    private int retained = 2;
+}
@@ -0,0 +1,52 @@
+package com.example.bankingtransactions.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors for work that blocks, on account locks or waiting for the journal. With virtual threads enabled
+ * ({@code spring.threads.virtual.enabled=true} on Java 21, which also moves request handling onto them), every task
+ * gets a virtual thread of its own and parks without holding a platform thread, instead of queueing for one of a
+ * fixed number of platform threads. CPU-bound work and threads that spin keep platform threads in either mode.
+ */
+@Component
+@Slf4j
+public class WorkerExecutors {
+
+    private final boolean virtual;
+
+    public WorkerExecutors(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+        if (!virtual && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("spring.threads.virtual.enabled needs Java 21; running on platform threads");
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Returns an executor running each task on its own virtual thread, or on one of {@code platformThreads} daemon
+     * threads named after the executor.
+     */
+    public ExecutorService newExecutor(String name, int platformThreads) {
+        if (virtual) {
+            // Executors.newThreadPerTaskExecutor is Java 21 API; an unbounded cached pool behaves the same
+            return Executors.newCachedThreadPool(new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory());
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
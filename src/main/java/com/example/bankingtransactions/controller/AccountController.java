@@ -1,13 +1,22 @@
 package com.example.bankingtransactions.controller;
 
+import com.example.bankingtransactions.admission.AdmissionControl;
 import com.example.bankingtransactions.dto.*;
+import com.example.bankingtransactions.feed.BalanceFeed;
 import com.example.bankingtransactions.service.AccountService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -16,15 +25,28 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class AccountController {
 
+    // Retries of a deposit, withdrawal or transfer sent with the same key return the original response
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final AccountService accountService;
+    // Requests that change the ledger are admitted here, or rejected with 429 under overload
+    private final AdmissionControl admissionControl;
+    private final BalanceFeed balanceFeed;
 
     // POST endpoint to create a new bank account
     @PostMapping
     public ResponseEntity<AccountDto> createAccount(@Valid @RequestBody CreateAccountRequest createAccountRequest) {
-        AccountDto account = accountService.createAccount(createAccountRequest);
+        AccountDto account = admissionControl.admit(List.of(),
+                () -> accountService.createAccount(createAccountRequest));
         return ResponseEntity.status(HttpStatus.CREATED).body(account);
     }
 
+    // GET endpoint to subscribe to balance changes of one or more accounts as server-sent events
+    @GetMapping(path = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToBalances(@RequestParam List<UUID> accountIds) {
+        return balanceFeed.subscribe(accountIds);
+    }
+
     // GET endpoint to retrieve details of a specific account
     @GetMapping("/{accountId}")
     public ResponseEntity<AccountDto> getAccount(@PathVariable UUID accountId) {
@@ -32,31 +54,91 @@ public class AccountController {
         return ResponseEntity.ok(account);
     }
 
+    // GET endpoint to retrieve the totals of an account's transaction history
+    @GetMapping("/{accountId}/summary")
+    public ResponseEntity<AccountSummaryDto> getAccountSummary(@PathVariable UUID accountId) {
+        AccountSummaryDto summary = accountService.getAccountSummary(accountId);
+        return ResponseEntity.ok(summary);
+    }
+
+    // GET endpoint to retrieve an account's balance, now or at a point in time
+    @GetMapping("/{accountId}/balance")
+    public ResponseEntity<AccountBalanceDto> getBalance(
+            @PathVariable UUID accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        AccountBalanceDto balance = accountService.getBalance(accountId, at);
+        return ResponseEntity.ok(balance);
+    }
+
     // POST endpoint to transfer funds between accounts
     @PostMapping("/transfer")
-    public ResponseEntity<TransactionDto> transferFunds(@Valid @RequestBody TransferRequest transferRequest) {
-        TransactionDto transactionDto = accountService.transferFunds(transferRequest);
+    public ResponseEntity<TransactionDto> transferFunds(
+            @Valid @RequestBody TransferRequest transferRequest,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        TransactionDto transactionDto = admissionControl.admit(
+                List.of(transferRequest.getFromAccountId(), transferRequest.getToAccountId()),
+                () -> accountService.transferFunds(transferRequest, idempotencyKey));
         return ResponseEntity.ok(transactionDto);
     }
 
-    // GET endpoint to retrieve transaction history for a specific account
+    // POST endpoint to execute many transfers in one request
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<BatchTransferResponse> transferBatch(@Valid @RequestBody BatchTransferRequest batchTransferRequest) {
+        List<UUID> accountIds = new ArrayList<>(2 * batchTransferRequest.getTransfers().size());
+        for (TransferRequest transfer : batchTransferRequest.getTransfers()) {
+            accountIds.add(transfer.getFromAccountId());
+            accountIds.add(transfer.getToAccountId());
+        }
+        BatchTransferResponse response = admissionControl.admitBatch(accountIds,
+                () -> accountService.transferBatch(batchTransferRequest));
+        return ResponseEntity.ok(response);
+    }
+
+    // GET endpoint to retrieve a page of transaction history for a specific account
     @GetMapping("/{accountId}/transactions")
-    public ResponseEntity<List<TransactionDto>> getTransactionHistory(@PathVariable UUID accountId) {
-        List<TransactionDto> transactions = accountService.getTransactionHistory(accountId);
+    public ResponseEntity<TransactionPageDto> getTransactionHistory(
+            @PathVariable UUID accountId,
+            @RequestParam(defaultValue = "" + AccountService.DEFAULT_HISTORY_PAGE_SIZE) int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        TransactionPageDto transactions = accountService.getTransactionHistory(accountId, limit, cursor, from, to);
         return ResponseEntity.ok(transactions);
     }
 
+    // GET endpoint to stream the full transaction history of an account as NDJSON or CSV
+    @GetMapping("/{accountId}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactionHistory(
+            @PathVariable UUID accountId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        StreamingResponseBody body = accountService.exportTransactionHistory(accountId, format, from, to);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions-" + accountId
+                        + (csv ? ".csv" : ".ndjson") + "\"")
+                .body(body);
+    }
+
     // POST endpoint to deposit funds into an account
     @PostMapping("/deposit")
-    public ResponseEntity<TransactionDto> depositFunds(@Valid @RequestBody DepositRequest request) {
-        TransactionDto transactionDto = accountService.depositFunds(request);
+    public ResponseEntity<TransactionDto> depositFunds(
+            @Valid @RequestBody DepositRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        TransactionDto transactionDto = admissionControl.admit(List.of(request.getToAccountId()),
+                () -> accountService.depositFunds(request, idempotencyKey));
         return ResponseEntity.ok(transactionDto);
     }
 
     // POST endpoint to withdraw funds from an account
     @PostMapping("/withdraw")
-    public ResponseEntity<TransactionDto> withdrawFunds(@Valid @RequestBody WithdrawRequest request) {
-        TransactionDto transactionDto = accountService.withdrawFunds(request);
+    public ResponseEntity<TransactionDto> withdrawFunds(
+            @Valid @RequestBody WithdrawRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        TransactionDto transactionDto = admissionControl.admit(List.of(request.getFromAccountId()),
+                () -> accountService.withdrawFunds(request, idempotencyKey));
         return ResponseEntity.ok(transactionDto);
     }
 }
@@ -0,0 +1,38 @@
+package com.example.bankingtransactions.controller;
+
+import com.example.bankingtransactions.cluster.ClusterClient;
+import com.example.bankingtransactions.cluster.CrossShardTransfers;
+import com.example.bankingtransactions.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Endpoints called by other cluster nodes, not by clients. They are served on the internal listener only, to callers
+ * with the cluster secret, which name themselves in the forwarded-by header.
+ */
+@RestController
+@RequestMapping("/internal/cluster")
+@ConditionalOnProperty(name = "banking.cluster.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ClusterController {
+
+    private final CrossShardTransfers crossShardTransfers;
+
+    // POST endpoint for the first phase of a transfer from another node: checks the destination can be credited
+    @PostMapping("/transfers/prepare")
+    public ResponseEntity<Void> prepareTransfer(@RequestHeader(ClusterClient.FORWARDED_HEADER) String node,
+                                                @RequestBody Transaction transaction) {
+        crossShardTransfers.prepare(node, transaction);
+        return ResponseEntity.noContent().build();
+    }
+
+    // POST endpoint for the second phase of a transfer from another node: credits the destination account
+    @PostMapping("/transfers/commit")
+    public ResponseEntity<Void> commitTransfer(@RequestHeader(ClusterClient.FORWARDED_HEADER) String node,
+                                               @RequestBody Transaction transaction) {
+        crossShardTransfers.commit(node, transaction);
+        return ResponseEntity.noContent().build();
+    }
+}
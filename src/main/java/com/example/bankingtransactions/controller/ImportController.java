@@ -0,0 +1,51 @@
+package com.example.bankingtransactions.controller;
+
+import com.example.bankingtransactions.imports.BulkImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk imports for migrating from other systems. The file is sent as the request body, optionally gzipped, and
+ * the response streams per-row errors and progress as NDJSON while the import runs.
+ */
+@RestController
+@RequestMapping("/api/import")
+@RequiredArgsConstructor
+public class ImportController {
+
+    private final BulkImportService bulkImportService;
+
+    // POST endpoint to import accounts from a CSV or NDJSON file
+    @PostMapping("/accounts")
+    public ResponseEntity<StreamingResponseBody> importAccounts(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "csv") String format) throws IOException {
+        return stream(bulkImportService.importAccounts(body(request), format));
+    }
+
+    // POST endpoint to import transaction history from a CSV or NDJSON file, such as a history export
+    @PostMapping("/transactions")
+    public ResponseEntity<StreamingResponseBody> importTransactions(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "csv") String format) throws IOException {
+        return stream(bulkImportService.importTransactions(body(request), format));
+    }
+
+    private static InputStream body(HttpServletRequest request) throws IOException {
+        InputStream in = request.getInputStream();
+        return "gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING)) ? new GZIPInputStream(in) : in;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> stream(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bankingtransactions.controller;
+
+import com.example.bankingtransactions.dto.ReconciliationReportDto;
+import com.example.bankingtransactions.reconciliation.LedgerReconciler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Reconciliation of balances with the history of the accounts on this node
+ */
+@RestController
+@RequestMapping("/api/reconciliation")
+@RequiredArgsConstructor
+public class ReconciliationController {
+
+    private final LedgerReconciler ledgerReconciler;
+
+    // POST endpoint to reconcile every account now and return the report
+    @PostMapping
+    public ResponseEntity<ReconciliationReportDto> reconcile() {
+        return ResponseEntity.ok(ledgerReconciler.reconcile());
+    }
+
+    // GET endpoint to retrieve the report of the latest run, scheduled or not
+    @GetMapping
+    public ResponseEntity<ReconciliationReportDto> getLastReport() {
+        ReconciliationReportDto report = ledgerReconciler.getLastReport();
+        return report == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(report);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.bankingtransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An account's balance at a point in time
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalanceDto {
+    private UUID accountId;
+    private String message;
+    private String balance;
+    private LocalDateTime at;
+}
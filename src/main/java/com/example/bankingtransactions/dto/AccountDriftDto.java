@@ -0,0 +1,23 @@
+package com.example.bankingtransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * An account whose balance disagrees with its history or its summary. The expected balances are the balance the
+ * account was opened with plus the net of its transactions, less transfers debited from it and not yet credited.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountDriftDto {
+    private UUID accountId;
+    private String balance;
+    private String historyBalance;
+    private String summaryBalance;
+    private long historyTransactions;
+    private long summaryTransactions;
+}
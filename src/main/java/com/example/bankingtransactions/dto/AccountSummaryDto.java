@@ -0,0 +1,25 @@
+package com.example.bankingtransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Totals of an account's transaction history
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountSummaryDto {
+    private UUID accountId;
+    private String message;
+    private String totalDeposited;
+    private String totalWithdrawn;
+    private String totalTransferredIn;
+    private String totalTransferredOut;
+    private long transactionCount;
+    private LocalDateTime lastActivity;
+}
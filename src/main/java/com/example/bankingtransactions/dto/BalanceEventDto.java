@@ -0,0 +1,23 @@
+package com.example.bankingtransactions.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * An account's balance pushed to balance feed subscribers, with the latest transaction that changed it. Transactions
+ * that changed it since the previous event but were coalesced into this one are only counted.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BalanceEventDto {
+    private UUID accountId;
+    private String balance;
+    private TransactionDto transaction;
+    private long coalescedTransactions;
+}
@@ -0,0 +1,21 @@
+package com.example.bankingtransactions.dto;
+
+import com.example.bankingtransactions.enums.BatchMode;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+
+    @NotEmpty(message = "Batch must contain at least one transfer")
+    @Size(max = 10000, message = "Batch cannot contain more than 10000 transfers")
+    private List<@Valid @NotNull TransferRequest> transfers;
+
+    @NotNull(message = "Batch mode cannot be null")
+    private BatchMode mode = BatchMode.BEST_EFFORT;
+}
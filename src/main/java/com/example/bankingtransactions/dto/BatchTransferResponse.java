@@ -0,0 +1,23 @@
+package com.example.bankingtransactions.dto;
+
+import com.example.bankingtransactions.enums.BatchMode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for JSON serialization/deserialization
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResponse {
+    private String message;
+    private BatchMode mode;
+    private int succeeded;
+    private int failed;
+    // In request order
+    private List<BatchTransferResult> results;
+}
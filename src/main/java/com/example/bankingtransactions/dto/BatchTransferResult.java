@@ -0,0 +1,20 @@
+package com.example.bankingtransactions.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one transfer in a batch. Exactly one of transaction and error is set.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTransferResult {
+    private int index;
+    private boolean success;
+    private TransactionDto transaction;
+    private String error;
+}
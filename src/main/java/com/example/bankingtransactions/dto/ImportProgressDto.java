@@ -0,0 +1,31 @@
+package com.example.bankingtransactions.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of the NDJSON stream answering a bulk import: either a row that was not imported, with its number and
+ * error, or the running totals, sent after every batch and once more with {@code complete} set at the end.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportProgressDto {
+    private Long row;
+    private String error;
+    private Long rowsRead;
+    private Long imported;
+    private Long failed;
+    private Boolean complete;
+
+    public static ImportProgressDto rowError(long row, String error) {
+        return new ImportProgressDto(row, error, null, null, null, null);
+    }
+
+    public static ImportProgressDto totals(long rowsRead, long imported, long failed, boolean complete) {
+        return new ImportProgressDto(null, null, rowsRead, imported, failed, complete);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bankingtransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Outcome of a reconciliation run. Transactions are counted once per account they belong to, and transfers between
+ * two accounts on this node are totalled from both sides: money is conserved if the totals match. Conservation is
+ * left unknown (null) if any account was skipped.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationReportDto {
+    private String message;
+    private LocalDateTime startedAt;
+    private long durationMs;
+    private int parallelism;
+    private long accountsChecked;
+    private long accountsSkipped;
+    private long transactionsChecked;
+    private long driftedAccounts;
+    // The first drifted accounts found, up to a limit
+    private List<AccountDriftDto> drifts;
+    private String transferredOut;
+    private String transferredIn;
+    private Boolean conserved;
+}
@@ -0,0 +1,23 @@
+package com.example.bankingtransactions.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for JSON serialization/deserialization
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionPageDto {
+    private String message;
+    // Newest first
+    private List<TransactionDto> transactions;
+    // Pass as the cursor parameter to fetch the next page; absent on the last page
+    private String nextCursor;
+}
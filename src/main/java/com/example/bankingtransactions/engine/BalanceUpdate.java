@@ -0,0 +1,10 @@
+package com.example.bankingtransactions.engine;
+
+import com.example.bankingtransactions.model.Transaction;
+
+/**
+ * Transaction recorded by the ledger engine, together with the balance it left behind on the account it was
+ * requested for (the source account of a transfer) and the journal offset to wait on for durability
+ */
+public record BalanceUpdate(Transaction transaction, long newBalance, long journalOffset) {
+}
@@ -0,0 +1,39 @@
+package com.example.bankingtransactions.engine;
+
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes balance updates. Futures complete once the update is applied and journaled, but not necessarily
+ * durable: callers wait on {@link com.example.bankingtransactions.journal.LedgerJournal#awaitDurable(long)}
+ * with the returned journal offset. Business failures such as insufficient funds complete the future
+ * exceptionally with the usual exceptions.
+ */
+public interface LedgerEngine {
+
+    CompletableFuture<BalanceUpdate> deposit(Account account, long amount);
+
+    CompletableFuture<BalanceUpdate> withdraw(Account account, long amount);
+
+    CompletableFuture<BalanceUpdate> transfer(Account from, Account to, long amount, String description);
+
+    /**
+     * Runs independent transfers, each succeeding or failing on its own. Transfers from the same account are
+     * applied in list order.
+     */
+    List<CompletableFuture<BalanceUpdate>> transferAll(List<TransferCommand> transfers);
+
+    /**
+     * Debits the source account of a transfer that is credited separately, leaving it pending until then.
+     */
+    CompletableFuture<BalanceUpdate> debit(Account from, Transaction transaction);
+
+    /**
+     * Credits a pending transfer to its destination account, or back to its source account to refund it. Completes
+     * with the journal offset of the credit.
+     */
+    CompletableFuture<Long> credit(Account account, Transaction transaction);
+}
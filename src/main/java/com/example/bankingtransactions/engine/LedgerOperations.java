@@ -0,0 +1,257 @@
+package com.example.bankingtransactions.engine;
+
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.exception.LedgerUnavailableException;
+import com.example.bankingtransactions.exception.TransferException;
+import com.example.bankingtransactions.id.IdGenerator;
+import com.example.bankingtransactions.journal.LedgerJournal;
+import com.example.bankingtransactions.journal.PendingCredit;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies balance updates and records them in the journal and transaction history. Callers must have exclusive
+ * access to the accounts involved, either by holding their locks or by owning their partition.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerOperations {
+
+    private final TransactionRepository transactionRepository;
+    private final LedgerJournal ledgerJournal;
+    private final AccountSummaryRepository accountSummaryRepository;
+    private final IdGenerator idGenerator;
+    // Transfers debited but not yet credited, whether between engine partitions or between nodes
+    private final Map<UUID, PendingCredit> pendingCredits = new ConcurrentHashMap<>();
+
+    public BalanceUpdate deposit(Account account, long amount) {
+        UUID accountId = account.getId();
+        try {
+            account.deposit(amount);
+        } catch (Exception e) {
+            throw new TransferException("Failed to deposit funds into account " + accountId);
+        }
+
+        // Create transaction record after successful balance update
+        Transaction transaction = new Transaction();
+        transaction.setId(idGenerator.newId());
+        transaction.setToAccountId(accountId);
+        transaction.setAmount(amount);
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setTimestamp(LocalDateTime.now());
+
+        long journalOffset = appendToJournal(transaction, () -> account.withdraw(amount), account);
+        return new BalanceUpdate(record(transaction), account.getBalance(), journalOffset);
+    }
+
+    public BalanceUpdate withdraw(Account account, long amount) {
+        UUID accountId = account.getId();
+        if (!account.withdraw(amount)) {
+            throw new InsufficientFundsException(accountId, amount);
+        }
+
+        // Create transaction record after successful balance update
+        Transaction transaction = new Transaction();
+        transaction.setId(idGenerator.newId());
+        transaction.setFromAccountId(accountId);
+        transaction.setAmount(amount);
+        transaction.setType(TransactionType.WITHDRAWAL);
+        transaction.setTimestamp(LocalDateTime.now());
+
+        long journalOffset = appendToJournal(transaction, () -> account.deposit(amount), account);
+        return new BalanceUpdate(record(transaction), account.getBalance(), journalOffset);
+    }
+
+    /**
+     * Moves money between two accounts and records the transfer.
+     */
+    public BalanceUpdate transfer(Account fromAccount, Account toAccount, long amount, String description) {
+        UUID fromAccountId = fromAccount.getId();
+        UUID toAccountId = toAccount.getId();
+        if (!fromAccount.withdraw(amount)) {
+            throw new InsufficientFundsException(fromAccountId, amount);
+        }
+
+        try {
+            toAccount.deposit(amount);
+        } catch (Exception e) {
+            // If the deposit fails, roll back the withdrawal
+            log.error("Deposit to account {} failed unexpectedly. Rolling back withdrawal from account {}",
+                    toAccountId, fromAccountId, e);
+            fromAccount.deposit(amount);
+            throw new TransferException("Failed to deposit funds into account " + toAccountId + ". Transfer cancelled.");
+        }
+
+        // Create transaction record after successful balance updates
+        Transaction transaction = newTransferTransaction(fromAccountId, toAccountId, amount, description);
+
+        long journalOffset = appendToJournal(transaction, () -> {
+            toAccount.withdraw(amount);
+            fromAccount.deposit(amount);
+        }, fromAccount, toAccount);
+        return new BalanceUpdate(record(transaction), fromAccount.getBalance(), journalOffset);
+    }
+
+    /**
+     * Debits the source account of a transfer whose credit is applied separately by {@link #credit}, or on another
+     * node. Only the source account needs to be held. The transfer is pending until credited, and enters the history
+     * once it is.
+     */
+    public BalanceUpdate debit(Account fromAccount, Transaction transaction) {
+        if (!fromAccount.withdraw(transaction.getAmount())) {
+            throw new InsufficientFundsException(fromAccount.getId(), transaction.getAmount());
+        }
+        // Registered before the debit is journaled, so a snapshot never covers the debit without it
+        pendingCredits.put(transaction.getId(), new PendingCredit(transaction, journalOffset()));
+        try {
+            long journalOffset = ledgerJournal.appendTransferDebit(transaction);
+            fromAccount.setJournalOffset(journalOffset);
+            return new BalanceUpdate(transaction, fromAccount.getBalance(), journalOffset);
+        } catch (RuntimeException e) {
+            log.error("Failed to write transaction {} to the journal. Rolling back balance changes", transaction.getId(), e);
+            pendingCredits.remove(transaction.getId());
+            fromAccount.deposit(transaction.getAmount());
+            throw new LedgerUnavailableException("Failed to record transaction " + transaction.getId()
+                    + ". Operation cancelled.");
+        }
+    }
+
+    /**
+     * Credits a transfer previously debited by {@link #debit} to the given account, which is the destination
+     * account, or the source account to refund the transfer. Only the credited account needs to be held.
+     * The journal record is written before the balance changes: once debited, a transfer must be credited
+     * somewhere, so a failed write is left for recovery to complete rather than undone.
+     */
+    public long credit(Account account, Transaction transaction) {
+        if (account.getBalance() > Long.MAX_VALUE - transaction.getAmount()) {
+            throw new TransferException("Failed to deposit funds into account " + account.getId() + ". Transfer cancelled.");
+        }
+        long journalOffset = ledgerJournal.appendTransferCredit(transaction, account.getId());
+        account.deposit(transaction.getAmount());
+        account.setJournalOffset(journalOffset);
+        pendingCredits.remove(transaction.getId());
+        if (!account.getId().equals(transaction.getFromAccountId())) {
+            record(transaction);
+        }
+        return journalOffset;
+    }
+
+    /**
+     * Completes a transfer debited here whose destination account, on another node, has been credited. No account
+     * needs to be held. Only the first call for a transfer writes its credit record; later ones return the offset
+     * the journal has been written up to.
+     */
+    public long completeRemoteCredit(Transaction transaction) {
+        PendingCredit pending = pendingCredits.remove(transaction.getId());
+        if (pending == null) {
+            return journalOffset();
+        }
+        long journalOffset;
+        try {
+            journalOffset = ledgerJournal.appendTransferCredit(transaction, transaction.getToAccountId());
+        } catch (RuntimeException e) {
+            // Still debited and credited on the other node, so left for the next retry to complete
+            pendingCredits.put(transaction.getId(), pending);
+            throw e;
+        }
+        record(transaction);
+        return journalOffset;
+    }
+
+    /**
+     * Transfers whose debit may have been journaled without their credit, for inclusion in balance snapshots.
+     */
+    public Collection<PendingCredit> pendingCredits() {
+        return List.copyOf(pendingCredits.values());
+    }
+
+    public boolean isPending(UUID transactionId) {
+        return pendingCredits.containsKey(transactionId);
+    }
+
+    /**
+     * Total of the transfers debited from the account and not yet credited, which its history does not show yet.
+     */
+    public long pendingDebits(UUID accountId) {
+        long total = 0;
+        for (PendingCredit pending : pendingCredits.values()) {
+            if (accountId.equals(pending.transaction().getFromAccountId())) {
+                total += pending.transaction().getAmount();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Takes over a transfer that recovery found debited but not credited, for another node to complete.
+     */
+    public void restorePendingCredit(PendingCredit pendingCredit) {
+        pendingCredits.put(pendingCredit.transaction().getId(), pendingCredit);
+    }
+
+    /**
+     * Returns the offset the journal has been written up to, which is at or before any record appended later.
+     */
+    public long journalOffset() {
+        return ledgerJournal.getWrittenOffset();
+    }
+
+    public Transaction newTransferTransaction(UUID fromAccountId, UUID toAccountId, long amount, String description) {
+        Transaction transaction = new Transaction();
+        transaction.setId(idGenerator.newId());
+        transaction.setFromAccountId(fromAccountId);
+        transaction.setToAccountId(toAccountId);
+        transaction.setAmount(amount);
+        transaction.setType(TransactionType.TRANSFER);
+        transaction.setDescription(description);
+        transaction.setTimestamp(LocalDateTime.now());
+        return transaction;
+    }
+
+    /**
+     * Adds transactions the caller applied to balances itself, such as an all-or-nothing batch, to the history and
+     * to the summaries of their accounts, as for transactions applied here.
+     */
+    public void recordAll(List<Transaction> transactions) {
+        transactions.forEach(this::record);
+    }
+
+    // Adds the transaction to the history and to the summaries of both accounts
+    private Transaction record(Transaction transaction) {
+        Transaction saved = transactionRepository.save(transaction);
+        accountSummaryRepository.record(saved);
+        return saved;
+    }
+
+    /**
+     * Appends the transaction to the journal, undoing the balance changes already made if that fails.
+     */
+    private long appendToJournal(Transaction transaction, Runnable rollback, Account... accounts) {
+        try {
+            long journalOffset = ledgerJournal.appendTransaction(transaction);
+            for (Account account : accounts) {
+                account.setJournalOffset(journalOffset);
+            }
+            return journalOffset;
+        } catch (RuntimeException e) {
+            log.error("Failed to write transaction {} to the journal. Rolling back balance changes", transaction.getId(), e);
+            rollback.run();
+            throw new LedgerUnavailableException("Failed to record transaction " + transaction.getId()
+                    + ". Operation cancelled.");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.bankingtransactions.engine;
+
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Runs every update on the calling thread under the striped account locks, so futures are already complete
+ * when returned.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.engine.mode", havingValue = "LOCKING", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LockingLedgerEngine implements LedgerEngine {
+
+    private final AccountRepository accountRepository;
+    private final LedgerOperations ledgerOperations;
+    private final ExecutorService batchTransferExecutor;
+
+    @Override
+    public CompletableFuture<BalanceUpdate> deposit(Account account, long amount) {
+        return run(() -> accountRepository.withCreditLock(account,
+                () -> ledgerOperations.deposit(account, amount)));
+    }
+
+    @Override
+    public CompletableFuture<BalanceUpdate> withdraw(Account account, long amount) {
+        return run(() -> accountRepository.withDebitLock(account, amount,
+                () -> ledgerOperations.withdraw(account, amount)));
+    }
+
+    @Override
+    public CompletableFuture<BalanceUpdate> transfer(Account from, Account to, long amount, String description) {
+        // Both balance updates and the transaction record happen atomically under the two account locks
+        return run(() -> accountRepository.withTransferLocks(from, to, amount,
+                () -> ledgerOperations.transfer(from, to, amount, description)));
+    }
+
+    @Override
+    public CompletableFuture<BalanceUpdate> debit(Account from, Transaction transaction) {
+        return run(() -> accountRepository.withDebitLock(from, transaction.getAmount(),
+                () -> ledgerOperations.debit(from, transaction)));
+    }
+
+    @Override
+    public CompletableFuture<Long> credit(Account account, Transaction transaction) {
+        return run(() -> accountRepository.withCreditLock(account,
+                () -> ledgerOperations.credit(account, transaction)));
+    }
+
+    /**
+     * Groups the transfers by the accounts they touch: each group locks its accounts once and runs its transfers
+     * in list order, and independent groups run in parallel.
+     */
+    @Override
+    public List<CompletableFuture<BalanceUpdate>> transferAll(List<TransferCommand> transfers) {
+        List<CompletableFuture<BalanceUpdate>> futures = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        List<List<Integer>> groups = groupByAccounts(transfers);
+        for (List<Integer> group : groups) {
+            Runnable task = () -> transferGroup(transfers, group, futures);
+            if (groups.size() == 1) {
+                task.run();
+            } else {
+                CompletableFuture.runAsync(task, batchTransferExecutor).exceptionally(e -> {
+                    group.forEach(index -> futures.get(index).completeExceptionally(e));
+                    return null;
+                });
+            }
+        }
+        return futures;
+    }
+
+    // Runs the transfers of one group in order while holding all of the group's account locks
+    private void transferGroup(List<TransferCommand> transfers, List<Integer> group,
+                               List<CompletableFuture<BalanceUpdate>> futures) {
+        Set<UUID> accountIds = new HashSet<>();
+        for (int index : group) {
+            accountIds.add(transfers.get(index).from().getId());
+            accountIds.add(transfers.get(index).to().getId());
+        }
+        accountRepository.withAccountLocks(accountIds, () -> {
+            for (int index : group) {
+                TransferCommand transfer = transfers.get(index);
+                try {
+                    futures.get(index).complete(ledgerOperations.transfer(
+                            transfer.from(), transfer.to(), transfer.amount(), transfer.description()));
+                } catch (RuntimeException e) {
+                    futures.get(index).completeExceptionally(e);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Splits the transfers into groups of indexes that share no accounts, keeping list order within each group.
+     */
+    private static List<List<Integer>> groupByAccounts(List<TransferCommand> transfers) {
+        Map<UUID, UUID> parents = new HashMap<>();
+        for (TransferCommand transfer : transfers) {
+            UUID fromRoot = findRoot(parents, transfer.from().getId());
+            UUID toRoot = findRoot(parents, transfer.to().getId());
+            if (!fromRoot.equals(toRoot)) {
+                parents.put(fromRoot, toRoot);
+            }
+        }
+        Map<UUID, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            groups.computeIfAbsent(findRoot(parents, transfers.get(i).from().getId()), root -> new ArrayList<>()).add(i);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static UUID findRoot(Map<UUID, UUID> parents, UUID accountId) {
+        UUID root = accountId;
+        UUID parent;
+        while ((parent = parents.get(root)) != null) {
+            root = parent;
+        }
+        // Path compression
+        UUID current = accountId;
+        while (!current.equals(root)) {
+            UUID next = parents.get(current);
+            parents.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    private static <T> CompletableFuture<T> run(Supplier<T> update) {
+        try {
+            return CompletableFuture.completedFuture(update.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
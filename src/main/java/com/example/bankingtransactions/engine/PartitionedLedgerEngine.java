@@ -0,0 +1,320 @@
+package com.example.bankingtransactions.engine;
+
+import com.example.bankingtransactions.config.EngineProperties;
+import com.example.bankingtransactions.exception.LedgerUnavailableException;
+import com.example.bankingtransactions.exception.TransferException;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.util.MpscRingBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Splits accounts into partitions by id and applies every update on the single thread that owns the account's
+ * partition, fed through a lock-free ring buffer. Updates to a hot account are serialized on its partition
+ * thread instead of contending for its lock.
+ * <p>
+ * A transfer within one partition is applied in one step. A transfer between partitions is debited by the source
+ * partition, which then hands the credit to the destination partition; each half has its own journal record and
+ * only ever touches its own partition's account, so no thread waits on another partition. Until it is credited
+ * the transfer is pending: it is included in balance snapshots so that recovery can complete it, and it is
+ * refunded to the source account if the credit fails.
+ * <p>
+ * Partition threads still take the account's stripe lock around each update. It is uncontended in normal
+ * operation and keeps snapshots and all-or-nothing batches, which lock accounts directly, consistent.
+ * <p>
+ * Hot accounts with split balances belong to no partition, since one thread would serialize them again: their
+ * updates run on the calling thread, or on the partition handing them a credit, under their sub-balance locks.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.engine.mode", havingValue = "PARTITIONED")
+@Slf4j
+public class PartitionedLedgerEngine implements LedgerEngine {
+
+    // Empty polls spent spinning before a partition thread parks
+    private static final int SPIN_LIMIT = 1000;
+    // Upper bound on a park, in case a wake-up is missed
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final AccountRepository accountRepository;
+    private final LedgerOperations ledgerOperations;
+    private final Partition[] partitions;
+    // Transfers between partitions that have been submitted but not yet credited
+    private final AtomicInteger transfersInFlight = new AtomicInteger();
+
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+
+    public PartitionedLedgerEngine(AccountRepository accountRepository, LedgerOperations ledgerOperations,
+                                   EngineProperties properties) {
+        this.accountRepository = accountRepository;
+        this.ledgerOperations = ledgerOperations;
+        int count = properties.getPartitions() > 0
+                ? properties.getPartitions()
+                : Runtime.getRuntime().availableProcessors();
+        this.partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(i, properties.getRingSize());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+        log.info("Started partitioned ledger engine with {} partitions", partitions.length);
+    }
+
+    /**
+     * Stops accepting updates, then lets the partitions finish everything already submitted, including the
+     * credits of transfers between partitions.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        accepting = false;
+        running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+            partition.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            if (partition.thread.isAlive()) {
+                log.warn("Partition {} did not finish its queued updates within {} ms", partition.index, SHUTDOWN_TIMEOUT_MS);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<BalanceUpdate> deposit(Account account, long amount) {
+        CompletableFuture<BalanceUpdate> future = new CompletableFuture<>();
+        submit(partitionOf(account), future, () -> complete(future, () -> accountRepository.withCreditLock(
+                account, () -> ledgerOperations.deposit(account, amount))));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<BalanceUpdate> withdraw(Account account, long amount) {
+        CompletableFuture<BalanceUpdate> future = new CompletableFuture<>();
+        submit(partitionOf(account), future, () -> complete(future, () -> accountRepository.withDebitLock(
+                account, amount, () -> ledgerOperations.withdraw(account, amount))));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<BalanceUpdate> transfer(Account from, Account to, long amount, String description) {
+        CompletableFuture<BalanceUpdate> future = new CompletableFuture<>();
+        Partition source = partitionOf(from);
+        Partition destination = partitionOf(to);
+        if (source == destination) {
+            submit(source, future, () -> complete(future, () -> accountRepository.withTransferLocks(
+                    from, to, amount, () -> ledgerOperations.transfer(from, to, amount, description))));
+        } else {
+            transfersInFlight.incrementAndGet();
+            if (!submit(source, future, () -> debit(from, to, amount, description, destination, future))) {
+                transfersInFlight.decrementAndGet();
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Submits each transfer to its source partition in list order, so transfers from the same account are
+     * applied in that order. Transfers from different partitions run in parallel.
+     */
+    @Override
+    public List<CompletableFuture<BalanceUpdate>> transferAll(List<TransferCommand> transfers) {
+        List<CompletableFuture<BalanceUpdate>> futures = new ArrayList<>(transfers.size());
+        for (TransferCommand transfer : transfers) {
+            futures.add(transfer(transfer.from(), transfer.to(), transfer.amount(), transfer.description()));
+        }
+        return futures;
+    }
+
+    @Override
+    public CompletableFuture<BalanceUpdate> debit(Account from, Transaction transaction) {
+        CompletableFuture<BalanceUpdate> future = new CompletableFuture<>();
+        submit(partitionOf(from), future, () -> complete(future, () -> accountRepository.withDebitLock(
+                from, transaction.getAmount(), () -> ledgerOperations.debit(from, transaction))));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Long> credit(Account account, Transaction transaction) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        submit(partitionOf(account), future, () -> complete(future, () -> accountRepository.withCreditLock(
+                account, () -> ledgerOperations.credit(account, transaction))));
+        return future;
+    }
+
+    // Runs on the source partition
+    private void debit(Account from, Account to, long amount, String description, Partition destination,
+                       CompletableFuture<BalanceUpdate> future) {
+        Transaction transaction = ledgerOperations.newTransferTransaction(from.getId(), to.getId(), amount, description);
+        BalanceUpdate debit;
+        try {
+            debit = accountRepository.withDebitLock(from, amount, () -> ledgerOperations.debit(from, transaction));
+        } catch (RuntimeException e) {
+            transfersInFlight.decrementAndGet();
+            future.completeExceptionally(e);
+            return;
+        }
+        handOver(destination, () -> credit(to, debit, future));
+    }
+
+    // Runs on the destination partition, or on the source partition when refunding
+    private void credit(Account account, BalanceUpdate debit, CompletableFuture<BalanceUpdate> future) {
+        Transaction transaction = debit.transaction();
+        try {
+            long journalOffset = accountRepository.withCreditLock(account,
+                    () -> ledgerOperations.credit(account, transaction));
+            transfersInFlight.decrementAndGet();
+            if (account.getId().equals(transaction.getToAccountId())) {
+                future.complete(new BalanceUpdate(transaction, debit.newBalance(), journalOffset));
+            }
+        } catch (TransferException e) {
+            if (account.getId().equals(transaction.getToAccountId())) {
+                // The destination cannot take the money, so send it back
+                future.completeExceptionally(e);
+                Account source = accountRepository.findById(transaction.getFromAccountId()).orElseThrow();
+                handOver(partitionOf(source), () -> credit(source, debit, future));
+            } else {
+                log.error("Failed to refund transfer {} to account {}. Leaving it to recovery", transaction.getId(),
+                        account.getId(), e);
+                transfersInFlight.decrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to credit transfer {} to account {}. Leaving it to recovery", transaction.getId(),
+                    account.getId(), e);
+            transfersInFlight.decrementAndGet();
+            future.completeExceptionally(new LedgerUnavailableException("Failed to record transaction "
+                    + transaction.getId() + ". It will be completed when the ledger restarts."));
+        }
+    }
+
+    // A null partition runs the command on the calling thread
+    private boolean submit(Partition partition, CompletableFuture<?> future, Runnable command) {
+        if (!accepting) {
+            future.completeExceptionally(new LedgerUnavailableException("Ledger is shutting down"));
+            return false;
+        }
+        if (partition == null) {
+            command.run();
+        } else {
+            partition.submit(command);
+        }
+        return true;
+    }
+
+    private static void handOver(Partition partition, Runnable credit) {
+        if (partition == null) {
+            credit.run();
+        } else {
+            partition.handOver(credit);
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> update) {
+        try {
+            future.complete(update.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    // Null for hot accounts
+    private Partition partitionOf(Account account) {
+        if (account.getSplitBalance() != null) {
+            return null;
+        }
+        int h = account.getId().hashCode();
+        return partitions[Math.floorMod(h ^ (h >>> 16), partitions.length)];
+    }
+
+    private final class Partition implements Runnable {
+
+        private final int index;
+        private final MpscRingBuffer<Runnable> commands;
+        // Credits handed over by other partitions. Unbounded, so a partition never blocks on another's full ring
+        private final Queue<Runnable> credits = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private volatile boolean sleeping;
+
+        Partition(int index, int ringSize) {
+            this.index = index;
+            this.commands = new MpscRingBuffer<>(ringSize);
+            this.thread = new Thread(this, "ledger-partition-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Runnable command) {
+            int attempts = 0;
+            while (!commands.offer(command)) {
+                // The ring is full: back off until the partition catches up
+                if (++attempts < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(1_000);
+                }
+            }
+            wake();
+        }
+
+        void handOver(Runnable credit) {
+            credits.add(credit);
+            wake();
+        }
+
+        private void wake() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (running || !isIdle() || transfersInFlight.get() > 0) {
+                // Credits first, so transfers between partitions complete ahead of new work
+                Runnable task = credits.poll();
+                if (task == null) {
+                    task = commands.poll();
+                }
+                if (task != null) {
+                    idle = 0;
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.error("Unexpected failure in ledger partition {}", index, e);
+                    }
+                } else if (++idle < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else {
+                    sleeping = true;
+                    if (isIdle()) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    sleeping = false;
+                }
+            }
+        }
+
+        private boolean isIdle() {
+            return credits.isEmpty() && commands.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bankingtransactions.engine;
+
+import com.example.bankingtransactions.model.Account;
+
+/**
+ * A validated transfer handed to the ledger engine
+ */
+public record TransferCommand(Account from, Account to, long amount, String description) {
+}
@@ -0,0 +1,15 @@
+package com.example.bankingtransactions.enums;
+
+/**
+ * Kinds of entry in the audit trail
+ */
+public enum AuditEventType {
+    ACCOUNT_CREATED,
+    DEPOSIT,
+    WITHDRAWAL,
+    TRANSFER,
+    // A transfer to another node's account, debited here and credited once that node accepts it
+    TRANSFER_PENDING,
+    // Written by the audit writer in place of events dropped because its queue was full
+    EVENTS_DROPPED
+}
@@ -0,0 +1,12 @@
+package com.example.bankingtransactions.enums;
+
+/**
+ * What a request does when the audit queue is full
+ */
+public enum AuditOverflowPolicy {
+    // Wait until the writer frees space, up to banking.audit.max-block-ms, so the audit trail stays complete while
+    // the writer is only slow
+    BLOCK,
+    // Drop the event and carry on. The trail records how many events were dropped where they would have been
+    DROP
+}
@@ -0,0 +1,8 @@
+package com.example.bankingtransactions.enums;
+
+public enum BatchMode {
+    // Every transfer in the batch succeeds, or none of them are applied
+    ALL_OR_NOTHING,
+    // Each transfer succeeds or fails on its own
+    BEST_EFFORT
+}
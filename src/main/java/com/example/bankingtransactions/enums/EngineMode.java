@@ -0,0 +1,11 @@
+package com.example.bankingtransactions.enums;
+
+/**
+ * How balance updates are executed
+ */
+public enum EngineMode {
+    // On the request thread, under striped account locks
+    LOCKING,
+    // On a single writer thread per partition of the accounts, fed through a ring buffer
+    PARTITIONED
+}
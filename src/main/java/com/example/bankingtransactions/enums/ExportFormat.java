@@ -0,0 +1,6 @@
+package com.example.bankingtransactions.enums;
+
+public enum ExportFormat {
+    NDJSON,
+    CSV
+}
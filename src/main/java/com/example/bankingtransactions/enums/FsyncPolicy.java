@@ -0,0 +1,13 @@
+package com.example.bankingtransactions.enums;
+
+/**
+ * When journal writes are forced to disk
+ */
+public enum FsyncPolicy {
+    // Force every record before the operation returns
+    PER_OP,
+    // Force periodically; operations wait for the next flush before returning
+    GROUP,
+    // Leave flushing to the operating system
+    OS
+}
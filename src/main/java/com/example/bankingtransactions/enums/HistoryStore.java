@@ -0,0 +1,11 @@
+package com.example.bankingtransactions.enums;
+
+/**
+ * How transaction history is laid out in memory
+ */
+public enum HistoryStore {
+    // A Transaction object per entry, indexed per account in skip lists
+    OBJECTS,
+    // Primitive columns, with Transaction objects only created when history is read
+    COLUMNAR
+}
@@ -0,0 +1,11 @@
+package com.example.bankingtransactions.enums;
+
+/**
+ * How account and transaction ids are generated
+ */
+public enum IdStrategy {
+    // Random version 4 UUIDs
+    RANDOM,
+    // Version 7 UUIDs that sort by creation time, generated without locks
+    TIME_ORDERED
+}
@@ -0,0 +1,26 @@
+package com.example.bankingtransactions.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Requests of the binary ingestion protocol, with the code identifying each one on the wire
+ */
+@Getter
+@RequiredArgsConstructor
+public enum IngestOperation {
+    TRANSFER((byte) 1),
+    DEPOSIT((byte) 2),
+    WITHDRAW((byte) 3);
+
+    private static final IngestOperation[] BY_CODE = {null, TRANSFER, DEPOSIT, WITHDRAW};
+
+    private final byte code;
+
+    /**
+     * Returns the operation with the given code, or null if there is none
+     */
+    public static IngestOperation of(byte code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bankingtransactions.enums;
+
+import com.example.bankingtransactions.exception.AccountNotFoundException;
+import com.example.bankingtransactions.exception.IdempotencyKeyReusedException;
+import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.exception.LedgerUnavailableException;
+import com.example.bankingtransactions.exception.NodeUnavailableException;
+import com.example.bankingtransactions.exception.TransferException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcomes of binary ingestion requests, with the code identifying each one on the wire. They mirror the HTTP
+ * statuses returned by GlobalExceptionHandler.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum IngestStatus {
+    OK((byte) 0),
+    INSUFFICIENT_FUNDS((byte) 1),
+    ACCOUNT_NOT_FOUND((byte) 2),
+    // Invalid input or a transfer the ledger refused
+    REJECTED((byte) 3),
+    IDEMPOTENCY_KEY_REUSED((byte) 4),
+    UNAVAILABLE((byte) 5),
+    // The account belongs to another cluster node, named in the message
+    WRONG_NODE((byte) 6),
+    ERROR((byte) 7);
+
+    private static final IngestStatus[] BY_CODE = values();
+
+    private final byte code;
+
+    /**
+     * Returns the status with the given code, or ERROR if there is none
+     */
+    public static IngestStatus of(byte code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : ERROR;
+    }
+
+    public static IngestStatus of(Throwable failure) {
+        if (failure instanceof InsufficientFundsException) {
+            return INSUFFICIENT_FUNDS;
+        }
+        if (failure instanceof AccountNotFoundException) {
+            return ACCOUNT_NOT_FOUND;
+        }
+        if (failure instanceof TransferException || failure instanceof InvalidRequestException) {
+            return REJECTED;
+        }
+        if (failure instanceof IdempotencyKeyReusedException) {
+            return IDEMPOTENCY_KEY_REUSED;
+        }
+        if (failure instanceof NodeUnavailableException || failure instanceof LedgerUnavailableException) {
+            return UNAVAILABLE;
+        }
+        return ERROR;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankingtransactions.enums;
+
+public enum JournalRecordType {
+    ACCOUNT_CREATED,
+    TRANSACTION,
+    // Header for records that must be recovered all together or not at all; amount holds the record count
+    BATCH,
+    // First half of a transfer between engine partitions or cluster nodes: only the source account is debited
+    TRANSFER_DEBIT,
+    // Second half of a transfer between engine partitions or cluster nodes: credits the record's to-account, which is
+    // the source account itself when the transfer had to be refunded. On the source node of a transfer between nodes
+    // it only records that the destination node has credited it
+    TRANSFER_CREDIT,
+    // Transaction loaded by a bulk import from another system. It belongs in the history, but balances were imported
+    // as they stood afterwards, so it is not applied to them
+    IMPORTED_TRANSACTION
+}
@@ -0,0 +1,26 @@
+package com.example.bankingtransactions.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Service operations measured by LedgerMetrics, with the type of transaction each one records, if any
+ */
+@Getter
+@RequiredArgsConstructor
+public enum LedgerOperation {
+    CREATE_ACCOUNT(null),
+    GET_ACCOUNT(null),
+    TRANSFER(TransactionType.TRANSFER),
+    BATCH_TRANSFER(null),
+    DEPOSIT(TransactionType.DEPOSIT),
+    WITHDRAW(TransactionType.WITHDRAWAL),
+    GET_HISTORY(null),
+    EXPORT_HISTORY(null),
+    GET_SUMMARY(null),
+    GET_BALANCE(null),
+    IMPORT_ACCOUNTS(null),
+    IMPORT_TRANSACTIONS(null);
+
+    private final TransactionType transactionType;
+}
@@ -0,0 +1,28 @@
+package com.example.bankingtransactions.enums;
+
+import com.example.bankingtransactions.exception.AccountNotFoundException;
+import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.exception.TransferException;
+
+public enum OperationOutcome {
+    SUCCESS,
+    INSUFFICIENT_FUNDS,
+    ACCOUNT_NOT_FOUND,
+    // Invalid input or a transfer the ledger refused
+    REJECTED,
+    ERROR;
+
+    public static OperationOutcome of(Throwable failure) {
+        if (failure instanceof InsufficientFundsException) {
+            return INSUFFICIENT_FUNDS;
+        }
+        if (failure instanceof AccountNotFoundException) {
+            return ACCOUNT_NOT_FOUND;
+        }
+        if (failure instanceof TransferException || failure instanceof InvalidRequestException) {
+            return REJECTED;
+        }
+        return ERROR;
+    }
+}
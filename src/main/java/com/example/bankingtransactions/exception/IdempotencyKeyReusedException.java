@@ -0,0 +1,7 @@
+package com.example.bankingtransactions.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -1,10 +1,11 @@
 package com.example.bankingtransactions.exception;
 
-import java.math.BigDecimal;
+import com.example.bankingtransactions.util.Money;
+
 import java.util.UUID;
 
 public class InsufficientFundsException extends RuntimeException {
-    public InsufficientFundsException(UUID accountId, BigDecimal amount) {
-        super("Insufficient funds in account " + accountId + " to withdraw amount: $" + amount);
+    public InsufficientFundsException(UUID accountId, long amount) {
+        super("Insufficient funds in account " + accountId + " to withdraw amount: $" + Money.format(amount));
     }
 }
@@ -0,0 +1,11 @@
+package com.example.bankingtransactions.exception;
+
+/**
+ * The ledger could not record an operation, e.g. because the journal write failed or it is shutting down. Unlike a
+ * {@link TransferException}, the request itself was fine and may succeed if retried.
+ */
+public class LedgerUnavailableException extends RuntimeException {
+    public LedgerUnavailableException(String message) {
+        super(message);
+    }
+}
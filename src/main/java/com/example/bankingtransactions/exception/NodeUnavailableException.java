@@ -0,0 +1,7 @@
+package com.example.bankingtransactions.exception;
+
+public class NodeUnavailableException extends RuntimeException {
+    public NodeUnavailableException(String message) {
+        super(message);
+    }
+}
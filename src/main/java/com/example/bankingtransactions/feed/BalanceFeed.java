@@ -0,0 +1,377 @@
+package com.example.bankingtransactions.feed;
+
+import com.example.bankingtransactions.cluster.ShardRouter;
+import com.example.bankingtransactions.config.FeedProperties;
+import com.example.bankingtransactions.config.WorkerExecutors;
+import com.example.bankingtransactions.dto.BalanceEventDto;
+import com.example.bankingtransactions.dto.TransactionDto;
+import com.example.bankingtransactions.exception.AccountNotFoundException;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.exception.TooManyRequestsException;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.util.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes balance changes to subscribers over server-sent events, so clients watching accounts need not poll them.
+ * <p>
+ * Announcing a change costs a request one map lookup when nobody watches the account, and otherwise a counter
+ * increment and at most one task handed to the dispatcher thread, however many watch it. The dispatcher wakes each
+ * subscriber, and subscribers are written to on sender threads, at most one at a time each. A subscriber is sent one
+ * event for each of its accounts that changed since its last event, with the balance as it stands when the event is
+ * sent and the latest transaction, so a subscriber that reads slowly falls behind by no more than one event per
+ * account rather than by a backlog of them. The balance may include changes whose transactions are yet to be
+ * announced, just as polling the account would.
+ * <p>
+ * A subscriber whose write has not finished after {@code banking.feed.send-timeout-ms} is closed and forgotten, and
+ * its sender thread is released once the container's write timeout ends the write.
+ */
+@Component
+@Slf4j
+public class BalanceFeed {
+
+    private static final String EVENT_NAME = "balance";
+    // Subscription.sendStarted while no write is in progress
+    private static final long NOT_SENDING = Long.MIN_VALUE;
+
+    private final AccountRepository accountRepository;
+    private final ShardRouter shardRouter;
+    private final WorkerExecutors workerExecutors;
+    private final FeedProperties properties;
+    private final ConcurrentHashMap<UUID, Topic> topics = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    // Places taken under banking.feed.max-subscribers, reserved before a subscription opens
+    private final AtomicInteger open = new AtomicInteger();
+    private final long sendTimeoutNanos;
+    private final Counter eventsSent;
+    private final Counter transactionsCoalesced;
+    private final Counter rejections;
+    private final Counter stalls;
+    // Wakes the subscribers of changed accounts, sends heartbeats and closes stalled subscriptions
+    private ScheduledExecutorService dispatcher;
+    private ExecutorService senders;
+
+    public BalanceFeed(AccountRepository accountRepository, ShardRouter shardRouter, WorkerExecutors workerExecutors,
+                       FeedProperties properties, MeterRegistry registry) {
+        if (properties.getMaxAccountsPerSubscription() < 1) {
+            throw new IllegalArgumentException("banking.feed.max-accounts-per-subscription must be at least 1");
+        }
+        this.accountRepository = accountRepository;
+        this.shardRouter = shardRouter;
+        this.workerExecutors = workerExecutors;
+        this.properties = properties;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getSendTimeoutMs());
+        Gauge.builder("ledger.feed.subscribers", open, AtomicInteger::get)
+                .description("Balance feed subscriptions open")
+                .register(registry);
+        this.eventsSent = Counter.builder("ledger.feed.events.sent")
+                .description("Balance events sent to subscribers")
+                .register(registry);
+        this.transactionsCoalesced = Counter.builder("ledger.feed.transactions.coalesced")
+                .description("Transactions counted in a later balance event instead of sent in their own")
+                .register(registry);
+        this.rejections = Counter.builder("ledger.feed.rejected")
+                .description("Subscriptions rejected because too many were open")
+                .register(registry);
+        this.stalls = Counter.builder("ledger.feed.stalled")
+                .description("Subscriptions closed because a write to them took longer than the send timeout")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-feed-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        senders = workerExecutors.newExecutor("balance-feed-sender", properties.getSenderThreads());
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, properties.getHeartbeatMs(), properties.getHeartbeatMs(),
+                TimeUnit.MILLISECONDS);
+        long stallCheckMs = Math.max(1, properties.getSendTimeoutMs() / 2);
+        dispatcher.scheduleWithFixedDelay(this::closeStalled, stallCheckMs, stallCheckMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        // Lets clients reconnect, to another node or once this one is back
+        for (Subscription subscription : subscriptions) {
+            subscription.emitter.complete();
+        }
+    }
+
+    /**
+     * Opens a subscription to the given accounts, which first sends each account's current balance.
+     *
+     * @throws InvalidRequestException if no accounts or too many are given, or one is owned by another node
+     * @throws AccountNotFoundException if an account does not exist
+     * @throws TooManyRequestsException if too many subscriptions are open
+     */
+    public SseEmitter subscribe(Collection<UUID> accountIds) {
+        Set<UUID> distinct = new LinkedHashSet<>(accountIds);
+        if (distinct.isEmpty()) {
+            throw new InvalidRequestException("At least one account id is required");
+        }
+        if (distinct.size() > properties.getMaxAccountsPerSubscription()) {
+            throw new InvalidRequestException("A subscription may watch at most "
+                    + properties.getMaxAccountsPerSubscription() + " accounts");
+        }
+        Account[] accounts = new Account[distinct.size()];
+        int i = 0;
+        for (UUID accountId : distinct) {
+            if (!shardRouter.isLocal(accountId)) {
+                throw new InvalidRequestException("Account " + accountId + " is on " + shardRouter.ownerOf(accountId)
+                        + ". Subscribe to it there.");
+            }
+            accounts[i++] = accountRepository.findById(accountId)
+                    .orElseThrow(() -> new AccountNotFoundException(accountId));
+        }
+        if (open.incrementAndGet() > properties.getMaxSubscribers()) {
+            open.decrementAndGet();
+            rejections.increment();
+            throw new TooManyRequestsException("Too many balance feed subscriptions. Try again later");
+        }
+
+        Subscription subscription = new Subscription(new SseEmitter(properties.getTimeoutMs()), accounts.length);
+        subscriptions.add(subscription);
+        subscription.emitter.onCompletion(() -> unsubscribe(subscription));
+        subscription.emitter.onError(e -> unsubscribe(subscription));
+        for (int j = 0; j < accounts.length; j++) {
+            attach(subscription, j, accounts[j]);
+        }
+        // Subscriptions start out scheduled, so nothing is sent until every account is attached. The first send
+        // covers changes announced meanwhile, as it sends the current balances
+        subscription.scheduled.set(false);
+        schedule(subscription);
+        log.debug("Opened balance feed subscription to {} accounts", accounts.length);
+        return subscription.emitter;
+    }
+
+    /**
+     * Announces a transaction, after it is durable, to the subscribers of the accounts it changed.
+     */
+    public void publish(Transaction transaction) {
+        if (transaction.getFromAccountId() != null) {
+            changed(transaction.getFromAccountId(), transaction);
+        }
+        if (transaction.getToAccountId() != null) {
+            changed(transaction.getToAccountId(), transaction);
+        }
+    }
+
+    private void changed(UUID accountId, Transaction transaction) {
+        Topic topic = topics.get(accountId);
+        if (topic == null) {
+            return;
+        }
+        topic.latest = transaction;
+        topic.sequence.incrementAndGet();
+        if (topic.dispatching.compareAndSet(false, true)) {
+            dispatcher.execute(() -> dispatch(topic));
+        }
+    }
+
+    // Wakes every subscriber of the account. Changes announced from here on dispatch again
+    private void dispatch(Topic topic) {
+        topic.dispatching.set(false);
+        for (Subscription subscription : topic.subscribers) {
+            schedule(subscription);
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscription subscription : subscriptions) {
+            subscription.heartbeatDue = true;
+            schedule(subscription);
+        }
+    }
+
+    // Closes subscriptions whose write has taken longer than the send timeout, whichever event it is writing
+    private void closeStalled() {
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            long started = subscription.sendStarted;
+            if (started != NOT_SENDING && now - started > sendTimeoutNanos) {
+                log.debug("Closing balance feed subscription that has not read for {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(now - started));
+                stalls.increment();
+                unsubscribe(subscription);
+                subscription.emitter.complete();
+            }
+        }
+    }
+
+    private void schedule(Subscription subscription) {
+        if (subscription.scheduled.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscription));
+        }
+    }
+
+    // Runs on one sender thread at a time for each subscription, as scheduled stays set until it is done
+    private void send(Subscription subscription) {
+        try {
+            boolean sent = false;
+            for (int i = 0; i < subscription.topics.length; i++) {
+                Topic topic = subscription.topics[i];
+                long sequence = topic.sequence.get();
+                long sentSequence = subscription.sentSequences[i];
+                if (sequence == sentSequence) {
+                    continue;
+                }
+                // The first event is the balance the subscription starts from
+                Transaction transaction = sentSequence < 0 ? null : topic.latest;
+                long coalesced = sentSequence < 0 ? 0 : sequence - sentSequence - 1;
+                BalanceEventDto event = new BalanceEventDto(topic.account.getId(),
+                        "$" + Money.format(topic.account.getBalance()),
+                        transaction == null ? null : mapToTransactionDto(transaction), coalesced);
+                subscription.sendStarted = System.nanoTime();
+                subscription.emitter.send(SseEmitter.event().name(EVENT_NAME).data(event, MediaType.APPLICATION_JSON));
+                subscription.sendStarted = NOT_SENDING;
+                subscription.sentSequences[i] = sequence;
+                eventsSent.increment();
+                transactionsCoalesced.increment(coalesced);
+                sent = true;
+            }
+            if (subscription.heartbeatDue && !sent) {
+                subscription.sendStarted = System.nanoTime();
+                subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+                subscription.sendStarted = NOT_SENDING;
+            }
+            subscription.heartbeatDue = false;
+        } catch (IOException | IllegalStateException e) {
+            // The client went away, which the container then reports to the emitter, or the subscription timed out
+            log.debug("Closing balance feed subscription: {}", e.getMessage());
+            unsubscribe(subscription);
+            return;
+        }
+        subscription.scheduled.set(false);
+        if (subscription.hasChanges()) {
+            schedule(subscription);
+        }
+    }
+
+    private void attach(Subscription subscription, int index, Account account) {
+        while (true) {
+            Topic topic = topics.computeIfAbsent(account.getId(), id -> new Topic(account));
+            synchronized (topic) {
+                // Retry if the last subscriber detached between the lookup and here
+                if (!topic.closed) {
+                    subscription.topics[index] = topic;
+                    topic.subscribers = Arrays.copyOf(topic.subscribers, topic.subscribers.length + 1);
+                    topic.subscribers[topic.subscribers.length - 1] = subscription;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        open.decrementAndGet();
+        for (Topic topic : subscription.topics) {
+            // Not attached if the subscription closed while it was being opened
+            if (topic == null) {
+                continue;
+            }
+            synchronized (topic) {
+                Subscription[] remaining = Arrays.stream(topic.subscribers)
+                        .filter(s -> s != subscription)
+                        .toArray(Subscription[]::new);
+                topic.subscribers = remaining;
+                if (remaining.length == 0) {
+                    topic.closed = true;
+                    topics.remove(topic.account.getId(), topic);
+                }
+            }
+        }
+    }
+
+    private static TransactionDto mapToTransactionDto(Transaction transaction) {
+        return new TransactionDto(
+                transaction.getId(),
+                null,
+                transaction.getFromAccountId(),
+                transaction.getToAccountId(),
+                "$" + Money.format(transaction.getAmount()),
+                transaction.getType(),
+                transaction.getDescription(),
+                transaction.getTimestamp()
+        );
+    }
+
+    /**
+     * Changes to one watched account and the subscriptions watching it
+     */
+    private static final class Topic {
+
+        private final Account account;
+        // Transactions announced, and the latest of them
+        private final AtomicLong sequence = new AtomicLong();
+        private volatile Transaction latest;
+        private final AtomicBoolean dispatching = new AtomicBoolean();
+        // Copied on write under the topic's monitor
+        private volatile Subscription[] subscribers = new Subscription[0];
+        private boolean closed;
+
+        private Topic(Account account) {
+            this.account = account;
+        }
+    }
+
+    private static final class Subscription {
+
+        private final SseEmitter emitter;
+        private final Topic[] topics;
+        // Topic sequence as of the last event sent for each account, -1 before the first
+        private final long[] sentSequences;
+        private final AtomicBoolean scheduled = new AtomicBoolean(true);
+        private volatile boolean heartbeatDue;
+        // When the write in progress started, read by the dispatcher to find stalled subscribers
+        private volatile long sendStarted = NOT_SENDING;
+
+        private Subscription(SseEmitter emitter, int accounts) {
+            this.emitter = emitter;
+            this.topics = new Topic[accounts];
+            this.sentSequences = new long[accounts];
+            Arrays.fill(sentSequences, -1);
+        }
+
+        private boolean hasChanges() {
+            for (int i = 0; i < topics.length; i++) {
+                if (topics[i].sequence.get() != sentSequences[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bankingtransactions.id;
+
+import java.util.UUID;
+
+/**
+ * Source of account and transaction ids. The implementation is chosen with {@code banking.ids.strategy}.
+ */
+public interface IdGenerator {
+
+    /**
+     * Returns a new id, unique across threads and restarts. Must be safe to call from any thread without locking.
+     */
+    UUID newId();
+}
@@ -0,0 +1,15 @@
+package com.example.bankingtransactions.id;
+
+import java.util.UUID;
+
+/**
+ * Random version 4 UUIDs. Every call draws from the JVM's shared {@code SecureRandom}, which serializes concurrent
+ * callers, and the ids have no order.
+ */
+public class RandomIdGenerator implements IdGenerator {
+
+    @Override
+    public UUID newId() {
+        return UUID.randomUUID();
+    }
+}
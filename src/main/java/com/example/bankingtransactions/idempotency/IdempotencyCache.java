@@ -0,0 +1,224 @@
+package com.example.bankingtransactions.idempotency;
+
+import com.example.bankingtransactions.config.IdempotencyProperties;
+import com.example.bankingtransactions.enums.LedgerOperation;
+import com.example.bankingtransactions.enums.OperationOutcome;
+import com.example.bankingtransactions.exception.IdempotencyKeyReusedException;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of requests sent with an Idempotency-Key, so a retried request is answered with the original
+ * result or error instead of being applied again. A retry that arrives while the original is still running waits for
+ * it to finish.
+ * <p>
+ * A key is bound to the request it was first sent with, compared by its JSON form with amounts stripped of trailing
+ * zeros, so {@code 10.0} and {@code 10.00} are the same request.
+ * <p>
+ * Keys are spread over lock-striped segments, each an insertion-ordered map. Every entry lives for the same TTL, so
+ * the eldest entry of a segment is always the next to expire, and both expiry and size-based eviction only ever
+ * remove entries from the head of a segment.
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final int MAX_KEY_LENGTH = 255;
+    private static final int SEGMENTS = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlNanos;
+    private final Counter replays;
+    private final ObjectWriter requestWriter;
+
+    public IdempotencyCache(IdempotencyProperties properties, ObjectMapper objectMapper, MeterRegistry registry) {
+        requestWriter = objectMapper.copy()
+                .registerModule(new SimpleModule().addSerializer(BigDecimal.class, new CanonicalDecimalSerializer()))
+                .writer();
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTtlMs());
+        int segmentCapacity = Math.max(1, properties.getMaxEntries() / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+
+        replays = Counter.builder("ledger.idempotency.replays")
+                .description("Requests answered with the result of an earlier request with the same Idempotency-Key")
+                .register(registry);
+        Gauge.builder("ledger.idempotency.keys", this, IdempotencyCache::size)
+                .description("Idempotency keys currently remembered")
+                .register(registry);
+    }
+
+    /**
+     * Runs the action once per key. Later calls with the same key replay its result, or the error it failed with if
+     * the request was rejected; unexpected errors and failures of the ledger itself, such as a journal write failing,
+     * are not remembered, so the request can be retried. Without a key the action simply runs.
+     */
+    public <T> T execute(String key, LedgerOperation operation, Object request, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        byte[] fingerprint = fingerprint(request);
+        Segment segment = segmentFor(key);
+        Entry entry;
+        boolean original = false;
+        segment.lock.lock();
+        try {
+            long now = System.nanoTime();
+            segment.expire(now);
+            entry = segment.entries.get(key);
+            if (entry == null) {
+                entry = new Entry(operation, fingerprint, now + ttlNanos);
+                segment.entries.put(key, entry);
+                original = true;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+
+        if (original) {
+            return runOriginal(segment, key, entry, action);
+        }
+        if (entry.operation != operation || !Arrays.equals(entry.fingerprint, fingerprint)) {
+            throw new IdempotencyKeyReusedException(
+                    "Idempotency-Key " + key + " was already used for a different request");
+        }
+        replays.increment();
+        @SuppressWarnings("unchecked")
+        T result = (T) await(entry.result);
+        return result;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private <T> T runOriginal(Segment segment, String key, Entry entry, Supplier<T> action) {
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            if (OperationOutcome.of(e) == OperationOutcome.ERROR) {
+                segment.remove(key, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            return requestWriter.writeValueAsBytes(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize request " + request, e);
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        private final LedgerOperation operation;
+        private final byte[] fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Entry(LedgerOperation operation, byte[] fingerprint, long expiresAt) {
+            this.operation = operation;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Writes amounts without trailing zeros
+    private static final class CanonicalDecimalSerializer extends StdSerializer<BigDecimal> {
+
+        private CanonicalDecimalSerializer() {
+            super(BigDecimal.class);
+        }
+
+        @Override
+        public void serialize(BigDecimal value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeNumber(value.stripTrailingZeros().toPlainString());
+        }
+    }
+
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Entry> entries;
+
+        private Segment(int capacity) {
+            entries = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        private void expire(long now) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext() && iterator.next().expiresAt - now <= 0) {
+                iterator.remove();
+            }
+        }
+
+        private void remove(String key, Entry entry) {
+            lock.lock();
+            try {
+                entries.remove(key, entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
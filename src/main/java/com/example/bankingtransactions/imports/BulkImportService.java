@@ -0,0 +1,456 @@
+package com.example.bankingtransactions.imports;
+
+import com.example.bankingtransactions.cluster.ShardRouter;
+import com.example.bankingtransactions.config.ImportProperties;
+import com.example.bankingtransactions.dto.ImportProgressDto;
+import com.example.bankingtransactions.enums.ImportFormat;
+import com.example.bankingtransactions.enums.LedgerOperation;
+import com.example.bankingtransactions.enums.OperationOutcome;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.exception.TransferException;
+import com.example.bankingtransactions.id.IdGenerator;
+import com.example.bankingtransactions.journal.LedgerJournal;
+import com.example.bankingtransactions.metrics.LedgerMetrics;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import com.example.bankingtransactions.util.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * Loads accounts and their transaction history from other systems, for migrations. Files are read as they stream in:
+ * rows are grouped into batches that are validated in parallel, a bounded number of batches ahead, and each batch is
+ * then written in file order with one journal append and one durability wait. Memory use depends on the batch
+ * settings, not on the size of the file.
+ * <p>
+ * Rows are imported or rejected individually. The response streams an error for each rejected row and running totals
+ * after each batch, so a client can follow a long import and fix and resend just the rejected rows.
+ * <p>
+ * Account balances are imported as they stand, and imported transactions only fill in the history and summaries
+ * behind them, so they are not applied to balances.
+ */
+@Service
+@Slf4j
+public class BulkImportService {
+
+    private static final List<String> ACCOUNT_COLUMNS = List.of("name", "balance");
+    private static final List<String> TRANSACTION_COLUMNS = List.of("amount", "type", "timestamp");
+    // Names and descriptions longer than this are rejected
+    private static final int MAX_TEXT_LENGTH = 1024;
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountSummaryRepository accountSummaryRepository;
+    private final LedgerJournal ledgerJournal;
+    private final ShardRouter shardRouter;
+    private final IdGenerator idGenerator;
+    private final LedgerMetrics ledgerMetrics;
+    private final ObjectMapper objectMapper;
+    private final ImportProperties properties;
+    private final ExecutorService validationExecutor;
+
+    public BulkImportService(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                             AccountSummaryRepository accountSummaryRepository, LedgerJournal ledgerJournal,
+                             ShardRouter shardRouter, IdGenerator idGenerator, LedgerMetrics ledgerMetrics,
+                             ObjectMapper objectMapper, ImportProperties properties,
+                             @Qualifier("importValidationExecutor") ExecutorService validationExecutor) {
+        if (properties.getBatchSize() < 1 || properties.getBatchesInFlight() < 1) {
+            throw new IllegalArgumentException("banking.import.batch-size and batches-in-flight must be at least 1");
+        }
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountSummaryRepository = accountSummaryRepository;
+        this.ledgerJournal = ledgerJournal;
+        this.shardRouter = shardRouter;
+        this.idGenerator = idGenerator;
+        this.ledgerMetrics = ledgerMetrics;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.validationExecutor = validationExecutor;
+    }
+
+    /**
+     * Imports accounts with the columns {@code id} (optional), {@code name}, {@code balance} and {@code createdAt}
+     * (optional). Accounts keep the given id, which must not be in use, or get a new one.
+     */
+    public StreamingResponseBody importAccounts(InputStream in, String format) {
+        ImportRowReader reader = open(in, format, ACCOUNT_COLUMNS);
+        return out -> run(LedgerOperation.IMPORT_ACCOUNTS, reader, this::toAccount, this::writeAccounts, out);
+    }
+
+    /**
+     * Imports history with the columns of history exports: {@code id} (optional), {@code fromAccountId},
+     * {@code toAccountId}, {@code amount}, {@code type}, {@code description} (optional) and {@code timestamp}. The
+     * accounts must already exist.
+     */
+    public StreamingResponseBody importTransactions(InputStream in, String format) {
+        ImportRowReader reader = open(in, format, TRANSACTION_COLUMNS);
+        return out -> run(LedgerOperation.IMPORT_TRANSACTIONS, reader, this::toTransaction, this::writeTransactions,
+                out);
+    }
+
+    private ImportRowReader open(InputStream in, String format, List<String> requiredColumns) {
+        ImportFormat importFormat;
+        try {
+            importFormat = ImportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unsupported import format: " + format);
+        }
+        try {
+            return new ImportRowReader(in, importFormat, objectMapper, requiredColumns);
+        } catch (IOException e) {
+            throw new InvalidRequestException("Failed to read import: " + e.getMessage());
+        }
+    }
+
+    private <T> void run(LedgerOperation operation, ImportRowReader reader, Function<ImportRow, T> parser,
+                         BatchWriter<T> writer, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        String rows = operation == LedgerOperation.IMPORT_ACCOUNTS ? "accounts" : "transactions";
+        log.info("Bulk import of {} started", rows);
+        Progress progress = new Progress(objectMapper, out);
+        OperationOutcome outcome = OperationOutcome.ERROR;
+        try {
+            ArrayDeque<CompletableFuture<List<Parsed<T>>>> inFlight = new ArrayDeque<>();
+            List<ImportRow> batch = new ArrayList<>(properties.getBatchSize());
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                progress.rowsRead++;
+                batch.add(row);
+                if (batch.size() == properties.getBatchSize()) {
+                    inFlight.add(parseAsync(batch, parser));
+                    batch = new ArrayList<>(properties.getBatchSize());
+                    if (inFlight.size() > properties.getBatchesInFlight()) {
+                        write(inFlight.poll().join(), writer, progress);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                inFlight.add(parseAsync(batch, parser));
+            }
+            while (!inFlight.isEmpty()) {
+                write(inFlight.poll().join(), writer, progress);
+            }
+            progress.send(true);
+            outcome = OperationOutcome.SUCCESS;
+            log.info("Bulk import of {} finished: {} rows read, {} imported, {} rejected", rows,
+                    progress.rowsRead, progress.imported, progress.failed);
+        } finally {
+            if (outcome == OperationOutcome.ERROR) {
+                log.warn("Bulk import of {} stopped after {} rows read, {} imported", rows, progress.rowsRead,
+                        progress.imported);
+            }
+            ledgerMetrics.recordImport(operation, System.nanoTime() - start, progress.imported, progress.failed,
+                    outcome);
+        }
+    }
+
+    private <T> CompletableFuture<List<Parsed<T>>> parseAsync(List<ImportRow> rows, Function<ImportRow, T> parser) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Parsed<T>> parsed = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                try {
+                    parsed.add(new Parsed<>(row.number(), parser.apply(row), null));
+                } catch (InvalidRequestException | TransferException e) {
+                    parsed.add(new Parsed<>(row.number(), null, e.getMessage()));
+                }
+            }
+            return parsed;
+        }, validationExecutor);
+    }
+
+    private <T> void write(List<Parsed<T>> batch, BatchWriter<T> writer, Progress progress) throws IOException {
+        List<Parsed<T>> valid = new ArrayList<>(batch.size());
+        for (Parsed<T> row : batch) {
+            if (row.error() == null) {
+                valid.add(row);
+            } else {
+                progress.reject(row.number(), row.error());
+            }
+        }
+        if (!valid.isEmpty()) {
+            writer.write(valid, progress);
+        }
+        progress.send(false);
+    }
+
+    private Account toAccount(ImportRow row) {
+        String name = required(row, "name");
+        if (name.isBlank() || name.length() > MAX_TEXT_LENGTH) {
+            throw new InvalidRequestException("Account holder name must be 1 to " + MAX_TEXT_LENGTH + " characters");
+        }
+        long balance = amount(row, "balance");
+        if (balance < 0) {
+            throw new InvalidRequestException("Balance must be greater than or equal to zero");
+        }
+        Account account = new Account();
+        account.setId(uuid(row, "id"));
+        account.setName(name);
+        account.setBalance(balance);
+        LocalDateTime createdAt = timestamp(row, "createdAt");
+        account.setCreatedAt(createdAt == null ? LocalDateTime.now() : createdAt);
+        return account;
+    }
+
+    private Transaction toTransaction(ImportRow row) {
+        TransactionType type;
+        try {
+            type = TransactionType.valueOf(required(row, "type").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unknown transaction type: " + row.get("type"));
+        }
+        UUID from = uuid(row, "fromAccountId");
+        UUID to = uuid(row, "toAccountId");
+        if ((from != null) != (type != TransactionType.DEPOSIT) || (to != null) != (type != TransactionType.WITHDRAWAL)) {
+            throw new InvalidRequestException(switch (type) {
+                case DEPOSIT -> "A deposit needs a toAccountId and no fromAccountId";
+                case WITHDRAWAL -> "A withdrawal needs a fromAccountId and no toAccountId";
+                case TRANSFER -> "A transfer needs a fromAccountId and a toAccountId";
+            });
+        }
+        if (from != null && from.equals(to)) {
+            throw new InvalidRequestException("Cannot transfer to the same account");
+        }
+        long amount = amount(row, "amount");
+        if (amount <= 0) {
+            throw new InvalidRequestException("Amount must be positive");
+        }
+        String description = row.get("description");
+        if (description != null && description.length() > MAX_TEXT_LENGTH) {
+            throw new InvalidRequestException("Description must be at most " + MAX_TEXT_LENGTH + " characters");
+        }
+        LocalDateTime timestamp = timestamp(row, "timestamp");
+        if (timestamp == null) {
+            throw new InvalidRequestException("timestamp is required");
+        }
+        UUID id = uuid(row, "id");
+        return new Transaction(id == null ? idGenerator.newId() : id, from, to, amount, type, description, timestamp);
+    }
+
+    // Accounts must be new, and in cluster mode belong to this node. An id is taken by whichever import or row
+    // inserts it first
+    private void writeAccounts(List<Parsed<Account>> rows, Progress progress) throws IOException {
+        List<Parsed<Account>> candidates = new ArrayList<>(rows.size());
+        for (Parsed<Account> row : rows) {
+            Account account = row.value();
+            if (account.getId() == null) {
+                account.setId(shardRouter.newAccountId());
+            } else if (!shardRouter.isLocal(account.getId())) {
+                progress.reject(row.number(), "Account " + account.getId() + " belongs to "
+                        + shardRouter.ownerOf(account.getId()));
+                continue;
+            }
+            candidates.add(row);
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        long[] journalOffset = new long[1];
+        List<Account> inserted = accountRepository.insertAll(candidates.stream().map(Parsed::value).toList(),
+                accounts -> {
+                    if (accounts.isEmpty()) {
+                        return;
+                    }
+                    journalOffset[0] = ledgerJournal.appendImport(accounts, List.of());
+                    for (Account account : accounts) {
+                        account.setJournalOffset(journalOffset[0]);
+                        accountSummaryRepository.open(account.getId(), account.getBalance());
+                    }
+                });
+        Set<Account> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        added.addAll(inserted);
+        for (Parsed<Account> row : candidates) {
+            if (!added.contains(row.value())) {
+                progress.reject(row.number(), "Account " + row.value().getId() + " already exists");
+            }
+        }
+        ledgerJournal.awaitDurable(journalOffset[0]);
+        progress.imported += inserted.size();
+    }
+
+    // Accounts on this node must exist; in cluster mode, at least one of a transaction's accounts must be local.
+    // The local accounts are locked while checking for duplicates and saving, so concurrent imports of the same
+    // rows cannot both add them
+    private void writeTransactions(List<Parsed<Transaction>> rows, Progress progress) throws IOException {
+        List<Parsed<Transaction>> candidates = new ArrayList<>(rows.size());
+        Set<UUID> localAccountIds = new HashSet<>();
+        for (Parsed<Transaction> row : rows) {
+            Transaction transaction = row.value();
+            String error = checkAccounts(transaction.getFromAccountId(), transaction.getToAccountId());
+            if (error != null) {
+                progress.reject(row.number(), error);
+                continue;
+            }
+            candidates.add(row);
+            for (UUID accountId : new UUID[]{transaction.getFromAccountId(), transaction.getToAccountId()}) {
+                if (accountId != null && shardRouter.isLocal(accountId)) {
+                    localAccountIds.add(accountId);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        List<Parsed<Transaction>> duplicates = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>(candidates.size());
+        long journalOffset = accountRepository.withAccountLocks(localAccountIds, () -> {
+            Set<UUID> ids = new HashSet<>();
+            for (Parsed<Transaction> row : candidates) {
+                if (!ids.add(row.value().getId()) || isRecorded(row.value())) {
+                    duplicates.add(row);
+                } else {
+                    transactions.add(row.value());
+                }
+            }
+            if (transactions.isEmpty()) {
+                return 0L;
+            }
+            long offset = ledgerJournal.appendImport(List.of(), transactions);
+            transactionRepository.saveAll(transactions);
+            for (Transaction transaction : transactions) {
+                accountSummaryRepository.recordImported(transaction);
+            }
+            return offset;
+        });
+        for (Parsed<Transaction> row : duplicates) {
+            progress.reject(row.number(), "Transaction " + row.value().getId() + " already exists");
+        }
+        ledgerJournal.awaitDurable(journalOffset);
+        progress.imported += transactions.size();
+    }
+
+    // Whether the history of one of the transaction's local accounts already holds it, as when a file is sent again
+    private boolean isRecorded(Transaction transaction) {
+        UUID accountId = transaction.getFromAccountId() != null && shardRouter.isLocal(transaction.getFromAccountId())
+                ? transaction.getFromAccountId()
+                : transaction.getToAccountId();
+        Iterator<Transaction> sameInstant = transactionRepository.iterate(accountId,
+                HistoryKey.startOf(transaction.getTimestamp()),
+                HistoryKey.startOf(transaction.getTimestamp().plusNanos(1)));
+        while (sameInstant.hasNext()) {
+            if (sameInstant.next().getId().equals(transaction.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String checkAccounts(UUID from, UUID to) {
+        boolean local = false;
+        for (UUID accountId : new UUID[]{from, to}) {
+            if (accountId != null && shardRouter.isLocal(accountId)) {
+                if (accountRepository.findById(accountId).isEmpty()) {
+                    return "Account not found with ID: " + accountId;
+                }
+                local = true;
+            }
+        }
+        return local ? null : "No account of the transaction belongs to this node";
+    }
+
+    private static String required(ImportRow row, String field) {
+        String value = row.get(field);
+        if (value == null) {
+            throw new InvalidRequestException(field + " is required");
+        }
+        return value;
+    }
+
+    private static UUID uuid(ImportRow row, String field) {
+        String value = row.get(field);
+        try {
+            return value == null ? null : UUID.fromString(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(field + " is not a valid UUID: " + value);
+        }
+    }
+
+    // Accepts amounts as exported, with or without a leading $
+    private static long amount(ImportRow row, String field) {
+        String value = required(row, field).trim();
+        try {
+            return Money.toCents(new BigDecimal(value.startsWith("$") ? value.substring(1) : value));
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException(field + " is not a valid amount: " + value);
+        }
+    }
+
+    private static LocalDateTime timestamp(ImportRow row, String field) {
+        String value = row.get(field);
+        try {
+            return value == null ? null : LocalDateTime.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new InvalidRequestException(field + " is not an ISO date-time: " + value);
+        }
+    }
+
+    private record Parsed<T>(long number, T value, String error) {
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter<T> {
+        void write(List<Parsed<T>> rows, Progress progress) throws IOException;
+    }
+
+    // Totals so far, written to the response as NDJSON
+    private static final class Progress {
+
+        private final JsonGenerator generator;
+        private final ObjectWriter writer;
+        private long rowsRead;
+        private long imported;
+        private long failed;
+
+        private Progress(ObjectMapper objectMapper, OutputStream out) throws IOException {
+            writer = objectMapper.writerFor(ImportProgressDto.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Records are separated by newlines rather than Jackson's default space
+            generator.setRootValueSeparator(null);
+        }
+
+        private void reject(long row, String error) throws IOException {
+            failed++;
+            writer.writeValue(generator, ImportProgressDto.rowError(row, error));
+            generator.writeRaw('\n');
+        }
+
+        private void send(boolean complete) throws IOException {
+            writer.writeValue(generator, ImportProgressDto.totals(rowsRead, imported, failed, complete));
+            generator.writeRaw('\n');
+            generator.flush();
+        }
+    }
+}
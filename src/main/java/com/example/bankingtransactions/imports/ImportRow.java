@@ -0,0 +1,105 @@
+package com.example.bankingtransactions.imports;
+
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+
+/**
+ * One row of an import file, numbered from 1 in file order, not counting a CSV header or blank lines. The reader only
+ * splits the input into rows; fields are parsed when first read, so that work happens on the validation threads.
+ */
+abstract class ImportRow {
+
+    private final long number;
+
+    ImportRow(long number) {
+        this.number = number;
+    }
+
+    long number() {
+        return number;
+    }
+
+    /**
+     * Returns the field's value, or null if it is absent or empty.
+     *
+     * @throws InvalidRequestException if the row is malformed
+     */
+    abstract String get(String field);
+
+    static final class Csv extends ImportRow {
+
+        private final Map<String, Integer> columns;
+        private final String[] values;
+
+        Csv(long number, Map<String, Integer> columns, String[] values) {
+            super(number);
+            this.columns = columns;
+            this.values = values;
+        }
+
+        @Override
+        String get(String field) {
+            if (values.length != columns.size()) {
+                throw new InvalidRequestException("Expected " + columns.size() + " fields but found " + values.length);
+            }
+            Integer column = columns.get(field);
+            if (column == null || values[column].isEmpty()) {
+                return null;
+            }
+            return values[column];
+        }
+    }
+
+    // A row the reader could not split into fields
+    static final class Invalid extends ImportRow {
+
+        private final String error;
+
+        Invalid(long number, String error) {
+            super(number);
+            this.error = error;
+        }
+
+        @Override
+        String get(String field) {
+            throw new InvalidRequestException(error);
+        }
+    }
+
+    static final class Json extends ImportRow {
+
+        private final String line;
+        private final ObjectMapper objectMapper;
+        private JsonNode node;
+
+        Json(long number, String line, ObjectMapper objectMapper) {
+            super(number);
+            this.line = line;
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        String get(String field) {
+            if (node == null) {
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    throw new InvalidRequestException("Malformed JSON: " + e.getOriginalMessage());
+                }
+                if (!node.isObject()) {
+                    throw new InvalidRequestException("Expected a JSON object");
+                }
+            }
+            JsonNode value = node.get(field);
+            if (value == null || value.isNull()) {
+                return null;
+            }
+            String text = value.asText();
+            return text.isEmpty() ? null : text;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.bankingtransactions.imports;
+
+import com.example.bankingtransactions.enums.ImportFormat;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits an import stream into rows, reading only as far as the row returned. CSV files start with a header naming
+ * their columns, in any order, and quoted fields may span lines, as in history exports. NDJSON files have one object
+ * per line.
+ */
+final class ImportRowReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Longer rows are rejected, so a malformed file cannot buffer without bound
+    private static final int MAX_ROW_LENGTH = 1 << 16;
+
+    private final BufferedReader reader;
+    private final ImportFormat format;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final StringBuilder field = new StringBuilder();
+    private int rowLength;
+    private long rows;
+
+    /**
+     * Opens the stream, reading the header of a CSV file.
+     *
+     * @throws InvalidRequestException if a CSV file lacks a required column
+     */
+    ImportRowReader(InputStream in, ImportFormat format, ObjectMapper objectMapper, List<String> requiredColumns)
+            throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.format = format;
+        this.objectMapper = objectMapper;
+        if (format == ImportFormat.CSV) {
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new InvalidRequestException("CSV file is empty");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                // Excel adds a byte order mark
+                String column = header.get(i).replace("\uFEFF", "").trim();
+                if (columns.put(column, i) != null) {
+                    throw new InvalidRequestException("CSV header repeats the column " + column);
+                }
+            }
+            for (String column : requiredColumns) {
+                if (!columns.containsKey(column)) {
+                    throw new InvalidRequestException("CSV header must include the column " + column);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next row, or null at the end of the stream.
+     */
+    ImportRow next() throws IOException {
+        if (format == ImportFormat.NDJSON) {
+            String line;
+            do {
+                line = readLine();
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            if (rowLength > MAX_ROW_LENGTH) {
+                return new ImportRow.Invalid(++rows, "Row is longer than " + MAX_ROW_LENGTH + " characters");
+            }
+            return new ImportRow.Json(++rows, line, objectMapper);
+        }
+        List<String> values;
+        do {
+            try {
+                values = readRecord();
+            } catch (InvalidRequestException e) {
+                return new ImportRow.Invalid(++rows, e.getMessage());
+            }
+        } while (values != null && values.size() == 1 && values.get(0).isEmpty());
+        return values == null ? null : new ImportRow.Csv(++rows, columns, values.toArray(String[]::new));
+    }
+
+    // Reads a line, keeping at most MAX_ROW_LENGTH characters of it, or returns null at the end of the stream
+    private String readLine() throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        field.setLength(0);
+        rowLength = 0;
+        while (c >= 0 && c != '\n') {
+            if (++rowLength <= MAX_ROW_LENGTH && c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        return field.toString();
+    }
+
+    // Reads one CSV record per RFC 4180, or returns null at the end of the stream
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        field.setLength(0);
+        rowLength = 0;
+        boolean quoted = false;
+        while (true) {
+            if (++rowLength > MAX_ROW_LENGTH) {
+                skipLine(c);
+                throw new InvalidRequestException("Row is longer than " + MAX_ROW_LENGTH + " characters");
+            }
+            if (quoted) {
+                if (c < 0) {
+                    throw new InvalidRequestException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c < 0) {
+                break;
+            } else if (c == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') {
+                    reader.reset();
+                }
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        values.add(field.toString());
+        return values;
+    }
+
+    private void skipLine(int c) throws IOException {
+        while (c >= 0 && c != '\n') {
+            c = reader.read();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.bankingtransactions.ingest;
+
+import com.example.bankingtransactions.cluster.ShardRouter;
+import com.example.bankingtransactions.config.IngestProperties;
+import com.example.bankingtransactions.config.WorkerExecutors;
+import com.example.bankingtransactions.dto.DepositRequest;
+import com.example.bankingtransactions.dto.TransactionDto;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.dto.WithdrawRequest;
+import com.example.bankingtransactions.enums.IngestOperation;
+import com.example.bankingtransactions.enums.IngestStatus;
+import com.example.bankingtransactions.ingest.IngestProtocol.Request;
+import com.example.bankingtransactions.ingest.IngestProtocol.Response;
+import com.example.bankingtransactions.service.AccountService;
+import com.example.bankingtransactions.util.Money;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * TCP listener for the binary ingestion protocol described in {@link IngestProtocol}, for internal producers that
+ * send transfers, deposits and withdrawals in volume. Requests run through the same {@link AccountService} calls as
+ * the REST API, including idempotency keys and metrics, but skip HTTP and JSON.
+ * <p>
+ * One selector thread accepts connections, splits incoming bytes into frames and writes responses, gathering those
+ * that are ready into as few writes as possible. Requests run on a pool of worker threads, so a connection can have
+ * many in progress at once and their responses are returned as they complete. Once a connection has
+ * {@code banking.ingest.max-in-flight-per-connection} requests outstanding, the server stops reading from it until
+ * responses have been written.
+ * <p>
+ * In cluster mode, requests are not forwarded: those for accounts owned by another node are answered with
+ * {@link IngestStatus#WRONG_NODE} and the owner's URL.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.ingest.enabled", havingValue = "true")
+@Slf4j
+public class BinaryIngestServer {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Responses gathered into one write
+    private static final int MAX_GATHER = 64;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final AccountService accountService;
+    private final ShardRouter shardRouter;
+    private final IngestProperties properties;
+    private final ExecutorService workers;
+    // Connections with responses waiting to be written
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public BinaryIngestServer(AccountService accountService, ShardRouter shardRouter, IngestProperties properties,
+                              WorkerExecutors workerExecutors) {
+        this.accountService = accountService;
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+        this.workers = workerExecutors.newExecutor("ingest-worker", properties.getWorkerThreads());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(properties.getPort()));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::run, "ingest-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("Binary ingestion listening on port {}", getPort());
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones, after letting requests already running finish.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            log.warn("Binary ingestion requests did not finish within {} ms", SHUTDOWN_TIMEOUT_MS);
+        }
+        running = false;
+        selector.wakeup();
+        selectorThread.join(SHUTDOWN_TIMEOUT_MS);
+    }
+
+    /**
+     * The port listened on, which is chosen by the system when configured as 0.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    write(connection);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Binary ingestion selector failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            closeQuietly(serverChannel);
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void read(Connection connection) {
+        try {
+            if (connection.channel.read(connection.in) < 0) {
+                close(connection);
+                return;
+            }
+        } catch (IOException e) {
+            log.debug("Failed to read from ingestion connection {}", connection.channel, e);
+            close(connection);
+            return;
+        }
+        dispatchFrames(connection);
+    }
+
+    // Starts every complete request in the read buffer, unless the connection has too many outstanding
+    private void dispatchFrames(Connection connection) {
+        ByteBuffer in = connection.in.flip();
+        while (connection.inFlight < properties.getMaxInFlightPerConnection()
+                && in.remaining() >= IngestProtocol.LENGTH_BYTES) {
+            int length = in.getInt(in.position());
+            if (length < 1 + 8 || length > IngestProtocol.MAX_FRAME_LENGTH) {
+                log.warn("Closing ingestion connection {} after a frame of invalid length {}",
+                        connection.channel, length);
+                close(connection);
+                return;
+            }
+            if (in.remaining() < IngestProtocol.LENGTH_BYTES + length) {
+                break;
+            }
+            ByteBuffer frame = in.slice(in.position() + IngestProtocol.LENGTH_BYTES, length);
+            // The operation code comes first
+            long requestId = frame.getLong(1);
+            in.position(in.position() + IngestProtocol.LENGTH_BYTES + length);
+            Request request;
+            try {
+                request = IngestProtocol.decodeRequest(frame);
+            } catch (IllegalArgumentException e) {
+                connection.inFlight++;
+                connection.send(Response.failed(requestId, IngestStatus.REJECTED, e.getMessage()));
+                continue;
+            }
+            connection.inFlight++;
+            try {
+                workers.execute(() -> connection.send(execute(request)));
+            } catch (RejectedExecutionException e) {
+                connection.send(Response.failed(requestId, IngestStatus.UNAVAILABLE, "The server is shutting down"));
+            }
+        }
+        in.compact();
+        setReading(connection, connection.inFlight < properties.getMaxInFlightPerConnection());
+    }
+
+    private Response execute(Request request) {
+        UUID accountId = request.operation() == IngestOperation.DEPOSIT
+                ? request.toAccountId()
+                : request.fromAccountId();
+        if (!shardRouter.isLocal(accountId)) {
+            return Response.failed(request.requestId(), IngestStatus.WRONG_NODE, shardRouter.ownerOf(accountId));
+        }
+        if (request.amount() <= 0) {
+            return Response.failed(request.requestId(), IngestStatus.REJECTED, "Amount must be positive");
+        }
+        try {
+            TransactionDto transaction = switch (request.operation()) {
+                case TRANSFER -> {
+                    TransferRequest transfer = new TransferRequest();
+                    transfer.setFromAccountId(request.fromAccountId());
+                    transfer.setToAccountId(request.toAccountId());
+                    transfer.setAmount(Money.toBigDecimal(request.amount()));
+                    transfer.setDescription(request.description());
+                    yield accountService.transferFunds(transfer, request.idempotencyKey());
+                }
+                case DEPOSIT -> {
+                    DepositRequest deposit = new DepositRequest();
+                    deposit.setToAccountId(request.toAccountId());
+                    deposit.setAmount(Money.toBigDecimal(request.amount()));
+                    yield accountService.depositFunds(deposit, request.idempotencyKey());
+                }
+                case WITHDRAW -> {
+                    WithdrawRequest withdrawal = new WithdrawRequest();
+                    withdrawal.setFromAccountId(request.fromAccountId());
+                    withdrawal.setAmount(Money.toBigDecimal(request.amount()));
+                    yield accountService.withdrawFunds(withdrawal, request.idempotencyKey());
+                }
+            };
+            return Response.ok(request.requestId(), transaction.getId());
+        } catch (RuntimeException e) {
+            IngestStatus status = IngestStatus.of(e);
+            if (status == IngestStatus.ERROR) {
+                log.error("Binary ingestion request {} failed unexpectedly", request.requestId(), e);
+                return Response.failed(request.requestId(), status, "An unexpected error occurred");
+            }
+            return Response.failed(request.requestId(), status, e.getMessage());
+        }
+    }
+
+    // Writes as many waiting responses as the socket takes, then resumes reading if enough have gone out
+    private void write(Connection connection) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        connection.writeScheduled.set(false);
+        ByteBuffer response;
+        while ((response = connection.outbox.poll()) != null) {
+            connection.unsent.add(response);
+        }
+
+        ByteBuffer[] batch = new ByteBuffer[MAX_GATHER];
+        try {
+            while (!connection.unsent.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer buffer : connection.unsent) {
+                    batch[count++] = buffer;
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                }
+                connection.channel.write(batch, 0, count);
+                while (!connection.unsent.isEmpty() && !connection.unsent.peek().hasRemaining()) {
+                    connection.unsent.poll();
+                    connection.inFlight--;
+                }
+                if (batch[count - 1].hasRemaining()) {
+                    // The socket buffer is full
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed to write to ingestion connection {}", connection.channel, e);
+            close(connection);
+            return;
+        }
+
+        SelectionKey key = connection.key;
+        int ops = key.interestOps();
+        key.interestOps(connection.unsent.isEmpty() ? ops & ~SelectionKey.OP_WRITE : ops | SelectionKey.OP_WRITE);
+        if ((ops & SelectionKey.OP_READ) == 0 && connection.inFlight < properties.getMaxInFlightPerConnection()) {
+            // Requests may already be waiting in the read buffer
+            dispatchFrames(connection);
+        }
+    }
+
+    private void setReading(Connection connection, boolean reading) {
+        SelectionKey key = connection.key;
+        if (key.isValid()) {
+            int ops = key.interestOps();
+            key.interestOps(reading ? ops | SelectionKey.OP_READ : ops & ~SelectionKey.OP_READ);
+        }
+    }
+
+    private void close(Connection connection) {
+        closeQuietly(connection.key);
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Failed to close {}", closeable, e);
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        // Responses added by worker threads
+        private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean writeScheduled = new AtomicBoolean();
+        // The rest are only used by the selector thread
+        private final ArrayDeque<ByteBuffer> unsent = new ArrayDeque<>();
+        private SelectionKey key;
+        // Requests read but not yet answered in full
+        private int inFlight;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void send(Response response) {
+            outbox.add(IngestProtocol.encode(response));
+            if (writeScheduled.compareAndSet(false, true)) {
+                pendingWrites.add(this);
+                if (Thread.currentThread() != selectorThread) {
+                    selector.wakeup();
+                }
+            }
+        }
+    }
+}
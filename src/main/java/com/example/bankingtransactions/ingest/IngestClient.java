@@ -0,0 +1,127 @@
+package com.example.bankingtransactions.ingest;
+
+import com.example.bankingtransactions.ingest.IngestProtocol.Request;
+import com.example.bankingtransactions.ingest.IngestProtocol.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Client for the binary ingestion protocol over one connection. Requests can be sent from any thread without waiting
+ * for earlier ones to be answered: a writer thread batches whatever has been queued into as few socket writes as
+ * possible, and a reader thread completes each request's future when its response arrives.
+ * <p>
+ * Request ids must be unique among the requests in progress on the connection.
+ */
+public class IngestClient implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Socket socket;
+    private final BlockingQueue<ByteBuffer> outbox = new LinkedBlockingQueue<>();
+    private final Map<Long, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private final Thread reader;
+    private volatile IOException failure;
+
+    public IngestClient(String host, int port) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port));
+        writer = new Thread(this::writeLoop, "ingest-client-writer");
+        reader = new Thread(this::readLoop, "ingest-client-reader");
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /**
+     * Queues a request, returning a future completed with its response, or completed exceptionally if the
+     * connection fails first.
+     */
+    public CompletableFuture<Response> send(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (pending.putIfAbsent(request.requestId(), future) != null) {
+            throw new IllegalArgumentException("Request " + request.requestId() + " is already in progress");
+        }
+        outbox.add(IngestProtocol.encode(request));
+        if (failure != null) {
+            fail(failure);
+        }
+        return future;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        writer.interrupt();
+    }
+
+    private void writeLoop() {
+        try {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            while (true) {
+                ByteBuffer frame = outbox.take();
+                do {
+                    out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                } while ((frame = outbox.poll()) != null);
+                // Flush only once nothing else is waiting
+                out.flush();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new IOException("Client closed"));
+        }
+    }
+
+    private void readLoop() {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > IngestProtocol.MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid response frame length " + length);
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                Response response = IngestProtocol.decodeResponse(ByteBuffer.wrap(frame));
+                CompletableFuture<Response> future = pending.remove(response.requestId());
+                if (future != null) {
+                    future.complete(response);
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (IllegalArgumentException e) {
+            fail(new IOException(e.getMessage(), e));
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        for (Long requestId : pending.keySet()) {
+            CompletableFuture<Response> future = pending.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(e);
+            }
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.bankingtransactions.ingest;
+
+import com.example.bankingtransactions.enums.IngestOperation;
+import com.example.bankingtransactions.enums.IngestStatus;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Frames of the binary ingestion protocol, big-endian, each prefixed with an int giving the length of the rest of
+ * the frame:
+ * <pre>
+ * request:  int length, byte operation, long requestId, long amount (cents),
+ *           TRANSFER: long fromHigh, long fromLow, long toHigh, long toLow
+ *           DEPOSIT:  long toHigh, long toLow
+ *           WITHDRAW: long fromHigh, long fromLow
+ *           short keyLength, byte[] idempotencyKey
+ *           TRANSFER: short descriptionLength, byte[] description
+ * response: int length, long requestId, byte status,
+ *           OK: long transactionIdHigh, long transactionIdLow
+ *           otherwise: short messageLength, byte[] message
+ * </pre>
+ * Strings are UTF-8, with a length of -1 when absent. Responses carry the id of the request they answer and may
+ * arrive in any order, so a client can pipeline many requests on one connection.
+ */
+public final class IngestProtocol {
+
+    public static final int LENGTH_BYTES = 4;
+    public static final int MAX_FRAME_LENGTH = 4096;
+    // Leaves room for the rest of a response
+    private static final int MAX_MESSAGE_BYTES = 2048;
+
+    private IngestProtocol() {
+    }
+
+    public record Request(long requestId, IngestOperation operation, UUID fromAccountId, UUID toAccountId,
+                          long amount, String description, String idempotencyKey) {
+
+        public static Request transfer(long requestId, UUID fromAccountId, UUID toAccountId, long amount,
+                                       String description, String idempotencyKey) {
+            return new Request(requestId, IngestOperation.TRANSFER, fromAccountId, toAccountId, amount, description,
+                    idempotencyKey);
+        }
+
+        public static Request deposit(long requestId, UUID toAccountId, long amount, String idempotencyKey) {
+            return new Request(requestId, IngestOperation.DEPOSIT, null, toAccountId, amount, null, idempotencyKey);
+        }
+
+        public static Request withdraw(long requestId, UUID fromAccountId, long amount, String idempotencyKey) {
+            return new Request(requestId, IngestOperation.WITHDRAW, fromAccountId, null, amount, null, idempotencyKey);
+        }
+    }
+
+    public record Response(long requestId, IngestStatus status, UUID transactionId, String message) {
+
+        public static Response ok(long requestId, UUID transactionId) {
+            return new Response(requestId, IngestStatus.OK, transactionId, null);
+        }
+
+        public static Response failed(long requestId, IngestStatus status, String message) {
+            return new Response(requestId, status, null, message);
+        }
+    }
+
+    /**
+     * Encodes a request as a frame, ready to be written.
+     */
+    public static ByteBuffer encode(Request request) {
+        boolean transfer = request.operation() == IngestOperation.TRANSFER;
+        byte[] key = bytes(request.idempotencyKey());
+        byte[] description = transfer ? bytes(request.description()) : null;
+        int length = 1 + 8 + 8 + (transfer ? 32 : 16) + 2 + (key == null ? 0 : key.length)
+                + (transfer ? 2 + (description == null ? 0 : description.length) : 0);
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Request " + request.requestId() + " does not fit in a frame");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_BYTES + length);
+        buffer.putInt(length);
+        buffer.put(request.operation().getCode());
+        buffer.putLong(request.requestId());
+        buffer.putLong(request.amount());
+        if (request.operation() != IngestOperation.DEPOSIT) {
+            putUuid(buffer, request.fromAccountId());
+        }
+        if (request.operation() != IngestOperation.WITHDRAW) {
+            putUuid(buffer, request.toAccountId());
+        }
+        putBytes(buffer, key);
+        if (transfer) {
+            putBytes(buffer, description);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Decodes a request frame, positioned just past its length.
+     *
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static Request decodeRequest(ByteBuffer frame) {
+        try {
+            IngestOperation operation = IngestOperation.of(frame.get());
+            long requestId = frame.getLong();
+            if (operation == null) {
+                throw new IllegalArgumentException("Unknown operation in request " + requestId);
+            }
+            long amount = frame.getLong();
+            UUID from = operation != IngestOperation.DEPOSIT ? getUuid(frame) : null;
+            UUID to = operation != IngestOperation.WITHDRAW ? getUuid(frame) : null;
+            String key = getString(frame);
+            String description = operation == IngestOperation.TRANSFER ? getString(frame) : null;
+            if (frame.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected bytes at the end of request " + requestId);
+            }
+            return new Request(requestId, operation, from, to, amount, description, key);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated request frame");
+        }
+    }
+
+    public static ByteBuffer encode(Response response) {
+        byte[] message = null;
+        if (response.status() != IngestStatus.OK) {
+            message = bytes(response.message());
+            if (message != null && message.length > MAX_MESSAGE_BYTES) {
+                message = Arrays.copyOf(message, MAX_MESSAGE_BYTES);
+            }
+        }
+        int length = 8 + 1 + (response.status() == IngestStatus.OK ? 16 : 2 + (message == null ? 0 : message.length));
+
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_BYTES + length);
+        buffer.putInt(length);
+        buffer.putLong(response.requestId());
+        buffer.put(response.status().getCode());
+        if (response.status() == IngestStatus.OK) {
+            putUuid(buffer, response.transactionId());
+        } else {
+            putBytes(buffer, message);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Decodes a response frame, positioned just past its length.
+     *
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static Response decodeResponse(ByteBuffer frame) {
+        try {
+            long requestId = frame.getLong();
+            IngestStatus status = IngestStatus.of(frame.get());
+            return status == IngestStatus.OK
+                    ? Response.ok(requestId, getUuid(frame))
+                    : Response.failed(requestId, status, getString(frame));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated response frame");
+        }
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID id) {
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < -1) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.model.Account;
+
+import java.util.List;
+
+/**
+ * Account state loaded from a snapshot file. Every journal record before {@code journalOffset} is reflected in the
+ * accounts; records after it are reflected in an account only if they end at or before that account's own
+ * journal offset. Pending credits are transfers between engine partitions that had not been credited when the
+ * snapshot was taken; their credit records, if any, may lie before or after {@code journalOffset}.
+ */
+public record BalanceSnapshot(long journalOffset, List<Account> accounts, List<PendingCredit> pendingCredits) {
+}
@@ -0,0 +1,112 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.config.SnapshotProperties;
+import com.example.bankingtransactions.engine.LedgerOperations;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.repository.AccountRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a snapshot of every account's balance. Writers are never paused: the journal offset is read
+ * first, then each account is copied under its own lock together with the journal offset of the last record applied
+ * to it. Replaying the journal from the snapshot offset then skips records an account has already seen.
+ * Transfers between engine partitions or nodes that are still waiting for their credit are recorded alongside.
+ */
+@Component
+@ConditionalOnExpression("${banking.journal.enabled:false} and ${banking.snapshot.enabled:true}")
+@Slf4j
+public class BalanceSnapshotter {
+
+    private final MappedLedgerJournal journal;
+    private final SnapshotStore snapshotStore;
+    private final AccountRepository accountRepository;
+    private final LedgerOperations ledgerOperations;
+    private final long intervalMs;
+
+    private ScheduledExecutorService scheduler;
+    private volatile long lastSnapshotOffset;
+
+    // Depends on JournalRecovery so snapshots only start once recovery is complete
+    public BalanceSnapshotter(MappedLedgerJournal journal, SnapshotStore snapshotStore,
+                              AccountRepository accountRepository, LedgerOperations ledgerOperations,
+                              JournalRecovery journalRecovery, SnapshotProperties properties) {
+        this.journal = journal;
+        this.snapshotStore = snapshotStore;
+        this.accountRepository = accountRepository;
+        this.ledgerOperations = ledgerOperations;
+        this.intervalMs = properties.getIntervalMs();
+        this.lastSnapshotOffset = journalRecovery.getSnapshotOffset();
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(intervalMs, TimeUnit.MILLISECONDS);
+        // A final snapshot keeps the next startup short
+        snapshotSafely();
+    }
+
+    /**
+     * Writes a snapshot unless nothing has been journaled since the last one.
+     */
+    public void snapshot() {
+        long journalOffset = journal.getWrittenOffset();
+        if (journalOffset == lastSnapshotOffset) {
+            return;
+        }
+        long start = System.nanoTime();
+        // Read after the journal offset, so any debit the offset covers is either credited or still pending here
+        List<PendingCredit> pendingCredits = List.copyOf(ledgerOperations.pendingCredits());
+        Path path = snapshotStore.write(journalOffset, this::copyAccounts, pendingCredits);
+        lastSnapshotOffset = journalOffset;
+        log.info("Wrote balance snapshot {} at journal offset {} in {} ms", path.getFileName(), journalOffset,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void snapshotSafely() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Balance snapshot failed", e);
+        }
+    }
+
+    // Copies each account under its lock, so its balance and journal offset are consistent with each other
+    private Iterator<Account> copyAccounts() {
+        Iterator<Account> accounts = accountRepository.findAll().values().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return accounts.hasNext();
+            }
+
+            @Override
+            public Account next() {
+                Account account = accounts.next();
+                return accountRepository.withAccountLock(account.getId(), () -> new Account(account.getId(),
+                        account.getName(), account.getBalance(), account.getCreatedAt(), account.getJournalOffset()));
+            }
+        };
+    }
+}
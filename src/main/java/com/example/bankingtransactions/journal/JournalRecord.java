@@ -0,0 +1,195 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.enums.JournalRecordType;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * A single journal entry. Every record has the same fixed-layout header, followed by the UTF-8 bytes of the
+ * account name or transaction description:
+ * <pre>
+ * int  length       total record length in bytes
+ * int  checksum     CRC32C of everything after this field
+ * byte recordType   JournalRecordType ordinal
+ * byte txType       TransactionType ordinal, or -1
+ * int  textLength   length of the text in bytes, or -1 for null
+ * long id           (2 longs)
+ * long fromAccount  (2 longs, nil UUID when absent)
+ * long toAccount    (2 longs, nil UUID when absent)
+ * long amount       cents; the initial balance for account records
+ * long timestamp    nanoseconds since the epoch, in the ledger's local time
+ * byte[] text
+ * </pre>
+ *
+ * @param offset journal offset just past this record, only set on records read back from the journal
+ */
+public record JournalRecord(JournalRecordType recordType, TransactionType transactionType, UUID id,
+                            UUID fromAccountId, UUID toAccountId, long amount, LocalDateTime timestamp,
+                            String text, long offset) {
+
+    public static final int HEADER_SIZE = 4 + 4 + 1 + 1 + 4 + 16 * 3 + 8 + 8;
+
+    // Header length value marking the unused tail of a segment
+    public static final int END_OF_SEGMENT = -1;
+
+    private static final UUID NIL = new UUID(0, 0);
+    private static final JournalRecordType[] RECORD_TYPES = JournalRecordType.values();
+    private static final TransactionType[] TRANSACTION_TYPES = TransactionType.values();
+
+    public static JournalRecord of(Account account) {
+        return new JournalRecord(JournalRecordType.ACCOUNT_CREATED, null, account.getId(), null, null,
+                account.getBalance(), account.getCreatedAt(), account.getName(), 0);
+    }
+
+    public static JournalRecord batchHeader(int recordCount) {
+        return new JournalRecord(JournalRecordType.BATCH, null, null, null, null, recordCount,
+                LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), null, 0);
+    }
+
+    public static JournalRecord of(Transaction transaction) {
+        return new JournalRecord(JournalRecordType.TRANSACTION, transaction.getType(), transaction.getId(),
+                transaction.getFromAccountId(), transaction.getToAccountId(), transaction.getAmount(),
+                transaction.getTimestamp(), transaction.getDescription(), 0);
+    }
+
+    public static JournalRecord imported(Transaction transaction) {
+        return of(transaction).withRecordType(JournalRecordType.IMPORTED_TRANSACTION);
+    }
+
+    public static JournalRecord transferDebit(Transaction transaction) {
+        return of(transaction).withRecordType(JournalRecordType.TRANSFER_DEBIT);
+    }
+
+    /**
+     * Credit record for a transfer between partitions. Crediting the source account refunds the transfer.
+     */
+    public static JournalRecord transferCredit(Transaction transaction, UUID creditedAccountId) {
+        return new JournalRecord(JournalRecordType.TRANSFER_CREDIT, transaction.getType(), transaction.getId(),
+                transaction.getFromAccountId(), creditedAccountId, transaction.getAmount(),
+                transaction.getTimestamp(), transaction.getDescription(), 0);
+    }
+
+    /**
+     * Whether the record completes a transaction that belongs in the account history. Transfers between
+     * partitions appear in history once credited, and not at all if they were refunded.
+     */
+    public boolean completesTransaction() {
+        return recordType == JournalRecordType.TRANSACTION
+                || recordType == JournalRecordType.IMPORTED_TRANSACTION
+                || recordType == JournalRecordType.TRANSFER_CREDIT && !toAccountId.equals(fromAccountId);
+    }
+
+    public Account toAccount() {
+        return new Account(id, text, amount, timestamp, offset);
+    }
+
+    public Transaction toTransaction() {
+        return new Transaction(id, fromAccountId, toAccountId, amount, transactionType, text, timestamp);
+    }
+
+    private JournalRecord withRecordType(JournalRecordType type) {
+        return new JournalRecord(type, transactionType, id, fromAccountId, toAccountId, amount, timestamp, text, offset);
+    }
+
+    /**
+     * Writes the record at the buffer's position and returns its encoded length.
+     */
+    public int encode(ByteBuffer buffer, byte[] textBytes) {
+        int length = HEADER_SIZE + (textBytes == null ? 0 : textBytes.length);
+        int start = buffer.position();
+        buffer.putInt(length);
+        buffer.putInt(0); // checksum, filled in below
+        buffer.put((byte) recordType.ordinal());
+        buffer.put(transactionType == null ? -1 : (byte) transactionType.ordinal());
+        buffer.putInt(textBytes == null ? -1 : textBytes.length);
+        putUuid(buffer, id);
+        putUuid(buffer, fromAccountId);
+        putUuid(buffer, toAccountId);
+        buffer.putLong(amount);
+        buffer.putLong(toEpochNanos(timestamp));
+        if (textBytes != null) {
+            buffer.put(textBytes);
+        }
+        buffer.putInt(start + 4, checksum(buffer, start, length));
+        return length;
+    }
+
+    public byte[] textBytes() {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the record at the buffer's position. Returns null, leaving the position unchanged, if the bytes
+     * there are not a complete record with a valid checksum.
+     *
+     * @param baseOffset journal offset of the buffer's first byte
+     */
+    public static JournalRecord decode(ByteBuffer buffer, long baseOffset) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length < HEADER_SIZE || length > buffer.remaining()
+                || buffer.getInt(start + 4) != checksum(buffer, start, length)) {
+            return null;
+        }
+        buffer.position(start + 8);
+        int recordType = buffer.get();
+        int transactionType = buffer.get();
+        int textLength = buffer.getInt();
+        if (recordType < 0 || recordType >= RECORD_TYPES.length || transactionType >= TRANSACTION_TYPES.length
+                || textLength != length - HEADER_SIZE && !(textLength == -1 && length == HEADER_SIZE)) {
+            buffer.position(start);
+            return null;
+        }
+        UUID id = getUuid(buffer);
+        UUID from = getUuid(buffer);
+        UUID to = getUuid(buffer);
+        long amount = buffer.getLong();
+        LocalDateTime timestamp = fromEpochNanos(buffer.getLong());
+        String text = null;
+        if (textLength >= 0) {
+            byte[] bytes = new byte[textLength];
+            buffer.get(bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new JournalRecord(RECORD_TYPES[recordType],
+                transactionType < 0 ? null : TRANSACTION_TYPES[transactionType],
+                id, from, to, amount, timestamp, text, baseOffset + start + length);
+    }
+
+    private static int checksum(ByteBuffer buffer, int start, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + 8, length - 8));
+        return (int) crc.getValue();
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        UUID value = uuid == null ? NIL : uuid;
+        buffer.putLong(value.getMostSignificantBits());
+        buffer.putLong(value.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        return NIL.equals(uuid) ? null : uuid;
+    }
+
+    static long toEpochNanos(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    static LocalDateTime fromEpochNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.cluster.CrossShardTransfers;
+import com.example.bankingtransactions.cluster.ShardRouter;
+import com.example.bankingtransactions.engine.LedgerOperations;
+import com.example.bankingtransactions.enums.JournalRecordType;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.TieredTransactionRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds account balances and transaction history before the application starts serving requests. Balances come
+ * from the newest valid snapshot plus the journal records after it, so startup time depends on the journal tail
+ * rather than the whole ledger. History before the snapshot is read back from the journal in the background.
+ * Transfers between engine partitions that were debited but never credited are completed at the end.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.journal.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class JournalRecovery {
+
+    // Transactions restored from before the snapshot between spills of tiered history, which keep the restore from
+    // holding the whole history in memory
+    private static final int BACKFILL_SPILL_INTERVAL = 1 << 18;
+
+    private final MappedLedgerJournal journal;
+    private final SnapshotStore snapshotStore;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountSummaryRepository accountSummaryRepository;
+    private final MeterRegistry meterRegistry;
+    private final LedgerOperations ledgerOperations;
+    private final ShardRouter shardRouter;
+    private final ObjectProvider<CrossShardTransfers> crossShardTransfers;
+    // Transfers debited by a TRANSFER_DEBIT record and not yet credited, in journal order
+    private final Map<UUID, PendingCredit> pendingCredits = new LinkedHashMap<>();
+    // Transfers credited by a TRANSFER_CREDIT record after the snapshot, kept until history before it is restored
+    private final Set<UUID> replayedCredits = new HashSet<>();
+
+    @Getter
+    private long snapshotOffset;
+    @Getter
+    private long accountsFromSnapshot;
+    @Getter
+    private long recordsReplayed;
+    @Getter
+    private long startupMillis;
+    @Getter
+    private volatile boolean historyComplete;
+    /**
+     * Epoch nanoseconds up to which history from before the snapshot has been restored: {@code Long.MIN_VALUE} until
+     * the restore starts, {@code Long.MAX_VALUE} once it is complete
+     */
+    @Getter
+    private volatile long historyRestoredUpTo = Long.MIN_VALUE;
+
+    @PostConstruct
+    public void recover() {
+        long start = System.nanoTime();
+        BalanceSnapshot snapshot = snapshotStore.loadLatest();
+        if (snapshot != null) {
+            snapshot.accounts().forEach(accountRepository::save);
+            snapshotOffset = snapshot.journalOffset();
+            accountsFromSnapshot = snapshot.accounts().size();
+            loadPendingCredits(snapshot);
+        }
+        journal.recover(snapshotOffset, this::apply);
+        completePendingCredits();
+        startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Recovered {} accounts from snapshot at journal offset {} and replayed {} journal records in {} ms",
+                accountsFromSnapshot, snapshotOffset, recordsReplayed, startupMillis);
+        registerMetrics();
+
+        if (snapshotOffset == 0) {
+            historyRestoredUpTo = Long.MAX_VALUE;
+            historyComplete = true;
+        } else {
+            Thread backfill = new Thread(this::backfillHistory, "history-backfill");
+            backfill.setDaemon(true);
+            backfill.start();
+        }
+    }
+
+    private void registerMetrics() {
+        TimeGauge.builder("ledger.recovery.duration", this, TimeUnit.MILLISECONDS, JournalRecovery::getStartupMillis)
+                .description("Time taken to restore balances at startup")
+                .register(meterRegistry);
+        Gauge.builder("ledger.recovery.records.replayed", this, JournalRecovery::getRecordsReplayed)
+                .description("Journal records replayed after the snapshot at startup")
+                .register(meterRegistry);
+        Gauge.builder("ledger.recovery.snapshot.accounts", this, JournalRecovery::getAccountsFromSnapshot)
+                .description("Accounts loaded from the snapshot at startup")
+                .register(meterRegistry);
+        Gauge.builder("ledger.recovery.history.complete", this, recovery -> recovery.isHistoryComplete() ? 1 : 0)
+                .description("Whether history from before the snapshot has been restored")
+                .register(meterRegistry);
+    }
+
+    private void apply(JournalRecord record) {
+        recordsReplayed++;
+        switch (record.recordType()) {
+            case ACCOUNT_CREATED -> {
+                if (accountRepository.findById(record.id()).isEmpty()) {
+                    accountRepository.save(record.toAccount());
+                }
+                accountSummaryRepository.open(record.id(), record.amount());
+            }
+            case TRANSACTION -> applyTransaction(record);
+            case IMPORTED_TRANSACTION -> restore(record);
+            case TRANSFER_DEBIT -> {
+                Account from = findAccountBehind(record.fromAccountId(), record);
+                if (from != null) {
+                    if (!from.withdraw(record.amount())) {
+                        log.warn("Journal transaction {} overdraws account {}", record.id(), from.getId());
+                    }
+                    from.setJournalOffset(record.offset());
+                }
+                pendingCredits.put(record.id(), new PendingCredit(record.toTransaction(), record.offset()));
+            }
+            case TRANSFER_CREDIT -> {
+                // A commit to another node retried after it had succeeded could write a second credit record
+                if (!replayedCredits.add(record.id())) {
+                    log.warn("Skipping repeated credit of journal transaction {}", record.id());
+                    return;
+                }
+                // A credit to an account on another node only completes the transfer here
+                Account account = shardRouter.isLocal(record.toAccountId())
+                        ? findAccountBehind(record.toAccountId(), record)
+                        : null;
+                if (account != null) {
+                    account.deposit(record.amount());
+                    account.setJournalOffset(record.offset());
+                }
+                pendingCredits.remove(record.id());
+                if (record.completesTransaction()) {
+                    restore(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes over the snapshot's pending credits, dropping those whose credit record lies before the snapshot
+     * offset: their credit is already in the snapshot balances. Pending credits are short-lived, so only a small
+     * stretch of the journal before the snapshot needs to be read.
+     */
+    private void loadPendingCredits(BalanceSnapshot snapshot) {
+        if (snapshot.pendingCredits().isEmpty()) {
+            return;
+        }
+        long fromOffset = Long.MAX_VALUE;
+        for (PendingCredit pending : snapshot.pendingCredits()) {
+            pendingCredits.put(pending.transaction().getId(), pending);
+            fromOffset = Math.min(fromOffset, pending.journalOffset());
+        }
+        journal.read(fromOffset, snapshotOffset, record -> {
+            if (record.recordType() == JournalRecordType.TRANSFER_CREDIT) {
+                pendingCredits.remove(record.id());
+            }
+        });
+    }
+
+    // Credits the destination of every transfer the journal left half done, as the engine would have. Transfers to
+    // accounts on other nodes are left pending for the cluster to complete
+    private void completePendingCredits() {
+        long journalOffset = 0;
+        int remote = 0;
+        for (PendingCredit pending : pendingCredits.values()) {
+            Transaction transaction = pending.transaction();
+            if (!shardRouter.isLocal(transaction.getToAccountId())) {
+                ledgerOperations.restorePendingCredit(pending);
+                remote++;
+                continue;
+            }
+            Account to = accountRepository.findById(transaction.getToAccountId()).orElse(null);
+            if (to == null) {
+                log.warn("Pending transfer {} references unknown account {}", transaction.getId(), transaction.getToAccountId());
+                continue;
+            }
+            journalOffset = journal.appendTransferCredit(transaction, to.getId());
+            to.deposit(transaction.getAmount());
+            to.setJournalOffset(journalOffset);
+            restore(transaction);
+        }
+        if (pendingCredits.size() > remote) {
+            journal.awaitDurable(journalOffset);
+            log.info("Completed {} transfers between partitions that were interrupted before being credited",
+                    pendingCredits.size() - remote);
+        }
+        if (remote > 0) {
+            log.info("Left {} transfers to accounts on other nodes to be credited by their nodes", remote);
+        }
+        pendingCredits.clear();
+    }
+
+    // Recovery runs before any requests are served, so no account locks are needed
+    private void applyTransaction(JournalRecord record) {
+        Transaction transaction = record.toTransaction();
+        if (transaction.getFromAccountId() != null) {
+            Account from = findAccountBehind(transaction.getFromAccountId(), record);
+            if (from != null) {
+                if (!from.withdraw(transaction.getAmount())) {
+                    log.warn("Journal transaction {} overdraws account {}", transaction.getId(), from.getId());
+                }
+                from.setJournalOffset(record.offset());
+            }
+        }
+        if (transaction.getToAccountId() != null) {
+            Account to = findAccountBehind(transaction.getToAccountId(), record);
+            if (to != null) {
+                to.deposit(transaction.getAmount());
+                to.setJournalOffset(record.offset());
+            }
+        }
+        restore(transaction);
+    }
+
+    /**
+     * Returns the account if the record has not been applied to it yet, i.e. it was not already covered by the
+     * account's state in the snapshot.
+     */
+    private Account findAccountBehind(UUID accountId, JournalRecord record) {
+        Account account = accountRepository.findById(accountId).orElse(null);
+        if (account == null) {
+            log.warn("Journal transaction {} references unknown account {}", record.id(), accountId);
+            return null;
+        }
+        return account.getJournalOffset() < record.offset() ? account : null;
+    }
+
+    private void restore(Transaction transaction) {
+        transactionRepository.save(transaction);
+        accountSummaryRepository.record(transaction);
+    }
+
+    private void restore(JournalRecord record) {
+        Transaction transaction = record.toTransaction();
+        if (record.recordType() == JournalRecordType.IMPORTED_TRANSACTION) {
+            transactionRepository.save(transaction);
+            accountSummaryRepository.recordImported(transaction);
+            return;
+        }
+        restore(transaction);
+        // Transfers from other nodes must not be credited again if their node repeats the commit
+        if (record.recordType() == JournalRecordType.TRANSFER_CREDIT && !shardRouter.isLocal(transaction.getFromAccountId())) {
+            crossShardTransfers.ifAvailable(transfers -> transfers.registerCommitted(transaction.getId()));
+        }
+    }
+
+    // The journal is read roughly in timestamp order, so history up to the record just restored is complete
+    private void spillRestored(JournalRecord record) {
+        if (transactionRepository instanceof TieredTransactionRepository tiered) {
+            historyRestoredUpTo = HistoryKey.epochNanos(record.timestamp());
+            tiered.spill();
+        }
+    }
+
+    private void backfillHistory() {
+        long start = System.nanoTime();
+        try {
+            long[] restored = new long[1];
+            Map<UUID, Long> openingBalances = new HashMap<>();
+            Set<UUID> debited = new HashSet<>();
+            // History is ordered by timestamp, so older transactions slot in behind the ones recorded since startup
+            journal.read(0, snapshotOffset, record -> {
+                if (isRepeatedCredit(record, debited)) {
+                    log.warn("Skipping repeated credit of journal transaction {}", record.id());
+                } else if (record.completesTransaction()) {
+                    restore(record);
+                    if (++restored[0] % BACKFILL_SPILL_INTERVAL == 0) {
+                        spillRestored(record);
+                    }
+                } else if (record.recordType() == JournalRecordType.ACCOUNT_CREATED) {
+                    openingBalances.put(record.id(), record.amount());
+                }
+            });
+            // Only once their whole history is back, so balances at a point in time are never computed from part of it
+            openingBalances.forEach(accountSummaryRepository::open);
+            historyRestoredUpTo = Long.MAX_VALUE;
+            historyComplete = true;
+            replayedCredits.clear();
+            log.info("Restored {} transactions from before the snapshot in {} ms", restored[0],
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.error("Failed to restore transaction history from before the snapshot", e);
+        }
+    }
+
+    // A transfer debited here is completed by the first credit after its debit, and only if none was replayed after
+    // the snapshot. Transfers from other nodes are credited once by CrossShardTransfers
+    private boolean isRepeatedCredit(JournalRecord record, Set<UUID> debited) {
+        if (record.recordType() == JournalRecordType.TRANSFER_DEBIT) {
+            debited.add(record.id());
+            return false;
+        }
+        return record.recordType() == JournalRecordType.TRANSFER_CREDIT && shardRouter.isLocal(record.fromAccountId())
+                && (!debited.remove(record.id()) || replayedCredits.contains(record.id()));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Append-only log of every account and transaction. Appends return the journal offset just past the written
+ * record, which can be passed to {@link #awaitDurable(long)} once the caller has released its account locks.
+ */
+public interface LedgerJournal {
+
+    long appendAccount(Account account);
+
+    long appendTransaction(Transaction transaction);
+
+    /**
+     * Appends the transactions so that recovery sees either all of them or none.
+     */
+    long appendTransactions(List<Transaction> transactions);
+
+    /**
+     * Appends the debit half of a transfer between engine partitions. Recovery completes the transfer if no
+     * matching credit record follows.
+     */
+    long appendTransferDebit(Transaction transaction);
+
+    /**
+     * Appends the credit half of a transfer between engine partitions, crediting the given account.
+     */
+    long appendTransferCredit(Transaction transaction, UUID creditedAccountId);
+
+    /**
+     * Offset just past the last record appended so far.
+     */
+    long getWrittenOffset();
+
+    /**
+     * Appends accounts and transactions loaded by a bulk import. The transactions only enter the history on
+     * recovery; the accounts' balances already account for them.
+     */
+    long appendImport(List<Account> accounts, List<Transaction> transactions);
+
+    /**
+     * Blocks until everything up to the given offset has been written to disk, as far as the fsync policy requires.
+     */
+    void awaitDurable(long offset);
+}
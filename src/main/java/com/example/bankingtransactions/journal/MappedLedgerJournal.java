@@ -0,0 +1,446 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.config.JournalProperties;
+import com.example.bankingtransactions.enums.FsyncPolicy;
+import com.example.bankingtransactions.enums.JournalRecordType;
+import com.example.bankingtransactions.exception.LedgerUnavailableException;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Journal stored in fixed-size, memory-mapped segment files named after the journal offset of their first byte.
+ * Records never span segments; a segment whose remaining space is too small for the next record is closed with
+ * an end-of-segment marker. A zero length header marks the end of the journal.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.journal.enabled", havingValue = "true")
+@Slf4j
+public class MappedLedgerJournal implements LedgerJournal {
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final int segmentSize;
+    private final long groupCommitIntervalMs;
+    private final long durableTimeoutNanos;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentBase;
+
+    // Journal offset just past the last appended record
+    private volatile long writtenOffset;
+
+    // Journal offset up to which records are known to be on disk, used by the GROUP policy
+    private volatile long flushedOffset;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushed = flushLock.newCondition();
+    // Number of flushes that failed, guarded by flushLock, so waiters can tell one failed while they waited
+    private long failedFlushes;
+    private ScheduledExecutorService flusher;
+
+    public MappedLedgerJournal(JournalProperties properties) {
+        this.directory = Path.of(properties.getDirectory());
+        this.fsyncPolicy = properties.getFsyncPolicy();
+        this.segmentSize = properties.getSegmentSize();
+        this.groupCommitIntervalMs = properties.getGroupCommitIntervalMs();
+        this.durableTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getDurableTimeoutMs());
+    }
+
+    /**
+     * Replays every valid record from the given offset onwards, then opens the journal for appends after the last
+     * one. A torn or corrupt record ends the journal; it and anything after it is discarded.
+     *
+     * @param fromOffset a record boundary, such as the offset covered by a snapshot, or 0 to replay everything
+     */
+    public void recover(long fromOffset, Consumer<JournalRecord> handler) {
+        appendLock.lock();
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            long base = 0;
+            int position = 0;
+            boolean segmentClosed = false;
+            for (int i = 0; i < segments.size(); i++) {
+                Path path = segments.get(i);
+                base = baseOf(path);
+                if (i < segments.size() - 1 && baseOf(segments.get(i + 1)) <= fromOffset) {
+                    continue;
+                }
+                try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileChannel.size());
+                    if (fromOffset > base + buffer.limit()) {
+                        throw new IllegalStateException("Journal in " + directory + " ends before offset " + fromOffset);
+                    }
+                    buffer.position((int) Math.max(0, fromOffset - base));
+                    while (readNext(buffer, base, Long.MAX_VALUE, handler)) {
+                        // keep reading
+                    }
+                    position = buffer.position();
+                    segmentClosed = buffer.remaining() >= 4 && buffer.getInt(position) == JournalRecord.END_OF_SEGMENT;
+                    if (segmentClosed && i < segments.size() - 1) {
+                        continue;
+                    }
+                    // This is the last usable segment: discard any torn tail and any segments after it
+                    if (!segmentClosed && zeroTail(buffer)) {
+                        log.warn("Discarded corrupt journal tail at offset {}", base + position);
+                        buffer.force();
+                    }
+                }
+                for (Path later : segments.subList(i + 1, segments.size())) {
+                    log.warn("Deleting journal segment {} after the end of the journal", later);
+                    Files.delete(later);
+                }
+                break;
+            }
+            if (segments.isEmpty()) {
+                openSegment(0, 0);
+            } else if (segmentClosed) {
+                openSegment(base + segmentSize, 0);
+            } else {
+                openSegment(base, position);
+            }
+            writtenOffset = segmentBase + segment.position();
+            flushedOffset = writtenOffset;
+            log.info("Journal opened at offset {} in {} with fsync policy {}", writtenOffset, directory, fsyncPolicy);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover journal in " + directory, e);
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (fsyncPolicy == FsyncPolicy.GROUP) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushSafely, groupCommitIntervalMs, groupCommitIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads the records between two offsets without affecting appends, e.g. to rebuild history that a snapshot
+     * made unnecessary to replay at startup.
+     */
+    public void read(long fromOffset, long toOffset, Consumer<JournalRecord> handler) {
+        try {
+            for (Path path : listSegments()) {
+                long base = baseOf(path);
+                if (base >= toOffset) {
+                    break;
+                }
+                try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                    if (fromOffset >= base + buffer.limit()) {
+                        continue;
+                    }
+                    buffer.position((int) Math.max(0, fromOffset - base));
+                    while (readNext(buffer, base, toOffset, handler)) {
+                        // keep reading
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read journal in " + directory, e);
+        }
+    }
+
+    @Override
+    public long appendAccount(Account account) {
+        return append(JournalRecord.of(account));
+    }
+
+    @Override
+    public long appendTransaction(Transaction transaction) {
+        return append(JournalRecord.of(transaction));
+    }
+
+    @Override
+    public long appendTransferDebit(Transaction transaction) {
+        return append(JournalRecord.transferDebit(transaction));
+    }
+
+    @Override
+    public long appendTransferCredit(Transaction transaction, UUID creditedAccountId) {
+        return append(JournalRecord.transferCredit(transaction, creditedAccountId));
+    }
+
+    /**
+     * Writes a batch header followed by the transactions, all in the same segment. Recovery discards a batch
+     * unless every one of its records is intact.
+     */
+    @Override
+    public long appendTransactions(List<Transaction> transactions) {
+        JournalRecord[] records = new JournalRecord[transactions.size() + 1];
+        records[0] = JournalRecord.batchHeader(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            records[i + 1] = JournalRecord.of(transactions.get(i));
+        }
+        return append(records);
+    }
+
+    /**
+     * Writes the records in one append. Each is recovered on its own, so a crash part way through leaves the rows
+     * before it imported.
+     */
+    @Override
+    public long appendImport(List<Account> accounts, List<Transaction> transactions) {
+        JournalRecord[] records = new JournalRecord[accounts.size() + transactions.size()];
+        for (int i = 0; i < accounts.size(); i++) {
+            records[i] = JournalRecord.of(accounts.get(i));
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            records[accounts.size() + i] = JournalRecord.imported(transactions.get(i));
+        }
+        return append(records);
+    }
+
+    /**
+     * Waits for the next flush to cover the offset. The record stays in the journal if the flush fails or takes
+     * longer than the durable timeout, but the caller cannot be told it is on disk, so the wait ends with a
+     * {@link LedgerUnavailableException}.
+     */
+    @Override
+    public void awaitDurable(long offset) {
+        if (fsyncPolicy != FsyncPolicy.GROUP || flushedOffset >= offset) {
+            return;
+        }
+        long deadline = System.nanoTime() + durableTimeoutNanos;
+        boolean interrupted = false;
+        flushLock.lock();
+        try {
+            long failures = failedFlushes;
+            while (flushedOffset < offset) {
+                if (failedFlushes != failures) {
+                    throw new LedgerUnavailableException("Failed to write journal offset " + offset + " to disk");
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new LedgerUnavailableException("Timed out waiting for journal offset " + offset
+                            + " to be written to disk");
+                }
+                try {
+                    flushed.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public long getWrittenOffset() {
+        return writtenOffset;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        appendLock.lock();
+        try {
+            if (segment != null) {
+                segment.force();
+                flushedOffset = writtenOffset;
+                channel.close();
+                segment = null;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long append(JournalRecord... records) {
+        byte[][] textBytes = new byte[records.length][];
+        int length = 0;
+        for (int i = 0; i < records.length; i++) {
+            textBytes[i] = records[i].textBytes();
+            length += JournalRecord.HEADER_SIZE + (textBytes[i] == null ? 0 : textBytes[i].length);
+        }
+        if (length > segmentSize - 4) {
+            throw new IllegalArgumentException("Journal records of " + length + " bytes do not fit in a segment");
+        }
+        appendLock.lock();
+        try {
+            if (segment == null) {
+                throw new IllegalStateException("Journal is not open");
+            }
+            // Keep room for an end-of-segment marker after the record
+            if (segment.remaining() < length + 4) {
+                rollSegment();
+            }
+            int position = segment.position();
+            for (int i = 0; i < records.length; i++) {
+                records[i].encode(segment, textBytes[i]);
+            }
+            if (fsyncPolicy == FsyncPolicy.PER_OP) {
+                segment.force(position, length);
+            }
+            writtenOffset = segmentBase + position + length;
+            return writtenOffset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to journal", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Passes the next record, or the next complete batch of records, to the handler. Returns false, leaving the
+     * buffer positioned at the first unread byte, at the end of the records or when the next record would end
+     * beyond the given offset.
+     */
+    private static boolean readNext(MappedByteBuffer buffer, long base, long toOffset, Consumer<JournalRecord> handler) {
+        int start = buffer.position();
+        JournalRecord record = JournalRecord.decode(buffer, base);
+        if (record == null) {
+            return false;
+        }
+        if (record.recordType() != JournalRecordType.BATCH) {
+            if (record.offset() > toOffset) {
+                buffer.position(start);
+                return false;
+            }
+            handler.accept(record);
+            return true;
+        }
+        List<JournalRecord> batch = new ArrayList<>((int) record.amount());
+        for (long i = 0; i < record.amount(); i++) {
+            JournalRecord batchRecord = JournalRecord.decode(buffer, base);
+            if (batchRecord == null) {
+                // A torn batch is treated like a torn record
+                buffer.position(start);
+                return false;
+            }
+            batch.add(batchRecord);
+        }
+        if (buffer.position() + base > toOffset) {
+            buffer.position(start);
+            return false;
+        }
+        batch.forEach(handler);
+        return true;
+    }
+
+    private void rollSegment() throws IOException {
+        segment.putInt(segment.position(), JournalRecord.END_OF_SEGMENT);
+        if (fsyncPolicy != FsyncPolicy.OS) {
+            segment.force();
+        }
+        channel.close();
+        openSegment(segmentBase + segmentSize, 0);
+    }
+
+    // An exception escaping a scheduled task would cancel it, leaving every later request waiting for a flush
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush the journal", e);
+            flushLock.lock();
+            try {
+                failedFlushes++;
+                flushed.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void flush() {
+        MappedByteBuffer current;
+        long offset;
+        appendLock.lock();
+        try {
+            current = segment;
+            offset = writtenOffset;
+        } finally {
+            appendLock.unlock();
+        }
+        if (current == null || offset == flushedOffset) {
+            return;
+        }
+        // Earlier segments were forced when they were rolled
+        current.force();
+        flushLock.lock();
+        try {
+            flushedOffset = offset;
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Zeroes everything from the buffer's position to its end, so a partially written record can never be
+     * mistaken for a valid one once new records are appended over it. Returns whether anything was non-zero.
+     */
+    private static boolean zeroTail(MappedByteBuffer buffer) {
+        byte[] zeros = new byte[64 * 1024];
+        byte[] chunk = new byte[zeros.length];
+        boolean dirty = false;
+        for (int position = buffer.position(); position < buffer.limit(); position += chunk.length) {
+            int length = Math.min(chunk.length, buffer.limit() - position);
+            buffer.get(position, chunk, 0, length);
+            if (!Arrays.equals(chunk, 0, length, zeros, 0, length)) {
+                buffer.put(position, zeros, 0, length);
+                dirty = true;
+            }
+        }
+        return dirty;
+    }
+
+    private void openSegment(long base, int position) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.position(position);
+        segmentBase = base;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long baseOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Used when persistence is disabled, so ledger state only lives in memory
+ */
+@Component
+@ConditionalOnProperty(name = "banking.journal.enabled", havingValue = "false", matchIfMissing = true)
+public class NoOpLedgerJournal implements LedgerJournal {
+
+    @Override
+    public long appendAccount(Account account) {
+        return 0;
+    }
+
+    @Override
+    public long appendTransaction(Transaction transaction) {
+        return 0;
+    }
+
+    @Override
+    public long appendTransactions(List<Transaction> transactions) {
+        return 0;
+    }
+
+    @Override
+    public long appendTransferDebit(Transaction transaction) {
+        return 0;
+    }
+
+    @Override
+    public long appendTransferCredit(Transaction transaction, UUID creditedAccountId) {
+        return 0;
+    }
+
+    @Override
+    public long appendImport(List<Account> accounts, List<Transaction> transactions) {
+        return 0;
+    }
+
+    @Override
+    public long getWrittenOffset() {
+        return 0;
+    }
+
+    @Override
+    public void awaitDurable(long offset) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.model.Transaction;
+
+/**
+ * A transfer between engine partitions or cluster nodes whose debit may already be journaled while its credit is not.
+ *
+ * @param journalOffset journal offset at or before the transfer's debit record
+ */
+public record PendingCredit(Transaction transaction, long journalOffset) {
+}
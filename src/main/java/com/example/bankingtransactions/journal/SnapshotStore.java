@@ -0,0 +1,234 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.config.SnapshotProperties;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes balance snapshot files. Layout:
+ * <pre>
+ * int  magic, int version, long journalOffset
+ * for each account:
+ *   byte 1, long idHigh, long idLow, long balance, long createdAt (epoch nanos), long journalOffset,
+ *   int nameLength, byte[] name
+ * byte 0, int accountCount
+ * int pendingCreditCount (version 2 onwards)
+ * for each pending credit:
+ *   long idHigh, long idLow, long fromHigh, long fromLow, long toHigh, long toLow, long amount,
+ *   long timestamp (epoch nanos), long journalOffset, int descriptionLength (-1 for null), byte[] description
+ * int checksum (CRC32C of everything before it)
+ * </pre>
+ * Files are written to a temporary name and atomically renamed, so a crash never leaves a partial snapshot
+ * under a valid name.
+ */
+@Component
+@ConditionalOnProperty(name = "banking.journal.enabled", havingValue = "true")
+@Slf4j
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x42534E50; // "BSNP"
+    private static final int VERSION = 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private final Path directory;
+    private final int retained;
+
+    public SnapshotStore(SnapshotProperties properties) {
+        this.directory = Path.of(properties.getDirectory());
+        this.retained = Math.max(1, properties.getRetained());
+    }
+
+    /**
+     * Writes a snapshot covering the journal up to the given offset and deletes snapshots beyond the retention count.
+     */
+    public Path write(long journalOffset, Iterable<Account> accounts, List<PendingCredit> pendingCredits) {
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(String.format("%s%020d%s", PREFIX, journalOffset, SUFFIX));
+            Path temp = directory.resolve(target.getFileName() + ".tmp");
+            CRC32C crc = new CRC32C();
+            int count = 0;
+            try (OutputStream file = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(journalOffset);
+                for (Account account : accounts) {
+                    byte[] name = account.getName().getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(1);
+                    out.writeLong(account.getId().getMostSignificantBits());
+                    out.writeLong(account.getId().getLeastSignificantBits());
+                    out.writeLong(account.getBalance());
+                    out.writeLong(JournalRecord.toEpochNanos(account.getCreatedAt()));
+                    out.writeLong(account.getJournalOffset());
+                    out.writeInt(name.length);
+                    out.write(name);
+                    count++;
+                }
+                out.writeByte(0);
+                out.writeInt(count);
+                out.writeInt(pendingCredits.size());
+                for (PendingCredit pending : pendingCredits) {
+                    writeTransaction(out, pending.transaction());
+                    out.writeLong(pending.journalOffset());
+                }
+                out.flush();
+                // The checksum itself is written past the checked stream
+                new DataOutputStream(file).writeInt((int) crc.getValue());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            deleteOldSnapshots();
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot to " + directory, e);
+        }
+    }
+
+    /**
+     * Loads the newest snapshot that passes validation, or returns null if there is none.
+     */
+    public BalanceSnapshot loadLatest() {
+        for (Path path : listSnapshots()) {
+            try {
+                return read(path);
+            } catch (IOException | IllegalStateException e) {
+                log.warn("Ignoring invalid snapshot {}: {}", path, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private BalanceSnapshot read(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version < 1 || version > VERSION) {
+                throw new IllegalStateException("unrecognised header");
+            }
+            long journalOffset = in.readLong();
+            List<Account> accounts = new ArrayList<>();
+            while (in.readByte() == 1) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                long balance = in.readLong();
+                LocalDateTime createdAt = JournalRecord.fromEpochNanos(in.readLong());
+                long accountOffset = in.readLong();
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                accounts.add(new Account(id, new String(name, StandardCharsets.UTF_8), balance, createdAt, accountOffset));
+            }
+            if (in.readInt() != accounts.size()) {
+                throw new IllegalStateException("account count mismatch");
+            }
+            List<PendingCredit> pendingCredits = new ArrayList<>();
+            int pendingCount = version >= 2 ? in.readInt() : 0;
+            for (int i = 0; i < pendingCount; i++) {
+                pendingCredits.add(new PendingCredit(readTransaction(in), in.readLong()));
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(file).readInt() != expected) {
+                throw new IllegalStateException("checksum mismatch");
+            }
+            return new BalanceSnapshot(journalOffset, accounts, pendingCredits);
+        } catch (EOFException e) {
+            throw new IllegalStateException("truncated file");
+        }
+    }
+
+    private static void writeTransaction(DataOutputStream out, Transaction transaction) throws IOException {
+        writeUuid(out, transaction.getId());
+        writeUuid(out, transaction.getFromAccountId());
+        writeUuid(out, transaction.getToAccountId());
+        out.writeLong(transaction.getAmount());
+        out.writeLong(JournalRecord.toEpochNanos(transaction.getTimestamp()));
+        if (transaction.getDescription() == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] description = transaction.getDescription().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(description.length);
+            out.write(description);
+        }
+    }
+
+    private static Transaction readTransaction(DataInputStream in) throws IOException {
+        UUID id = readUuid(in);
+        UUID from = readUuid(in);
+        UUID to = readUuid(in);
+        long amount = in.readLong();
+        LocalDateTime timestamp = JournalRecord.fromEpochNanos(in.readLong());
+        int descriptionLength = in.readInt();
+        String description = null;
+        if (descriptionLength >= 0) {
+            byte[] bytes = new byte[descriptionLength];
+            in.readFully(bytes);
+            description = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Transaction(id, from, to, amount, TransactionType.TRANSFER, description, timestamp);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private void deleteOldSnapshots() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (Path old : snapshots.subList(Math.min(retained, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    // Newest first
+    private List<Path> listSnapshots() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list snapshots in " + directory, e);
+        }
+    }
+}
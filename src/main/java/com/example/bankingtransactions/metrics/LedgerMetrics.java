@@ -0,0 +1,165 @@
+package com.example.bankingtransactions.metrics;
+
+import com.example.bankingtransactions.enums.LedgerOperation;
+import com.example.bankingtransactions.enums.OperationOutcome;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.TieredTransactionRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ledger instrumentation, exposed through the actuator's Prometheus endpoint. Operation timers and transaction
+ * counters are registered the first time a combination of tags occurs and then cached by array index, so
+ * recording costs no map lookups or tag allocation on the request path.
+ */
+@Component
+public class LedgerMetrics {
+
+    private static final OperationOutcome[] OUTCOMES = OperationOutcome.values();
+
+    private final MeterRegistry registry;
+    private final Timer[][] operationTimers = new Timer[LedgerOperation.values().length][OUTCOMES.length];
+    private final Counter[][] transactionCounters = new Counter[TransactionType.values().length][OUTCOMES.length];
+    private final DistributionSummary historyPageSize;
+    private final DistributionSummary exportSize;
+
+    public LedgerMetrics(MeterRegistry registry, AccountRepository accountRepository,
+                         TransactionRepository transactionRepository) {
+        this.registry = registry;
+        historyPageSize = DistributionSummary.builder("ledger.history.page.size")
+                .description("Transactions returned per history page")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(1_000.0)
+                .register(registry);
+        exportSize = DistributionSummary.builder("ledger.history.export.size")
+                .description("Transactions written per history export")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        Gauge.builder("ledger.accounts", accountRepository, repository -> repository.findAll().size())
+                .description("Number of accounts")
+                .register(registry);
+        Gauge.builder("ledger.transactions.stored", transactionRepository, TransactionRepository::count)
+                .description("Number of transactions in the history")
+                .register(registry);
+        if (transactionRepository instanceof TieredTransactionRepository tiered) {
+            Gauge.builder("ledger.history.cold.transactions", tiered, TieredTransactionRepository::getTransactionsSpilled)
+                    .description("Account history entries moved to cold segments")
+                    .register(registry);
+            Gauge.builder("ledger.history.cold.bytes", tiered, TieredTransactionRepository::getColdBytes)
+                    .description("Compressed bytes written to cold history segments")
+                    .register(registry);
+        }
+
+        Timer lockWait = Timer.builder("ledger.lock.wait")
+                .description("Time spent blocked on an account lock held by another operation")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(registry);
+        accountRepository.setLockWaitListener(nanos -> lockWait.record(nanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Runs the operation, timing it by outcome and counting the transaction it records, if any.
+     */
+    public <T> T record(LedgerOperation operation, Supplier<T> action) {
+        long start = System.nanoTime();
+        OperationOutcome outcome = OperationOutcome.ERROR;
+        try {
+            T result = action.get();
+            outcome = OperationOutcome.SUCCESS;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = OperationOutcome.of(e);
+            throw e;
+        } finally {
+            operationTimer(operation, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (operation.getTransactionType() != null) {
+                countTransactions(operation.getTransactionType(), outcome, 1);
+            }
+        }
+    }
+
+    public void countTransactions(TransactionType type, OperationOutcome outcome, long count) {
+        if (count > 0) {
+            transactionCounter(type, outcome).increment(count);
+        }
+    }
+
+    public void recordHistoryPage(int transactions) {
+        historyPageSize.record(transactions);
+    }
+
+    /**
+     * Records a finished export. Exports are streamed after the service call returns, so they are timed here.
+     */
+    public void recordExport(long nanos, long transactions, OperationOutcome outcome) {
+        operationTimer(LedgerOperation.EXPORT_HISTORY, outcome).record(nanos, TimeUnit.NANOSECONDS);
+        exportSize.record(transactions);
+    }
+
+    /**
+     * Records a finished bulk import, which streams after the service call returns, and counts its rows by whether
+     * they were imported.
+     */
+    public void recordImport(LedgerOperation operation, long nanos, long imported, long failed,
+                             OperationOutcome outcome) {
+        operationTimer(operation, outcome).record(nanos, TimeUnit.NANOSECONDS);
+        importRows(operation, "imported").increment(imported);
+        importRows(operation, "failed").increment(failed);
+    }
+
+    private Counter importRows(LedgerOperation operation, String result) {
+        return Counter.builder("ledger.import.rows")
+                .description("Rows read by bulk imports, by whether they were imported")
+                .tag("operation", tagValue(operation))
+                .tag("result", result)
+                .register(registry);
+    }
+
+    // Racing threads may both register the meter; the registry hands them the same instance
+    private Timer operationTimer(LedgerOperation operation, OperationOutcome outcome) {
+        Timer timer = operationTimers[operation.ordinal()][outcome.ordinal()];
+        if (timer == null) {
+            timer = Timer.builder("ledger.operation")
+                    .description("Time taken by ledger service operations")
+                    .tag("operation", tagValue(operation))
+                    .tag("outcome", tagValue(outcome))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(1_000))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry);
+            operationTimers[operation.ordinal()][outcome.ordinal()] = timer;
+        }
+        return timer;
+    }
+
+    private Counter transactionCounter(TransactionType type, OperationOutcome outcome) {
+        Counter counter = transactionCounters[type.ordinal()][outcome.ordinal()];
+        if (counter == null) {
+            counter = Counter.builder("ledger.transactions")
+                    .description("Requested transactions by type and outcome")
+                    .tag("type", tagValue(type))
+                    .tag("outcome", tagValue(outcome))
+                    .register(registry);
+            transactionCounters[type.ordinal()][outcome.ordinal()] = counter;
+        }
+        return counter;
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,38 +1,95 @@
 package com.example.bankingtransactions.model;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class Account {
 
     private UUID id;
     private String name;
-    private BigDecimal balance;
+    // Balance in cents. Updated under the account lock held by AccountRepository, read without it
+    private volatile long balance;
     private LocalDateTime createdAt;
+    // Journal offset just past the last journal record applied to this account, updated under the account lock
+    private long journalOffset;
+    // Replaces balance and journalOffset for hot accounts, see AccountRepository
+    @Setter(AccessLevel.NONE)
+    private volatile SplitBalance splitBalance;
 
-    public void deposit(BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+    public Account(UUID id, String name, long balance, LocalDateTime createdAt, long journalOffset) {
+        this.id = id;
+        this.name = name;
+        this.balance = balance;
+        this.createdAt = createdAt;
+        this.journalOffset = journalOffset;
+    }
+
+    /**
+     * Spreads the balance over sub-balances. Must be called before the account is shared between threads.
+     */
+    public void split(int subBalances) {
+        splitBalance = new SplitBalance(subBalances, balance, journalOffset);
+    }
+
+    public long getBalance() {
+        SplitBalance split = splitBalance;
+        return split != null ? split.total() : balance;
+    }
+
+    public void setBalance(long balance) {
+        SplitBalance split = splitBalance;
+        if (split != null) {
+            split.setTotal(balance);
+        } else {
+            this.balance = balance;
+        }
+    }
+
+    public long getJournalOffset() {
+        SplitBalance split = splitBalance;
+        return split != null ? split.journalOffset() : journalOffset;
+    }
+
+    public void setJournalOffset(long journalOffset) {
+        SplitBalance split = splitBalance;
+        if (split != null) {
+            split.setJournalOffset(journalOffset);
+        } else {
+            this.journalOffset = journalOffset;
+        }
+    }
+
+    public void deposit(long amount) {
+        if (amount <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
-        this.balance = this.balance.add(amount);
+        SplitBalance split = splitBalance;
+        if (split != null) {
+            split.deposit(amount);
+            return;
+        }
+        this.balance = Math.addExact(this.balance, amount);
     }
 
-    public boolean withdraw(BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+    public boolean withdraw(long amount) {
+        if (amount <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
-        if (this.balance.compareTo(amount) < 0) {
+        SplitBalance split = splitBalance;
+        if (split != null) {
+            return split.withdraw(amount);
+        }
+        if (this.balance < amount) {
             return false; // Insufficient funds
         }
-        this.balance = this.balance.subtract(amount);
+        this.balance -= amount;
         return true;
     }
 }
@@ -0,0 +1,34 @@
+package com.example.bankingtransactions.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Running totals of an account's transaction history, in cents
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountSummary {
+
+    private UUID accountId;
+    private long totalDeposited;
+    private long totalWithdrawn;
+    private long totalTransferredIn;
+    private long totalTransferredOut;
+    private long transactionCount;
+    private LocalDateTime lastActivity;
+
+    public AccountSummary(UUID accountId) {
+        this.accountId = accountId;
+    }
+
+    public AccountSummary copy() {
+        return new AccountSummary(accountId, totalDeposited, totalWithdrawn, totalTransferredIn, totalTransferredOut,
+                transactionCount, lastActivity);
+    }
+}
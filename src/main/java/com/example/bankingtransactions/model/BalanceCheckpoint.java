@@ -0,0 +1,7 @@
+package com.example.bankingtransactions.model;
+
+/**
+ * An account's balance just before {@code from}, or its opening balance if {@code from} is null.
+ */
+public record BalanceCheckpoint(HistoryKey from, long balance) {
+}
@@ -0,0 +1,7 @@
+package com.example.bankingtransactions.model;
+
+/**
+ * A transaction together with its position in an account's history
+ */
+public record HistoryEntry(HistoryKey key, Transaction transaction) {
+}
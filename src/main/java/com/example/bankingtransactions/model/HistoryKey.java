@@ -0,0 +1,37 @@
+package com.example.bankingtransactions.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Position of a transaction in an account's history: its timestamp, with a sequence number to order transactions
+ * recorded at the same instant.
+ */
+public record HistoryKey(long epochNanos, long sequence) implements Comparable<HistoryKey> {
+
+    public static HistoryKey of(LocalDateTime timestamp, long sequence) {
+        return new HistoryKey(epochNanos(timestamp), sequence);
+    }
+
+    public static long epochNanos(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    public static LocalDateTime timestamp(long epochNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * Key sorting before every transaction recorded at or after the given time
+     */
+    public static HistoryKey startOf(LocalDateTime timestamp) {
+        return of(timestamp, Long.MIN_VALUE);
+    }
+
+    @Override
+    public int compareTo(HistoryKey other) {
+        int byTime = Long.compare(epochNanos, other.epochNanos);
+        return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+    }
+}
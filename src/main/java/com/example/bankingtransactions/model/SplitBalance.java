@@ -0,0 +1,158 @@
+package com.example.bankingtransactions.model;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The balance of a hot account spread over sub-balances, each with its own lock, so that credits and most debits
+ * on different threads do not wait for each other. An update holding one sub-balance's lock only changes that
+ * sub-balance. An update holding every lock, such as a debit larger than any one sub-balance, sees the whole
+ * balance, and so does an update made without locks during recovery.
+ * <p>
+ * Each sub-balance is written like a seqlock, its version being odd while it changes. Reads add up the sub-balances
+ * until no version has moved between two passes, so the total returned is one the account actually had.
+ * <p>
+ * Each sub-balance also keeps the journal offset of the last record applied through it, and the account's journal
+ * offset is the highest of them. Every record for the account is journaled under one of the locks, so once all of
+ * them are held, every record up to that offset has been applied.
+ */
+public final class SplitBalance {
+
+    private final Slot[] slots;
+
+    public SplitBalance(int count, long balance, long journalOffset) {
+        slots = new Slot[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = new Slot();
+        }
+        slots[0].balance = balance;
+        slots[0].journalOffset = journalOffset;
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public ReentrantLock lock(int slot) {
+        return slots[slot].lock;
+    }
+
+    /**
+     * Balance of one sub-balance, which only changes under its lock.
+     */
+    public long balance(int slot) {
+        return slots[slot].balance;
+    }
+
+    public long total() {
+        while (true) {
+            long total = 0;
+            long versions = 0;
+            boolean writing = false;
+            for (Slot slot : slots) {
+                long version = slot.version;
+                writing |= (version & 1) != 0;
+                versions += version;
+                total += slot.balance;
+            }
+            if (!writing) {
+                // Versions only grow, so equal sums mean no sub-balance changed in between
+                long after = 0;
+                for (Slot slot : slots) {
+                    after += slot.version;
+                }
+                if (after == versions) {
+                    return total;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public void setTotal(long balance) {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i].set(i == 0 ? balance : 0);
+        }
+    }
+
+    public void deposit(long amount) {
+        // Bounds the total, not just the sub-balance, so reads can never overflow
+        long total = 0;
+        for (Slot slot : slots) {
+            total = Math.addExact(total, slot.balance);
+        }
+        Math.addExact(total, amount);
+
+        Slot slot = slots[Math.max(heldSlot(), 0)];
+        slot.set(slot.balance + amount);
+    }
+
+    public boolean withdraw(long amount) {
+        int held = heldSlot();
+        if (held >= 0) {
+            Slot slot = slots[held];
+            if (slot.balance < amount) {
+                return false;
+            }
+            slot.set(slot.balance - amount);
+            return true;
+        }
+
+        long total = 0;
+        for (Slot slot : slots) {
+            total += slot.balance;
+        }
+        if (total < amount) {
+            return false;
+        }
+        // Spread what is left evenly, so the next debits find enough in whichever sub-balance they take
+        long remaining = total - amount;
+        long share = remaining / slots.length;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i].set(i == 0 ? share + remaining % slots.length : share);
+        }
+        return true;
+    }
+
+    public long journalOffset() {
+        long journalOffset = 0;
+        for (Slot slot : slots) {
+            journalOffset = Math.max(journalOffset, slot.journalOffset);
+        }
+        return journalOffset;
+    }
+
+    public void setJournalOffset(long journalOffset) {
+        slots[Math.max(heldSlot(), 0)].journalOffset = journalOffset;
+    }
+
+    /**
+     * Returns the sub-balance whose lock is the only one the current thread holds, or -1 if it holds all of them or
+     * none.
+     */
+    private int heldSlot() {
+        int held = -1;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].lock.isHeldByCurrentThread()) {
+                if (held >= 0) {
+                    return -1;
+                }
+                held = i;
+            }
+        }
+        return held;
+    }
+
+    private static final class Slot {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Written under the lock, read without it
+        private volatile long version;
+        private volatile long balance;
+        private volatile long journalOffset;
+
+        private void set(long balance) {
+            version++;
+            this.balance = balance;
+            version++;
+        }
+    }
+}
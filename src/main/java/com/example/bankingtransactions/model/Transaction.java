@@ -5,7 +5,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -16,7 +15,8 @@ public class Transaction {
     private UUID id;
     private UUID fromAccountId;
     private UUID toAccountId;
-    private BigDecimal amount;
+    // Amount in cents
+    private long amount;
     private TransactionType type;
     private String description;
     private LocalDateTime timestamp;
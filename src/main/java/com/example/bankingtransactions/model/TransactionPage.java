@@ -0,0 +1,11 @@
+package com.example.bankingtransactions.model;
+
+import java.util.List;
+
+/**
+ * A page of an account's history, newest first
+ *
+ * @param next key to continue from for the next (older) page, or null if this is the last page
+ */
+public record TransactionPage(List<Transaction> transactions, HistoryKey next) {
+}
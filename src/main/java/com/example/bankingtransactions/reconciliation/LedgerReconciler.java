@@ -0,0 +1,343 @@
+package com.example.bankingtransactions.reconciliation;
+
+import com.example.bankingtransactions.cluster.ShardRouter;
+import com.example.bankingtransactions.config.ReconciliationProperties;
+import com.example.bankingtransactions.dto.AccountDriftDto;
+import com.example.bankingtransactions.dto.ReconciliationReportDto;
+import com.example.bankingtransactions.engine.LedgerOperations;
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.AccountSummary;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import com.example.bankingtransactions.util.Money;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Checks that balances agree with the history. Every account's balance must equal the balance it was opened with
+ * plus the net of its transactions, less transfers debited from it and still waiting for their credit, and its
+ * summary must agree with the history too. Transfers between two accounts on this node must total the same from
+ * the side of their sources as from the side of their destinations, so no money is created or lost.
+ * <p>
+ * Accounts are divided between the threads of a fork-join pool, so a run takes less time the more processors there
+ * are. Writers are never paused. An account's balance, summary and pending transfers are read together under its
+ * lock before and after its history is walked, and the walk only counts if they did not change in between; an
+ * account written to throughout is retried a few times and then skipped. A transfer enters its source's history on
+ * the thread crediting the destination, outside the source's lock, so a drift is only reported once found twice.
+ */
+@Component
+@Slf4j
+public class LedgerReconciler {
+
+    // Accounts checked by one fork-join task without dividing them further
+    private static final int ACCOUNTS_PER_TASK = 64;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final int MAX_REPORTED_DRIFTS = 100;
+    // Transfers more recent than this may be in the history of one of their accounts and not yet the other
+    private static final long TRANSFER_SETTLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountSummaryRepository accountSummaryRepository;
+    private final LedgerOperations ledgerOperations;
+    private final ShardRouter shardRouter;
+    private final ReconciliationProperties properties;
+    private final ForkJoinPool pool;
+    private final Timer runTimer;
+    // One run at a time. Not synchronized, which would pin a virtual thread's carrier for the whole run
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+    private volatile ReconciliationReportDto lastReport;
+
+    public LedgerReconciler(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                            AccountSummaryRepository accountSummaryRepository, LedgerOperations ledgerOperations,
+                            ShardRouter shardRouter, ReconciliationProperties properties, MeterRegistry registry) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountSummaryRepository = accountSummaryRepository;
+        this.ledgerOperations = ledgerOperations;
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+        int parallelism = properties.getParallelism() > 0
+                ? properties.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("reconciliation-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        runTimer = Timer.builder("ledger.reconciliation.duration")
+                .description("Time taken to reconcile every account with its history")
+                .register(registry);
+        Gauge.builder("ledger.reconciliation.drifted.accounts", this, reconciler -> reconciler.lastReport == null
+                        ? 0 : reconciler.lastReport.getDriftedAccounts())
+                .description("Accounts whose balance disagreed with their history in the latest run")
+                .register(registry);
+        Gauge.builder("ledger.reconciliation.skipped.accounts", this, reconciler -> reconciler.lastReport == null
+                        ? 0 : reconciler.lastReport.getAccountsSkipped())
+                .description("Accounts too busy to check, or with history still being restored, in the latest run")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isScheduled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = properties.getIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::reconcileSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * Reconciles every account on this node, waiting for a run already in progress to finish first.
+     */
+    public ReconciliationReportDto reconcile() {
+        runLock.lock();
+        try {
+            return run();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private ReconciliationReportDto run() {
+        long start = System.nanoTime();
+        LocalDateTime startedAt = LocalDateTime.now();
+        long transferCutoff = HistoryKey.epochNanos(startedAt) - TRANSFER_SETTLE_NANOS;
+        Account[] accounts = accountRepository.findAll().values().toArray(Account[]::new);
+        Tally tally = pool.invoke(new CheckAccounts(accounts, 0, accounts.length, transferCutoff));
+        long durationNanos = System.nanoTime() - start;
+        runTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+
+        Boolean conserved = tally.skipped > 0 ? null : tally.transferredOut == tally.transferredIn;
+        String message;
+        if (tally.drifted > 0) {
+            message = "Balances drifted from the history in " + tally.drifted + " accounts";
+        } else if (Boolean.FALSE.equals(conserved)) {
+            message = "Transfers between accounts on this node do not balance";
+        } else {
+            message = "No drift found";
+        }
+        ReconciliationReportDto report = new ReconciliationReportDto(message, startedAt,
+                TimeUnit.NANOSECONDS.toMillis(durationNanos), pool.getParallelism(), tally.checked, tally.skipped,
+                tally.transactions, tally.drifted, tally.drifts, "$" + Money.format(tally.transferredOut),
+                "$" + Money.format(tally.transferredIn), conserved);
+        lastReport = report;
+        if (tally.drifted > 0 || Boolean.FALSE.equals(conserved)) {
+            log.error("Reconciliation failed: {}. Drifted accounts: {}", message, tally.drifts);
+        } else {
+            log.info("Reconciled {} accounts and {} transactions in {} ms, skipping {}", tally.checked,
+                    tally.transactions, report.getDurationMs(), tally.skipped);
+        }
+        return report;
+    }
+
+    /**
+     * Returns the report of the latest run, or null if there has not been one.
+     */
+    public ReconciliationReportDto getLastReport() {
+        return lastReport;
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("Reconciliation failed to run", e);
+        }
+    }
+
+    private void check(Account account, long transferCutoff, Tally tally) {
+        UUID accountId = account.getId();
+        boolean suspected = false;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            AccountState before = readState(account);
+            if (before == null) {
+                // Opened before the last snapshot, with history still being restored
+                tally.skipped++;
+                return;
+            }
+            HistoryTotals history = walkHistory(accountId, transferCutoff);
+            if (!before.equals(readState(account))) {
+                continue;
+            }
+            long historyBalance = before.openingBalance() + history.net - before.pendingDebits();
+            long summaryBalance = before.openingBalance() + before.summaryNet() - before.pendingDebits();
+            boolean drifted = historyBalance != before.balance() || summaryBalance != before.balance()
+                    || history.count != before.summaryCount();
+            if (!drifted || suspected) {
+                tally.add(history);
+                if (drifted) {
+                    tally.drift(new AccountDriftDto(accountId, "$" + Money.format(before.balance()),
+                            "$" + Money.format(historyBalance), "$" + Money.format(summaryBalance), history.count,
+                            before.summaryCount()));
+                }
+                return;
+            }
+            suspected = true;
+        }
+        tally.skipped++;
+    }
+
+    // The account's side of the invariant, read under its lock, or null if its opening balance is not known yet
+    private AccountState readState(Account account) {
+        UUID accountId = account.getId();
+        return accountRepository.withAccountLock(accountId, () -> {
+            OptionalLong openingBalance = accountSummaryRepository.findOpeningBalance(accountId);
+            if (openingBalance.isEmpty()) {
+                return null;
+            }
+            AccountSummary summary = accountSummaryRepository.findById(accountId)
+                    .orElseGet(() -> new AccountSummary(accountId));
+            long summaryNet = summary.getTotalDeposited() + summary.getTotalTransferredIn()
+                    - summary.getTotalWithdrawn() - summary.getTotalTransferredOut();
+            return new AccountState(account.getBalance(), openingBalance.getAsLong(),
+                    ledgerOperations.pendingDebits(accountId), summaryNet, summary.getTransactionCount());
+        });
+    }
+
+    private HistoryTotals walkHistory(UUID accountId, long transferCutoff) {
+        HistoryTotals totals = new HistoryTotals();
+        Iterator<Transaction> transactions = transactionRepository.iterate(accountId, null, null);
+        while (transactions.hasNext()) {
+            Transaction transaction = transactions.next();
+            totals.count++;
+            boolean settled = transaction.getType() == TransactionType.TRANSFER
+                    && HistoryKey.epochNanos(transaction.getTimestamp()) < transferCutoff;
+            if (accountId.equals(transaction.getToAccountId())) {
+                totals.net += transaction.getAmount();
+                if (settled && shardRouter.isLocal(transaction.getFromAccountId())) {
+                    totals.transferredIn += transaction.getAmount();
+                }
+            }
+            if (accountId.equals(transaction.getFromAccountId())) {
+                totals.net -= transaction.getAmount();
+                if (settled && shardRouter.isLocal(transaction.getToAccountId())) {
+                    totals.transferredOut += transaction.getAmount();
+                }
+            }
+        }
+        return totals;
+    }
+
+    private record AccountState(long balance, long openingBalance, long pendingDebits, long summaryNet,
+                                long summaryCount) {
+    }
+
+    private static final class HistoryTotals {
+        private long count;
+        private long net;
+        private long transferredOut;
+        private long transferredIn;
+    }
+
+    // Results of one fork-join task, merged up the tree of tasks
+    private static final class Tally {
+        private long checked;
+        private long skipped;
+        private long transactions;
+        private long drifted;
+        private long transferredOut;
+        private long transferredIn;
+        private final List<AccountDriftDto> drifts = new ArrayList<>();
+
+        private void add(HistoryTotals history) {
+            checked++;
+            transactions += history.count;
+            transferredOut += history.transferredOut;
+            transferredIn += history.transferredIn;
+        }
+
+        private void drift(AccountDriftDto drift) {
+            drifted++;
+            if (drifts.size() < MAX_REPORTED_DRIFTS) {
+                drifts.add(drift);
+            }
+        }
+
+        private Tally merge(Tally other) {
+            checked += other.checked;
+            skipped += other.skipped;
+            transactions += other.transactions;
+            drifted += other.drifted;
+            transferredOut += other.transferredOut;
+            transferredIn += other.transferredIn;
+            for (AccountDriftDto drift : other.drifts) {
+                if (drifts.size() < MAX_REPORTED_DRIFTS) {
+                    drifts.add(drift);
+                }
+            }
+            return this;
+        }
+    }
+
+    // Checks a range of accounts, halving it until it is small enough to check on one thread
+    private final class CheckAccounts extends RecursiveTask<Tally> {
+
+        private final Account[] accounts;
+        private final int from;
+        private final int to;
+        private final long transferCutoff;
+
+        private CheckAccounts(Account[] accounts, int from, int to, long transferCutoff) {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.transferCutoff = transferCutoff;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= ACCOUNTS_PER_TASK) {
+                Tally tally = new Tally();
+                for (int i = from; i < to; i++) {
+                    check(accounts[i], transferCutoff, tally);
+                }
+                return tally;
+            }
+            int middle = (from + to) >>> 1;
+            CheckAccounts first = new CheckAccounts(accounts, from, middle, transferCutoff);
+            first.fork();
+            Tally second = new CheckAccounts(accounts, middle, to, transferCutoff).compute();
+            return first.join().merge(second);
+        }
+    }
+}
@@ -1,17 +1,64 @@
 package com.example.bankingtransactions.repository;
 
+import com.example.bankingtransactions.config.HotAccountProperties;
 import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.SplitBalance;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
+/**
+ * Concurrent account store. Balance updates are guarded by striped per-account locks which are always
+ * acquired in ascending stripe order, so operations touching several accounts cannot deadlock.
+ * <p>
+ * Hot accounts listed in {@link HotAccountProperties} have their balance split over sub-balances with locks of
+ * their own. Credits to them take any free sub-balance and debits one that can cover the amount, instead of the
+ * account lock; a debit that no single sub-balance covers takes them all. Locking such an account through
+ * {@link #withAccountLock} takes all of its sub-balances too, so it still has the account to itself. Sub-balance
+ * locks are only taken after any stripe locks, and in account id order.
+ */
 @Repository
 public class AccountRepository {
 
-    private final Map<UUID, Account> accounts = new HashMap<>();
+    // Must be a power of two
+    private static final int LOCK_STRIPES = 1024;
+
+    private final Map<UUID, Account> accounts = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final Set<UUID> hotAccountIds;
+    private final int subBalances;
+    // Told how long a thread was blocked each time it found a lock already held
+    private volatile LongConsumer lockWaitListener = nanos -> {
+    };
+
+    public AccountRepository() {
+        this(new HotAccountProperties());
+    }
+
+    @Autowired
+    public AccountRepository(HotAccountProperties hotAccountProperties) {
+        if (hotAccountProperties.getSubBalances() < 1) {
+            throw new IllegalArgumentException("banking.hot-accounts.sub-balances must be at least 1");
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        hotAccountIds = Set.copyOf(hotAccountProperties.getIds());
+        subBalances = hotAccountProperties.getSubBalances();
+    }
 
     public Optional<Account> findById(UUID id) {
         return Optional.ofNullable(accounts.get(id));
@@ -25,11 +72,243 @@ public class AccountRepository {
         if (account.getId() == null) {
             throw new IllegalArgumentException("Account ID cannot be null");
         }
+        if (account.getSplitBalance() == null && hotAccountIds.contains(account.getId())) {
+            account.split(subBalances);
+        }
         accounts.put(account.getId(), account);
         return account;
     }
 
+    /**
+     * Adds the accounts whose ids are not taken, such as a batch of imported accounts, and returns them. The action
+     * runs on them while they are still locked, so nothing can change them before it has recorded them; if it
+     * fails, they are removed again.
+     */
+    public List<Account> insertAll(List<Account> newAccounts, Consumer<List<Account>> action) {
+        return withAccountLocks(newAccounts.stream().map(Account::getId).toList(), () -> {
+            List<Account> inserted = new ArrayList<>(newAccounts.size());
+            List<ReentrantLock> held = new ArrayList<>();
+            try {
+                for (Account account : newAccounts) {
+                    if (account.getSplitBalance() == null && hotAccountIds.contains(account.getId())) {
+                        // Credits take a sub-balance rather than the account lock, so hold them before publishing
+                        account.split(subBalances);
+                        for (int i = 0; i < subBalances; i++) {
+                            ReentrantLock lock = account.getSplitBalance().lock(i);
+                            lock.lock();
+                            held.add(lock);
+                        }
+                    }
+                    if (accounts.putIfAbsent(account.getId(), account) == null) {
+                        inserted.add(account);
+                    }
+                }
+                try {
+                    action.accept(inserted);
+                } catch (RuntimeException e) {
+                    inserted.forEach(account -> accounts.remove(account.getId(), account));
+                    throw e;
+                }
+                return inserted;
+            } finally {
+                for (int i = held.size() - 1; i >= 0; i--) {
+                    held.get(i).unlock();
+                }
+            }
+        });
+    }
+
     public void deleteAll() {
         accounts.clear();
     }
+
+    public void setLockWaitListener(LongConsumer lockWaitListener) {
+        this.lockWaitListener = lockWaitListener;
+    }
+
+    /**
+     * Runs the action while holding the lock for the given account.
+     */
+    public <T> T withAccountLock(UUID accountId, Supplier<T> action) {
+        ReentrantLock lock = locks[stripeOf(accountId)];
+        lock(lock);
+        try {
+            SplitBalance split = splitBalanceOf(accountId);
+            return split == null ? action.get() : withAllSubBalances(split, action);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action that credits the account. For a hot account this holds a single sub-balance, which the
+     * credit goes to.
+     */
+    public <T> T withCreditLock(Account account, Supplier<T> action) {
+        SplitBalance split = account.getSplitBalance();
+        if (split == null) {
+            return withAccountLock(account.getId(), action);
+        }
+        int start = startingSubBalance(split);
+        for (int i = 0; i < split.size(); i++) {
+            ReentrantLock lock = split.lock((start + i) % split.size());
+            if (lock.tryLock()) {
+                try {
+                    return action.get();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        ReentrantLock lock = split.lock(start);
+        lock(lock);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action that debits the account by the amount. For a hot account this holds a single sub-balance
+     * covering the amount if a free one does, or else all of them.
+     */
+    public <T> T withDebitLock(Account account, long amount, Supplier<T> action) {
+        SplitBalance split = account.getSplitBalance();
+        if (split == null) {
+            return withAccountLock(account.getId(), action);
+        }
+        int start = startingSubBalance(split);
+        for (int i = 0; i < split.size(); i++) {
+            int slot = (start + i) % split.size();
+            ReentrantLock lock = split.lock(slot);
+            if (split.balance(slot) >= amount && lock.tryLock()) {
+                try {
+                    // Only debits holding this lock can have lowered it since
+                    if (split.balance(slot) >= amount) {
+                        return action.get();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        return withAllSubBalances(split, action);
+    }
+
+    /**
+     * Runs an action that moves the amount from one account to the other, holding each as
+     * {@link #withDebitLock} and {@link #withCreditLock} would.
+     */
+    public <T> T withTransferLocks(Account from, Account to, long amount, Supplier<T> action) {
+        boolean fromSplit = from.getSplitBalance() != null;
+        boolean toSplit = to.getSplitBalance() != null;
+        if (!fromSplit && !toSplit) {
+            return withAccountLocks(from.getId(), to.getId(), action);
+        }
+        if (!fromSplit) {
+            return withAccountLock(from.getId(), () -> withCreditLock(to, action));
+        }
+        if (!toSplit) {
+            return withAccountLock(to.getId(), () -> withDebitLock(from, amount, action));
+        }
+        return from.getId().compareTo(to.getId()) < 0
+                ? withDebitLock(from, amount, () -> withCreditLock(to, action))
+                : withCreditLock(to, () -> withDebitLock(from, amount, action));
+    }
+
+    /**
+     * Runs the action while holding the locks for both accounts.
+     */
+    public <T> T withAccountLocks(UUID first, UUID second, Supplier<T> action) {
+        return withAccountLocks(List.of(first, second), action);
+    }
+
+    /**
+     * Runs the action while holding the locks for all given accounts. Each stripe is locked once,
+     * in ascending order.
+     */
+    public <T> T withAccountLocks(Collection<UUID> accountIds, Supplier<T> action) {
+        int[] stripes = accountIds.stream()
+                .mapToInt(AccountRepository::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+        int locked = 0;
+        try {
+            for (int stripe : stripes) {
+                lock(locks[stripe]);
+                locked++;
+            }
+            return hotAccountIds.isEmpty() ? action.get() : withAllSubBalances(accountIds, action);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    // Holds every sub-balance of the hot accounts among the given ones, in account id order
+    private <T> T withAllSubBalances(Collection<UUID> accountIds, Supplier<T> action) {
+        List<UUID> hotIds = new ArrayList<>();
+        for (UUID accountId : accountIds) {
+            if (splitBalanceOf(accountId) != null && !hotIds.contains(accountId)) {
+                hotIds.add(accountId);
+            }
+        }
+        if (hotIds.isEmpty()) {
+            return action.get();
+        }
+        hotIds.sort(Comparator.naturalOrder());
+        Supplier<T> locked = action;
+        for (int i = hotIds.size() - 1; i >= 0; i--) {
+            SplitBalance split = splitBalanceOf(hotIds.get(i));
+            Supplier<T> inner = locked;
+            locked = () -> withAllSubBalances(split, inner);
+        }
+        return locked.get();
+    }
+
+    private <T> T withAllSubBalances(SplitBalance split, Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (int i = 0; i < split.size(); i++) {
+                lock(split.lock(i));
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                split.lock(i).unlock();
+            }
+        }
+    }
+
+    private SplitBalance splitBalanceOf(UUID accountId) {
+        if (!hotAccountIds.contains(accountId)) {
+            return null;
+        }
+        Account account = accounts.get(accountId);
+        return account == null ? null : account.getSplitBalance();
+    }
+
+    // Spreads threads over the sub-balances, so they rarely try the same one first
+    private static int startingSubBalance(SplitBalance split) {
+        int h = System.identityHashCode(Thread.currentThread());
+        return Math.floorMod(h ^ (h >>> 16), split.size());
+    }
+
+    // Only a contended acquisition is timed, so the uncontended path costs no more than a plain lock()
+    private void lock(ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            lockWaitListener.accept(System.nanoTime() - start);
+        }
+    }
+
+    private static int stripeOf(UUID accountId) {
+        int h = accountId.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
 }
@@ -0,0 +1,178 @@
+package com.example.bankingtransactions.repository;
+
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.AccountSummary;
+import com.example.bankingtransactions.model.BalanceCheckpoint;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-account totals, updated as each transaction enters the history, so a summary costs the same however long the
+ * history is. Alongside the totals, {@link BalanceCheckpoints} record the net amount of the history at intervals, so
+ * a balance at a point in time only replays the history since the nearest checkpoint. Summaries have their own
+ * striped locks rather than relying on the account locks: the partitioned engine records a transfer between
+ * partitions on the destination's writer thread, while the source account may be in use by its own partition.
+ */
+@Repository
+public class AccountSummaryRepository {
+
+    // Must be a power of two
+    private static final int LOCK_STRIPES = 1024;
+
+    private final Map<UUID, AccountSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<UUID, BalanceCheckpoints> checkpoints = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public AccountSummaryRepository() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Adds a transaction just saved to the history to the summaries of the accounts it moved money between.
+     */
+    public void record(Transaction transaction) {
+        record(transaction, false);
+    }
+
+    /**
+     * Records imported history, which is already reflected in the balances the accounts were imported with.
+     */
+    public void recordImported(Transaction transaction) {
+        record(transaction, true);
+    }
+
+    /**
+     * Records the balance an account was opened or imported with. Balances at a point in time are only known for
+     * accounts whose opening balance has been recorded.
+     */
+    public void open(UUID accountId, long balance) {
+        ReentrantLock lock = locks[stripeOf(accountId)];
+        lock.lock();
+        try {
+            checkpoints.computeIfAbsent(accountId, id -> new BalanceCheckpoints()).open(balance);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the account's balance just before {@code key}, as the newest checkpoint at or before it plus the
+     * history from {@link BalanceCheckpoint#from()} up to {@code key}, which the caller replays. Empty if the
+     * account's opening balance has not been recorded.
+     */
+    public Optional<BalanceCheckpoint> findCheckpoint(UUID accountId, HistoryKey key) {
+        ReentrantLock lock = locks[stripeOf(accountId)];
+        lock.lock();
+        try {
+            BalanceCheckpoints account = checkpoints.get(accountId);
+            if (account == null || !account.isOpened()) {
+                return Optional.empty();
+            }
+            // Checkpoints fall between timestamps, so one at the key's own timestamp precedes it
+            int checkpoint = account.floor(key.epochNanos());
+            if (checkpoint < 0) {
+                return Optional.of(new BalanceCheckpoint(null, account.openingBalance()));
+            }
+            return Optional.of(new BalanceCheckpoint(new HistoryKey(account.time(checkpoint), Long.MIN_VALUE),
+                    account.openingBalance() + account.net(checkpoint)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the account's summary, empty if no transaction has been recorded for it.
+     */
+    public Optional<AccountSummary> findById(UUID accountId) {
+        ReentrantLock lock = locks[stripeOf(accountId)];
+        lock.lock();
+        try {
+            AccountSummary summary = summaries.get(accountId);
+            return Optional.ofNullable(summary == null ? null : summary.copy());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the balance the account was opened with, less its imported history, or empty if it has not been
+     * recorded yet.
+     */
+    public OptionalLong findOpeningBalance(UUID accountId) {
+        ReentrantLock lock = locks[stripeOf(accountId)];
+        lock.lock();
+        try {
+            BalanceCheckpoints account = checkpoints.get(accountId);
+            return account == null || !account.isOpened()
+                    ? OptionalLong.empty()
+                    : OptionalLong.of(account.openingBalance());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void deleteAll() {
+        summaries.clear();
+        checkpoints.clear();
+    }
+
+    private void record(Transaction transaction, boolean imported) {
+        if (transaction.getFromAccountId() != null) {
+            update(transaction.getFromAccountId(), transaction, false, imported);
+        }
+        if (transaction.getToAccountId() != null) {
+            update(transaction.getToAccountId(), transaction, true, imported);
+        }
+    }
+
+    private void update(UUID accountId, Transaction transaction, boolean credit, boolean imported) {
+        ReentrantLock lock = locks[stripeOf(accountId)];
+        lock.lock();
+        try {
+            AccountSummary summary = summaries.computeIfAbsent(accountId, AccountSummary::new);
+            long amount = transaction.getAmount();
+            long epochNanos = HistoryKey.epochNanos(transaction.getTimestamp());
+            BalanceCheckpoints account = checkpoints.computeIfAbsent(accountId, id -> new BalanceCheckpoints());
+            if (imported) {
+                account.recordImported(epochNanos, credit ? amount : -amount);
+            } else {
+                account.record(epochNanos, credit ? amount : -amount);
+            }
+            if (transaction.getType() == TransactionType.TRANSFER) {
+                if (credit) {
+                    summary.setTotalTransferredIn(summary.getTotalTransferredIn() + amount);
+                } else {
+                    summary.setTotalTransferredOut(summary.getTotalTransferredOut() + amount);
+                }
+            } else if (credit) {
+                summary.setTotalDeposited(summary.getTotalDeposited() + amount);
+            } else {
+                summary.setTotalWithdrawn(summary.getTotalWithdrawn() + amount);
+            }
+            summary.setTransactionCount(summary.getTransactionCount() + 1);
+            // History restored from the journal after startup arrives older than what was recorded since
+            LocalDateTime timestamp = transaction.getTimestamp();
+            if (summary.getLastActivity() == null || timestamp.isAfter(summary.getLastActivity())) {
+                summary.setLastActivity(timestamp);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripeOf(UUID accountId) {
+        int h = accountId.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+}
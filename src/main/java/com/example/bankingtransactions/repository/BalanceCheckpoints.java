@@ -0,0 +1,126 @@
+package com.example.bankingtransactions.repository;
+
+import java.util.Arrays;
+
+/**
+ * Checkpoints of one account's history for point-in-time balances. Each checkpoint is a time and the net amount of
+ * every recorded transaction before it, so the balance at any time is the opening balance plus the nearest earlier
+ * checkpoint plus the transactions between the two.
+ * <p>
+ * Every {@link #INTERVAL} transactions recorded after the newest checkpoint start a new one, just after the newest
+ * of them. One recorded behind a checkpoint, e.g. restored from the journal or imported, is added to every later
+ * checkpoint instead. The stretch between two checkpoints is split the same way when it fills up, and a transaction
+ * older than everything in its stretch starts a stretch of its own. History restored in the background after a
+ * snapshot, which arrives in order but behind what was recorded since startup, therefore gets checkpoints as well.
+ * <p>
+ * Not thread safe: guarded by the account's lock in {@link AccountSummaryRepository}.
+ */
+final class BalanceCheckpoints {
+
+    static final int INTERVAL = 256;
+
+    // Checkpoint times in epoch nanos, ascending, and the net amount of the transactions before each
+    private long[] times = new long[0];
+    private long[] nets = new long[0];
+    private int size;
+    // Per stretch: before the first checkpoint, between each pair, and after the last, which is open ended
+    private int[] counts = new int[1];
+    private long[] oldest = {Long.MAX_VALUE};
+    private long[] newest = {Long.MIN_VALUE};
+    private long total;
+    private long openingBalance;
+    private boolean opened;
+
+    /**
+     * Adds the balance the account was opened with. Imported accounts are opened with the balance after their
+     * imported history, which {@link #recordImported} then takes back out.
+     */
+    void open(long balance) {
+        openingBalance += balance;
+        opened = true;
+    }
+
+    boolean isOpened() {
+        return opened;
+    }
+
+    long openingBalance() {
+        return openingBalance;
+    }
+
+    /**
+     * Records a transaction moving {@code amount} into the account, or out of it if negative.
+     */
+    void record(long epochNanos, long amount) {
+        int stretch = stretchOf(epochNanos);
+        if (counts[stretch] > 0 && epochNanos < oldest[stretch]) {
+            // Nothing in the stretch is older, so the net before its oldest transaction is the previous checkpoint's
+            insert(stretch, oldest[stretch], stretch == 0 ? 0 : nets[stretch - 1], false);
+        }
+        for (int i = stretch; i < size; i++) {
+            nets[i] += amount;
+        }
+        total += amount;
+        counts[stretch]++;
+        oldest[stretch] = Math.min(oldest[stretch], epochNanos);
+        newest[stretch] = Math.max(newest[stretch], epochNanos);
+        // Every transaction in the stretch is before the new checkpoint, so its net is that of the whole stretch
+        long split = newest[stretch] + 1;
+        if (counts[stretch] >= INTERVAL && (stretch == size || split < times[stretch])) {
+            insert(stretch, split, stretch == size ? total : nets[stretch], true);
+        }
+    }
+
+    /**
+     * Records imported history, which happened before the balance the account was imported with.
+     */
+    void recordImported(long epochNanos, long amount) {
+        record(epochNanos, amount);
+        openingBalance -= amount;
+    }
+
+    /**
+     * Index of the newest checkpoint at or before the given time, or -1 if there is none.
+     */
+    int floor(long epochNanos) {
+        return stretchOf(epochNanos) - 1;
+    }
+
+    long time(int checkpoint) {
+        return times[checkpoint];
+    }
+
+    long net(int checkpoint) {
+        return nets[checkpoint];
+    }
+
+    // Number of checkpoints at or before the given time, which is also the index of the stretch holding it
+    private int stretchOf(long epochNanos) {
+        int index = Arrays.binarySearch(times, 0, size, epochNanos);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // Splits stretch index at a new checkpoint, with all of its transactions on one side of it
+    private void insert(int index, long time, long net, boolean transactionsBefore) {
+        if (size == times.length) {
+            int capacity = Math.max(4, size * 2);
+            times = Arrays.copyOf(times, capacity);
+            nets = Arrays.copyOf(nets, capacity);
+            counts = Arrays.copyOf(counts, capacity + 1);
+            oldest = Arrays.copyOf(oldest, capacity + 1);
+            newest = Arrays.copyOf(newest, capacity + 1);
+        }
+        System.arraycopy(times, index, times, index + 1, size - index);
+        System.arraycopy(nets, index, nets, index + 1, size - index);
+        System.arraycopy(counts, index, counts, index + 1, size - index + 1);
+        System.arraycopy(oldest, index, oldest, index + 1, size - index + 1);
+        System.arraycopy(newest, index, newest, index + 1, size - index + 1);
+        times[index] = time;
+        nets[index] = net;
+        size++;
+        int empty = transactionsBefore ? index + 1 : index;
+        counts[empty] = 0;
+        oldest[empty] = Long.MAX_VALUE;
+        newest[empty] = Long.MIN_VALUE;
+    }
+}
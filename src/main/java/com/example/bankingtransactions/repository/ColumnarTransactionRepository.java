@@ -0,0 +1,573 @@
+package com.example.bankingtransactions.repository;
+
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.HistoryEntry;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.model.TransactionPage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps transactions in primitive columns rather than objects. Each transaction is stored once, as a row holding its
+ * id as two longs, its accounts as indexes into an account table, its amount in cents, its timestamp in epoch
+ * nanoseconds, its type as a byte and its description as UTF-8 in a shared byte arena.
+ * <p>
+ * Each account's history is an int array of row numbers ordered by timestamp. {@link Transaction} objects are only
+ * created when history is read. A transfer takes around 60 bytes plus its description, instead of several hundred.
+ * <p>
+ * Rows are written before they are published to an account's history by a volatile write, so reads take no locks.
+ * Writes to an account's history are serialized by its lock; entries older than the newest one are inserted into a
+ * copy of the array, so a reader's view is never modified under it.
+ * <p>
+ * Chunks of rows count the references to them from account histories, and are freed once every row has been
+ * evicted from every history it belongs to, along with any description blocks only they used. The row numbers of a
+ * freed chunk are reused, so a store that evicts keeps saving for as long as it runs.
+ */
+public class ColumnarTransactionRepository implements EvictableTransactionRepository {
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Row numbers are non-negative ints
+    private static final int MAX_CHUNKS = 1 << (Integer.SIZE - 1 - CHUNK_SHIFT);
+    private static final int NO_ACCOUNT = -1;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final Map<UUID, History> histories = new ConcurrentHashMap<>();
+    private final AtomicLong savedCount = new AtomicLong();
+    private final DescriptionArena descriptions = new DescriptionArena();
+    // Guards growing the chunk and account tables, and the free chunk indexes
+    private final ReentrantLock tableLock = new ReentrantLock();
+    private final ArrayDeque<Integer> freeChunks = new ArrayDeque<>();
+    private volatile Chunk[] chunks = new Chunk[64];
+    // Chunk that rows are being taken from
+    private volatile Chunk current;
+    private int chunkCount;
+    private volatile UUID[] accounts = new UUID[1024];
+    private int accountCount;
+
+    @Override
+    public Transaction save(Transaction tm) {
+        int row = allocateRow();
+        History from = history(tm.getFromAccountId());
+        History to = history(tm.getToAccountId());
+        long epochNanos = HistoryKey.epochNanos(tm.getTimestamp());
+
+        Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+        // Swap the row's slot reference for one per history it goes into
+        chunk.references.addAndGet((to != null ? 1 : 0) + (from != null && from != to ? 1 : 0) - 1);
+        int i = row & CHUNK_MASK;
+        chunk.idHigh[i] = tm.getId().getMostSignificantBits();
+        chunk.idLow[i] = tm.getId().getLeastSignificantBits();
+        chunk.fromAccount[i] = from == null ? NO_ACCOUNT : from.accountIndex;
+        chunk.toAccount[i] = to == null ? NO_ACCOUNT : to.accountIndex;
+        chunk.amount[i] = tm.getAmount();
+        chunk.epochNanos[i] = epochNanos;
+        chunk.type[i] = (byte) tm.getType().ordinal();
+        chunk.description[i] = descriptions.add(tm.getDescription());
+
+        if (to != null) {
+            to.insert(row, epochNanos);
+        }
+        if (from != null && from != to) {
+            from.insert(row, epochNanos);
+        }
+        savedCount.incrementAndGet();
+        return tm;
+    }
+
+    @Override
+    public List<Transaction> findTransactionsByAccountId(UUID id) {
+        History history = histories.get(id);
+        if (history == null) {
+            return null;
+        }
+        int size = history.size;
+        int[] rows = history.rows;
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(materialize(rows[i]));
+        }
+        return transactions;
+    }
+
+    @Override
+    public TransactionPage findPage(UUID id, HistoryKey from, HistoryKey to, HistoryKey before, int limit) {
+        History history = histories.get(id);
+        if (history == null) {
+            return new TransactionPage(List.of(), null);
+        }
+        HistoryKey upper = to;
+        if (before != null && (upper == null || before.compareTo(upper) < 0)) {
+            upper = before;
+        }
+        int size = history.size;
+        int[] rows = history.rows;
+        int low = from == null ? 0 : lowerBound(rows, size, from);
+        int high = upper == null ? size : lowerBound(rows, size, upper);
+
+        List<Transaction> page = new ArrayList<>(Math.min(limit, 64));
+        int i = high;
+        while (i > low && page.size() < limit) {
+            page.add(materialize(rows[--i]));
+        }
+        return new TransactionPage(page, i > low && !page.isEmpty() ? keyOf(rows[i]) : null);
+    }
+
+    @Override
+    public Iterator<Transaction> iterate(UUID id, HistoryKey from, HistoryKey to) {
+        History history = histories.get(id);
+        if (history == null) {
+            return Collections.emptyIterator();
+        }
+        int size = history.size;
+        int[] rows = history.rows;
+        int low = from == null ? 0 : lowerBound(rows, size, from);
+        int high = to == null ? size : lowerBound(rows, size, to);
+        return new Iterator<>() {
+            private int next = low;
+
+            @Override
+            public boolean hasNext() {
+                return next < high;
+            }
+
+            @Override
+            public Transaction next() {
+                if (next >= high) {
+                    throw new NoSuchElementException();
+                }
+                return materialize(rows[next++]);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<HistoryEntry> iterateEntries(UUID id, HistoryKey from, HistoryKey to) {
+        History history = histories.get(id);
+        if (history == null) {
+            return Collections.emptyIterator();
+        }
+        int size = history.size;
+        int[] rows = history.rows;
+        int low = from == null ? 0 : lowerBound(rows, size, from);
+        int high = to == null ? size : lowerBound(rows, size, to);
+        return new Iterator<>() {
+            private int next = low;
+
+            @Override
+            public boolean hasNext() {
+                return next < high;
+            }
+
+            @Override
+            public HistoryEntry next() {
+                if (next >= high) {
+                    throw new NoSuchElementException();
+                }
+                int row = rows[next++];
+                return new HistoryEntry(keyOf(row), materialize(row));
+            }
+        };
+    }
+
+    @Override
+    public int countTransactions(UUID id) {
+        History history = histories.get(id);
+        return history == null ? 0 : history.size;
+    }
+
+    @Override
+    public Collection<UUID> findAccountIds() {
+        return Collections.unmodifiableSet(histories.keySet());
+    }
+
+    @Override
+    public void evict(UUID id, HistoryKey upTo) {
+        History history = histories.get(id);
+        if (history == null) {
+            return;
+        }
+        int[] evicted = history.removeUpTo(upTo);
+        for (int row : evicted) {
+            Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+            if (chunk.references.decrementAndGet() == 0) {
+                free(row >>> CHUNK_SHIFT);
+            }
+        }
+    }
+
+    @Override
+    public long count() {
+        return savedCount.get();
+    }
+
+    /**
+     * Must not run concurrently with saves.
+     */
+    @Override
+    public void deleteAll() {
+        tableLock.lock();
+        try {
+            histories.clear();
+            chunks = new Chunk[64];
+            current = null;
+            chunkCount = 0;
+            freeChunks.clear();
+            accounts = new UUID[1024];
+            accountCount = 0;
+            descriptions.clear();
+            savedCount.set(0);
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    private Transaction materialize(int row) {
+        Chunk chunk = chunks[row >>> CHUNK_SHIFT];
+        int i = row & CHUNK_MASK;
+        UUID[] accountTable = accounts;
+        int from = chunk.fromAccount[i];
+        int to = chunk.toAccount[i];
+        return new Transaction(
+                new UUID(chunk.idHigh[i], chunk.idLow[i]),
+                from == NO_ACCOUNT ? null : accountTable[from],
+                to == NO_ACCOUNT ? null : accountTable[to],
+                chunk.amount[i],
+                TYPES[chunk.type[i]],
+                descriptions.get(chunk.description[i]),
+                HistoryKey.timestamp(chunk.epochNanos[i]));
+    }
+
+    private void free(int chunkIndex) {
+        tableLock.lock();
+        try {
+            Chunk chunk = chunks[chunkIndex];
+            chunks[chunkIndex] = null;
+            for (long description : chunk.description) {
+                descriptions.release(description);
+            }
+            // Every history that held one of its rows has evicted it, so no reader can still reach them
+            freeChunks.add(chunkIndex);
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    private long epochNanosOf(int row) {
+        return chunks[row >>> CHUNK_SHIFT].epochNanos[row & CHUNK_MASK];
+    }
+
+    // The row number doubles as the sequence that orders transactions recorded at the same instant
+    private HistoryKey keyOf(int row) {
+        return new HistoryKey(epochNanosOf(row), row);
+    }
+
+    private int compare(int row, long epochNanos, long sequence) {
+        int byTime = Long.compare(epochNanosOf(row), epochNanos);
+        return byTime != 0 ? byTime : Long.compare(row, sequence);
+    }
+
+    // Index of the first of the rows at or after the key
+    private int lowerBound(int[] rows, int size, HistoryKey key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(rows[mid], key.epochNanos(), key.sequence()) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private History history(UUID accountId) {
+        // Deposits have no source account and withdrawals have no destination account
+        if (accountId == null) {
+            return null;
+        }
+        History history = histories.get(accountId);
+        if (history != null) {
+            return history;
+        }
+        tableLock.lock();
+        try {
+            history = histories.get(accountId);
+            if (history == null) {
+                UUID[] accountTable = accounts;
+                if (accountCount == accountTable.length) {
+                    accountTable = Arrays.copyOf(accountTable, accountTable.length * 2);
+                }
+                accountTable[accountCount] = accountId;
+                accounts = accountTable;
+                history = new History(accountCount++);
+                histories.put(accountId, history);
+            }
+            return history;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    private int allocateRow() {
+        while (true) {
+            Chunk chunk = current;
+            if (chunk != null) {
+                int i = chunk.allocated.getAndIncrement();
+                if (i < CHUNK_SIZE) {
+                    return (chunk.index << CHUNK_SHIFT) | i;
+                }
+            }
+            nextChunk(chunk);
+        }
+    }
+
+    // Moves on from a full chunk to a freed one, or a new one if none has been freed
+    private void nextChunk(Chunk full) {
+        tableLock.lock();
+        try {
+            if (current != full) {
+                return;
+            }
+            Integer freed = freeChunks.poll();
+            int index;
+            if (freed != null) {
+                index = freed;
+            } else if (chunkCount < MAX_CHUNKS) {
+                index = chunkCount++;
+            } else {
+                // Only reached with two billion transactions in memory, long after the heap has run out
+                throw new IllegalStateException("Transaction store is full");
+            }
+            Chunk[] chunkTable = chunks;
+            if (index >= chunkTable.length) {
+                chunkTable = Arrays.copyOf(chunkTable, Math.min(chunkTable.length * 2, MAX_CHUNKS));
+            }
+            Chunk chunk = new Chunk(index);
+            chunkTable[index] = chunk;
+            chunks = chunkTable;
+            current = chunk;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    private static final class Chunk {
+        private final int index;
+        // Rows handed out, which runs past the chunk size once it is full
+        private final AtomicInteger allocated = new AtomicInteger();
+        private final long[] idHigh = new long[CHUNK_SIZE];
+        private final long[] idLow = new long[CHUNK_SIZE];
+        private final int[] fromAccount = new int[CHUNK_SIZE];
+        private final int[] toAccount = new int[CHUNK_SIZE];
+        private final long[] amount = new long[CHUNK_SIZE];
+        private final long[] epochNanos = new long[CHUNK_SIZE];
+        private final byte[] type = new byte[CHUNK_SIZE];
+        private final long[] description = new long[CHUNK_SIZE];
+        // One per unused row slot plus one per history entry, so it only reaches zero once the chunk is full and
+        // every row has been evicted
+        private final AtomicInteger references = new AtomicInteger(CHUNK_SIZE);
+
+        private Chunk(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Row numbers of one account's transactions, ordered by timestamp. Readers read {@code size} before
+     * {@code rows}, so every slot they look at has been written.
+     */
+    private final class History {
+        private final int accountIndex;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile int[] rows = new int[4];
+        private volatile int size;
+
+        private History(int accountIndex) {
+            this.accountIndex = accountIndex;
+        }
+
+        private void insert(int row, long epochNanos) {
+            lock.lock();
+            try {
+                int n = size;
+                int[] current = rows;
+                if (n == 0 || compare(current[n - 1], epochNanos, row) < 0) {
+                    if (n == current.length) {
+                        current = Arrays.copyOf(current, n * 2);
+                    }
+                    current[n] = row;
+                    rows = current;
+                } else {
+                    // Recorded out of order, e.g. history restored from the journal after startup
+                    int position = lowerBound(current, n, new HistoryKey(epochNanos, row));
+                    int[] copy = new int[n == current.length ? n * 2 : current.length];
+                    System.arraycopy(current, 0, copy, 0, position);
+                    copy[position] = row;
+                    System.arraycopy(current, position, copy, position + 1, n - position);
+                    rows = copy;
+                }
+                size = n + 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Returns the removed rows
+        private int[] removeUpTo(HistoryKey upTo) {
+            lock.lock();
+            try {
+                int n = size;
+                int[] current = rows;
+                int end = lowerBound(current, n, new HistoryKey(upTo.epochNanos(), upTo.sequence() + 1));
+                if (end == 0) {
+                    return new int[0];
+                }
+                int[] remaining = new int[Math.max(4, Integer.highestOneBit(n - end) * 2)];
+                System.arraycopy(current, end, remaining, 0, n - end);
+                rows = remaining;
+                size = n - end;
+                return Arrays.copyOf(current, end);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Descriptions as length-prefixed UTF-8, packed into shared blocks. A reference is the block number and the
+     * offset within it; descriptions too long for a block get a block of their own. A block is dropped once every
+     * description in it has been released and it is no longer being filled.
+     */
+    private static final class DescriptionArena {
+
+        private static final int BLOCK_SHIFT = 20;
+        private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+        private static final long NONE = -1;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile byte[][] blocks = new byte[16][];
+        // Descriptions in each block, plus one for the block being filled; guarded by lock
+        private int[] blockReferences = new int[16];
+        private int blockCount;
+        private int currentBlock = -1;
+        private int offset;
+
+        private long add(String description) {
+            if (description == null) {
+                return NONE;
+            }
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            int size = varIntSize(bytes.length) + bytes.length;
+            lock.lock();
+            try {
+                int blockIndex;
+                int position;
+                if (size > BLOCK_SIZE) {
+                    blockIndex = addBlock(new byte[size]);
+                    position = 0;
+                } else {
+                    if (currentBlock < 0 || offset + size > BLOCK_SIZE) {
+                        if (currentBlock >= 0) {
+                            releaseBlock(currentBlock);
+                        }
+                        currentBlock = addBlock(new byte[BLOCK_SIZE]);
+                        blockReferences[currentBlock]++;
+                        offset = 0;
+                    }
+                    blockIndex = currentBlock;
+                    position = offset;
+                    offset += size;
+                }
+                byte[] block = blocks[blockIndex];
+                int start = writeVarInt(block, position, bytes.length);
+                System.arraycopy(bytes, 0, block, start, bytes.length);
+                blockReferences[blockIndex]++;
+                return ((long) blockIndex << BLOCK_SHIFT) | position;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private String get(long reference) {
+            if (reference == NONE) {
+                return null;
+            }
+            byte[] block = blocks[(int) (reference >>> BLOCK_SHIFT)];
+            int position = (int) (reference & (BLOCK_SIZE - 1));
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = block[position++];
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return new String(block, position, length, StandardCharsets.UTF_8);
+        }
+
+        private void release(long reference) {
+            if (reference == NONE) {
+                return;
+            }
+            lock.lock();
+            try {
+                releaseBlock((int) (reference >>> BLOCK_SHIFT));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                blocks = new byte[16][];
+                blockReferences = new int[16];
+                blockCount = 0;
+                currentBlock = -1;
+                offset = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int addBlock(byte[] block) {
+            byte[][] blockTable = blocks;
+            if (blockCount == blockTable.length) {
+                blockTable = Arrays.copyOf(blockTable, blockTable.length * 2);
+                blockReferences = Arrays.copyOf(blockReferences, blockTable.length);
+            }
+            blockTable[blockCount] = block;
+            blocks = blockTable;
+            return blockCount++;
+        }
+
+        private void releaseBlock(int index) {
+            if (--blockReferences[index] == 0) {
+                blocks[index] = null;
+            }
+        }
+
+        private static int varIntSize(int value) {
+            return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+        }
+
+        // Returns the position just past the written value
+        private static int writeVarInt(byte[] block, int position, int value) {
+            while ((value & ~0x7F) != 0) {
+                block[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            block[position++] = (byte) value;
+            return position;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bankingtransactions.repository;
+
+import com.example.bankingtransactions.model.HistoryEntry;
+import com.example.bankingtransactions.model.HistoryKey;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.UUID;
+
+/**
+ * In-memory history that older transactions can be moved out of, see {@link TieredTransactionRepository}.
+ */
+public interface EvictableTransactionRepository extends TransactionRepository {
+
+    /**
+     * Like {@link #iterate}, with each transaction's position in the account's history.
+     */
+    Iterator<HistoryEntry> iterateEntries(UUID id, HistoryKey from, HistoryKey to);
+
+    /**
+     * Number of transactions in the account's history.
+     */
+    int countTransactions(UUID id);
+
+    Collection<UUID> findAccountIds();
+
+    /**
+     * Removes the account's transactions up to and including the given key. Must not run concurrently with reads
+     * of the account's history.
+     */
+    void evict(UUID id, HistoryKey upTo);
+}
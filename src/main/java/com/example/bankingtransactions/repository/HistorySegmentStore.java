@@ -0,0 +1,305 @@
+package com.example.bankingtransactions.repository;
+
+import com.example.bankingtransactions.enums.TransactionType;
+import com.example.bankingtransactions.model.HistoryEntry;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold tier of the transaction history: blocks of an account's older transactions, compressed and appended to
+ * segment files that are never modified once written. Each account's blocks are indexed in memory by key range, in
+ * ascending order. Block layout before compression:
+ * <pre>
+ * for each transaction:
+ *   long epochNanos, long sequence, long idHigh, long idLow, byte type, long amount,
+ *   byte flags (1: has source, 2: has destination, 4: has description),
+ *   [long fromHigh, long fromLow], [long toHigh, long toLow], [int descriptionLength, byte[] description]
+ * </pre>
+ * Segments only hold history evicted from the heap, which the journal can always restore, so they are deleted on
+ * startup rather than recovered.
+ * <p>
+ * Interrupting a thread in a {@link FileChannel} operation closes the channel for every thread using it, so reads and
+ * writes that find their segment closed reopen it and carry on.
+ */
+@Slf4j
+public class HistorySegmentStore implements AutoCloseable {
+
+    public static final int BLOCK_SIZE = 512;
+    private static final String PREFIX = "history-";
+    private static final String SUFFIX = ".seg";
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<UUID, ColdHistory> histories = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> segments = new ConcurrentHashMap<>();
+    // Only the spilling thread writes
+    private int currentSegment;
+    private long currentSize;
+    private volatile long bytesWritten;
+    private volatile boolean closed;
+
+    public HistorySegmentStore(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(HistorySegmentStore::isSegment).toList()) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare history segment directory " + directory, e);
+        }
+    }
+
+    /**
+     * Index entry of a block of transactions with keys from {@code first} to {@code last}.
+     */
+    public record Block(int segment, long position, int length, int count, HistoryKey first, HistoryKey last) {
+    }
+
+    /**
+     * An account's cold blocks in ascending key order. Replaced as a whole whenever blocks are added.
+     */
+    public record ColdHistory(List<Block> blocks) {
+
+        public HistoryKey last() {
+            return blocks.get(blocks.size() - 1).last();
+        }
+    }
+
+    public ColdHistory find(UUID accountId) {
+        return histories.get(accountId);
+    }
+
+    public void publish(UUID accountId, ColdHistory history) {
+        histories.put(accountId, history);
+    }
+
+    /**
+     * Compresses the entries, in key order, into blocks appended to the current segment. The blocks are not visible
+     * to readers until published.
+     */
+    public List<Block> write(List<HistoryEntry> entries) {
+        List<Block> blocks = new ArrayList<>((entries.size() + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        for (int start = 0; start < entries.size(); start += BLOCK_SIZE) {
+            blocks.add(writeBlock(entries.subList(start, Math.min(entries.size(), start + BLOCK_SIZE))));
+        }
+        return blocks;
+    }
+
+    public List<HistoryEntry> read(Block block) {
+        ByteBuffer buffer = ByteBuffer.allocate(block.length());
+        try {
+            transfer(block.segment(), buffer, block.position(), false);
+            List<HistoryEntry> entries = new ArrayList<>(block.count());
+            try (InputStream bytes = new InflaterInputStream(new ByteArrayInputStream(buffer.array()));
+                 DataInputStream in = new DataInputStream(bytes)) {
+                for (int i = 0; i < block.count(); i++) {
+                    entries.add(readEntry(in));
+                }
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history segment " + block.segment(), e);
+        }
+    }
+
+    /**
+     * Total compressed bytes written to segments so far.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void deleteAll() {
+        histories.clear();
+        closeSegments();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(HistorySegmentStore::isSegment).toList()) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete history segments in " + directory, e);
+        }
+        currentSegment = 0;
+        currentSize = 0;
+        bytesWritten = 0;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeSegments();
+    }
+
+    private void closeSegments() {
+        for (FileChannel channel : segments.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close history segment", e);
+            }
+        }
+        segments.clear();
+    }
+
+    private Block writeBlock(List<HistoryEntry> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            for (HistoryEntry entry : entries) {
+                writeEntry(out, entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        byte[] compressed = bytes.toByteArray();
+
+        try {
+            if (!segments.containsKey(currentSegment) || currentSize + compressed.length > segmentSize) {
+                currentSegment++;
+                currentSize = 0;
+                segments.put(currentSegment, FileChannel.open(segmentFile(currentSegment),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            }
+            long position = currentSize;
+            transfer(currentSegment, ByteBuffer.wrap(compressed), position, true);
+            currentSize += compressed.length;
+            bytesWritten += compressed.length;
+            return new Block(currentSegment, position, compressed.length, entries.size(),
+                    entries.get(0).key(), entries.get(entries.size() - 1).key());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write history segment in " + directory, e);
+        }
+    }
+
+    // Reads or writes the whole buffer at the position, reopening the segment if it was closed by an interrupt, and
+    // restoring this thread's interrupt status afterwards
+    private void transfer(int segment, ByteBuffer buffer, long position, boolean write) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (buffer.hasRemaining()) {
+                FileChannel channel = segments.get(segment);
+                if (channel == null || closed) {
+                    throw new ClosedChannelException();
+                }
+                try {
+                    int transferred = write
+                            ? channel.write(buffer, position + buffer.position())
+                            : channel.read(buffer, position + buffer.position());
+                    if (transferred < 0) {
+                        throw new IOException("Unexpected end of history segment " + segment);
+                    }
+                } catch (ClosedChannelException e) {
+                    interrupted |= Thread.interrupted();
+                    reopen(segment, channel);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void reopen(int segment, FileChannel stale) throws IOException {
+        try {
+            segments.computeIfPresent(segment, (key, current) -> {
+                if (current != stale || closed) {
+                    return current;
+                }
+                try {
+                    return FileChannel.open(segmentFile(segment), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path segmentFile(int segment) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private static void writeEntry(DataOutputStream out, HistoryEntry entry) throws IOException {
+        Transaction transaction = entry.transaction();
+        out.writeLong(entry.key().epochNanos());
+        out.writeLong(entry.key().sequence());
+        out.writeLong(transaction.getId().getMostSignificantBits());
+        out.writeLong(transaction.getId().getLeastSignificantBits());
+        out.writeByte(transaction.getType().ordinal());
+        out.writeLong(transaction.getAmount());
+        int flags = (transaction.getFromAccountId() != null ? 1 : 0)
+                | (transaction.getToAccountId() != null ? 2 : 0)
+                | (transaction.getDescription() != null ? 4 : 0);
+        out.writeByte(flags);
+        if (transaction.getFromAccountId() != null) {
+            out.writeLong(transaction.getFromAccountId().getMostSignificantBits());
+            out.writeLong(transaction.getFromAccountId().getLeastSignificantBits());
+        }
+        if (transaction.getToAccountId() != null) {
+            out.writeLong(transaction.getToAccountId().getMostSignificantBits());
+            out.writeLong(transaction.getToAccountId().getLeastSignificantBits());
+        }
+        if (transaction.getDescription() != null) {
+            byte[] description = transaction.getDescription().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(description.length);
+            out.write(description);
+        }
+    }
+
+    private static HistoryEntry readEntry(DataInputStream in) throws IOException {
+        HistoryKey key = new HistoryKey(in.readLong(), in.readLong());
+        UUID id = new UUID(in.readLong(), in.readLong());
+        TransactionType type = TYPES[in.readByte()];
+        long amount = in.readLong();
+        int flags = in.readByte();
+        UUID from = (flags & 1) != 0 ? new UUID(in.readLong(), in.readLong()) : null;
+        UUID to = (flags & 2) != 0 ? new UUID(in.readLong(), in.readLong()) : null;
+        String description = null;
+        if ((flags & 4) != 0) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            description = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new HistoryEntry(key, new Transaction(id, from, to, amount, type, description,
+                HistoryKey.timestamp(key.epochNanos())));
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.bankingtransactions.repository;
+
+import com.example.bankingtransactions.model.HistoryEntry;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.model.TransactionPage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps each account's history in a map ordered by timestamp, so a page of history costs O(log n + page size).
+ */
+public class ObjectTransactionRepository implements EvictableTransactionRepository {
+
+    private final Map<UUID, History> transactionsMap = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public Transaction save(Transaction tm) {
+        HistoryKey key = HistoryKey.of(tm.getTimestamp(), sequence.incrementAndGet());
+        index(tm.getToAccountId(), key, tm);
+        index(tm.getFromAccountId(), key, tm);
+        count.increment();
+        return tm;
+    }
+
+    @Override
+    public void saveAll(List<Transaction> transactions) {
+        long first = sequence.getAndAdd(transactions.size()) + 1;
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction tm = transactions.get(i);
+            HistoryKey key = HistoryKey.of(tm.getTimestamp(), first + i);
+            index(tm.getToAccountId(), key, tm);
+            index(tm.getFromAccountId(), key, tm);
+        }
+        count.add(transactions.size());
+    }
+
+    @Override
+    public List<Transaction> findTransactionsByAccountId(UUID id) {
+        History history = transactionsMap.get(id);
+        if (history == null) {
+            return null;
+        }
+        return new ArrayList<>(history.transactions.values());
+    }
+
+    @Override
+    public TransactionPage findPage(UUID id, HistoryKey from, HistoryKey to, HistoryKey before, int limit) {
+        History history = transactionsMap.get(id);
+        if (history == null) {
+            return new TransactionPage(List.of(), null);
+        }
+        HistoryKey upper = to;
+        if (before != null && (upper == null || before.compareTo(upper) < 0)) {
+            upper = before;
+        }
+        NavigableMap<HistoryKey, Transaction> range = range(history.transactions, from, upper);
+
+        List<Transaction> page = new ArrayList<>(Math.min(limit, 64));
+        HistoryKey last = null;
+        Iterator<Map.Entry<HistoryKey, Transaction>> entries = range.descendingMap().entrySet().iterator();
+        while (entries.hasNext() && page.size() < limit) {
+            Map.Entry<HistoryKey, Transaction> entry = entries.next();
+            page.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new TransactionPage(page, entries.hasNext() ? last : null);
+    }
+
+    @Override
+    public Iterator<Transaction> iterate(UUID id, HistoryKey from, HistoryKey to) {
+        History history = transactionsMap.get(id);
+        if (history == null) {
+            return Collections.emptyIterator();
+        }
+        return range(history.transactions, from, to).values().iterator();
+    }
+
+    @Override
+    public Iterator<HistoryEntry> iterateEntries(UUID id, HistoryKey from, HistoryKey to) {
+        History history = transactionsMap.get(id);
+        if (history == null) {
+            return Collections.emptyIterator();
+        }
+        Iterator<Map.Entry<HistoryKey, Transaction>> entries = range(history.transactions, from, to).entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public HistoryEntry next() {
+                Map.Entry<HistoryKey, Transaction> entry = entries.next();
+                return new HistoryEntry(entry.getKey(), entry.getValue());
+            }
+        };
+    }
+
+    @Override
+    public int countTransactions(UUID id) {
+        History history = transactionsMap.get(id);
+        return history == null ? 0 : history.size.get();
+    }
+
+    @Override
+    public Collection<UUID> findAccountIds() {
+        return Collections.unmodifiableSet(transactionsMap.keySet());
+    }
+
+    @Override
+    public void evict(UUID id, HistoryKey upTo) {
+        History history = transactionsMap.get(id);
+        if (history == null) {
+            return;
+        }
+        Iterator<HistoryKey> keys = history.transactions.headMap(upTo, true).keySet().iterator();
+        while (keys.hasNext()) {
+            keys.next();
+            keys.remove();
+            history.size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    public void deleteAll() {
+        transactionsMap.clear();
+        count.reset();
+    }
+
+    private static NavigableMap<HistoryKey, Transaction> range(ConcurrentNavigableMap<HistoryKey, Transaction> transactions,
+                                                               HistoryKey from, HistoryKey to) {
+        if (from != null && to != null) {
+            return from.compareTo(to) >= 0 ? Collections.emptyNavigableMap() : transactions.subMap(from, true, to, false);
+        } else if (from != null) {
+            return transactions.tailMap(from, true);
+        } else if (to != null) {
+            return transactions.headMap(to, false);
+        }
+        return transactions;
+    }
+
+    private void index(UUID accountId, HistoryKey key, Transaction tm) {
+        // Deposits have no source account and withdrawals have no destination account
+        if (accountId == null) {
+            return;
+        }
+        History history = transactionsMap.computeIfAbsent(accountId, id -> new History());
+        if (history.transactions.put(key, tm) == null) {
+            history.size.incrementAndGet();
+        }
+    }
+
+    // The skip list's own size() walks the whole list
+    private static final class History {
+        private final ConcurrentSkipListMap<HistoryKey, Transaction> transactions = new ConcurrentSkipListMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+
+}
@@ -0,0 +1,352 @@
+package com.example.bankingtransactions.repository;
+
+import com.example.bankingtransactions.model.HistoryEntry;
+import com.example.bankingtransactions.model.HistoryKey;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.model.TransactionPage;
+import com.example.bankingtransactions.repository.HistorySegmentStore.Block;
+import com.example.bankingtransactions.repository.HistorySegmentStore.ColdHistory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Transaction history in two tiers. Recent transactions stay in the in-memory store. A background task moves each
+ * account's older transactions into compressed {@link HistorySegmentStore} blocks once they fall outside the hot
+ * window or beyond the per-account limit. Heap use is then bounded by the hot window rather than by the whole
+ * history.
+ * <p>
+ * Reads cover both tiers. Cold blocks are published and the same transactions evicted from memory under the
+ * account's write lock, so a read under the read lock never sees a transaction twice or misses it. Every cold key is
+ * below every hot key of the same account, so pages and exports read the hot tier and then continue into the cold
+ * one.
+ */
+@Slf4j
+public class TieredTransactionRepository implements TransactionRepository, AutoCloseable {
+
+    private static final int LOCK_STRIPES = 1024;
+    // Transactions this recent are never spilled, so one saved slightly out of timestamp order still lands hot
+    private static final long MIN_SPILL_AGE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int EXPORT_BATCH_SIZE = 512;
+
+    private final EvictableTransactionRepository hot;
+    private final HistorySegmentStore cold;
+    private final long hotWindowNanos;
+    private final int maxHotPerAccount;
+    private final LongSupplier spillLimit;
+    // Spills run on the scheduler, and from a journal restore in progress
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final ScheduledExecutorService scheduler;
+    private volatile long transactionsSpilled;
+
+    /**
+     * @param spillLimit checked before each spill: epoch nanoseconds up to which history is complete and may be
+     *                   spilled, so spilling keeps behind a journal restore in progress. {@code Long.MIN_VALUE}
+     *                   while nothing may be spilled, {@code Long.MAX_VALUE} once everything may
+     */
+    public TieredTransactionRepository(EvictableTransactionRepository hot, HistorySegmentStore cold, long hotWindowMs,
+                                       int maxHotPerAccount, long spillIntervalMs, LongSupplier spillLimit) {
+        this.hot = hot;
+        this.cold = cold;
+        this.hotWindowNanos = TimeUnit.MILLISECONDS.toNanos(hotWindowMs);
+        this.maxHotPerAccount = maxHotPerAccount;
+        this.spillLimit = spillLimit;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "history-spiller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::spillSafely, spillIntervalMs, spillIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Transaction save(Transaction tm) {
+        return hot.save(tm);
+    }
+
+    @Override
+    public void saveAll(List<Transaction> transactions) {
+        hot.saveAll(transactions);
+    }
+
+    @Override
+    public List<Transaction> findTransactionsByAccountId(UUID id) {
+        if (cold.find(id) == null && hot.countTransactions(id) == 0) {
+            return null;
+        }
+        List<Transaction> all = new ArrayList<>();
+        iterate(id, null, null).forEachRemaining(all::add);
+        return all;
+    }
+
+    @Override
+    public TransactionPage findPage(UUID id, HistoryKey from, HistoryKey to, HistoryKey before, int limit) {
+        Lock lock = lockFor(id).readLock();
+        lock.lock();
+        try {
+            ColdHistory coldHistory = cold.find(id);
+            if (coldHistory == null) {
+                return hot.findPage(id, from, to, before, limit);
+            }
+            HistoryKey afterCold = after(coldHistory.last());
+            TransactionPage hotPage = hot.findPage(id, max(from, afterCold), to, before, limit);
+            if (hotPage.next() != null) {
+                return hotPage;
+            }
+
+            HistoryKey upper = min(to, before);
+            int remaining = limit - hotPage.transactions().size();
+            List<Block> blocks = overlapping(coldHistory, from, upper);
+            if (remaining == 0) {
+                // Everything older than the page is cold
+                return new TransactionPage(hotPage.transactions(), blocks.isEmpty() ? null : min(upper, afterCold));
+            }
+
+            List<Transaction> page = new ArrayList<>(hotPage.transactions());
+            HistoryKey last = null;
+            boolean more = false;
+            for (int b = blocks.size() - 1; b >= 0 && !more; b--) {
+                List<HistoryEntry> entries = cold.read(blocks.get(b));
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    HistoryEntry entry = entries.get(i);
+                    if (!inRange(entry.key(), from, upper)) {
+                        continue;
+                    }
+                    if (page.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    page.add(entry.transaction());
+                    last = entry.key();
+                }
+            }
+            return new TransactionPage(page, more ? last : null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the history in batches, each consistent on its own, so a long export never holds the account's read
+     * lock while its consumer writes.
+     */
+    @Override
+    public Iterator<Transaction> iterate(UUID id, HistoryKey from, HistoryKey to) {
+        return new Iterator<>() {
+            private HistoryKey position = from;
+            private Iterator<HistoryEntry> batch = Collections.emptyIterator();
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (!batch.hasNext() && !exhausted) {
+                    List<HistoryEntry> entries = readAscending(id, position, to, EXPORT_BATCH_SIZE);
+                    exhausted = entries.size() < EXPORT_BATCH_SIZE;
+                    if (!entries.isEmpty()) {
+                        position = after(entries.get(entries.size() - 1).key());
+                    }
+                    batch = entries.iterator();
+                }
+                return batch.hasNext();
+            }
+
+            @Override
+            public Transaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.next().transaction();
+            }
+        };
+    }
+
+    @Override
+    public long count() {
+        return hot.count();
+    }
+
+    @Override
+    public void deleteAll() {
+        hot.deleteAll();
+        cold.deleteAll();
+    }
+
+    public long getTransactionsSpilled() {
+        return transactionsSpilled;
+    }
+
+    public long getColdBytes() {
+        return cold.getBytesWritten();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        // Not interrupted: an interrupt would close the segment file the spill is writing to
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        cold.close();
+    }
+
+    /**
+     * Moves every account's transactions that have aged out of the hot window, or exceed the per-account limit,
+     * to the cold tier.
+     */
+    public void spill() {
+        long limit = spillLimit.getAsLong();
+        if (limit == Long.MIN_VALUE) {
+            return;
+        }
+        spillLock.lock();
+        try {
+            long start = System.nanoTime();
+            long now = HistoryKey.epochNanos(LocalDateTime.now());
+            HistoryKey ageCutoff = new HistoryKey(now - hotWindowNanos, Long.MIN_VALUE);
+            // A restore reads the journal roughly in timestamp order, so it gets the same margin as recent saves
+            HistoryKey spillable = new HistoryKey(Math.min(now, limit) - MIN_SPILL_AGE_NANOS, Long.MIN_VALUE);
+            long spilled = 0;
+            for (UUID id : List.copyOf(hot.findAccountIds())) {
+                spilled += spillAccount(id, ageCutoff, spillable);
+            }
+            if (spilled > 0) {
+                transactionsSpilled += spilled;
+                log.info("Moved {} transactions to cold history segments in {} ms", spilled,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void spillSafely() {
+        try {
+            spill();
+        } catch (RuntimeException e) {
+            log.error("Failed to move history to cold segments", e);
+        }
+    }
+
+    private long spillAccount(UUID id, HistoryKey ageCutoff, HistoryKey spillable) {
+        int excess = hot.countTransactions(id) - maxHotPerAccount;
+        List<HistoryEntry> batch = new ArrayList<>();
+        Iterator<HistoryEntry> entries = hot.iterateEntries(id, null, spillable);
+        long spilled = 0;
+        while (entries.hasNext()) {
+            HistoryEntry entry = entries.next();
+            if (entry.key().compareTo(ageCutoff) >= 0 && excess <= 0) {
+                break;
+            }
+            batch.add(entry);
+            excess--;
+            if (batch.size() == HistorySegmentStore.BLOCK_SIZE * 16) {
+                spilled += moveToCold(id, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            spilled += moveToCold(id, batch);
+        }
+        return spilled;
+    }
+
+    private int moveToCold(UUID id, List<HistoryEntry> batch) {
+        ColdHistory existing = cold.find(id);
+        List<Block> blocks = new ArrayList<>(existing == null ? List.of() : existing.blocks());
+        List<HistoryEntry> entries = batch;
+        if (existing != null && batch.get(0).key().compareTo(existing.last()) <= 0) {
+            // Older than history already spilled, e.g. restored late from the journal: merge into the blocks it
+            // overlaps and rewrite them, keeping the blocks in key order
+            entries = new ArrayList<>(batch);
+            while (!blocks.isEmpty() && blocks.get(blocks.size() - 1).last().compareTo(batch.get(0).key()) >= 0) {
+                entries.addAll(cold.read(blocks.remove(blocks.size() - 1)));
+            }
+            entries.sort(Comparator.comparing(HistoryEntry::key));
+        }
+        blocks.addAll(cold.write(entries));
+
+        Lock lock = lockFor(id).writeLock();
+        lock.lock();
+        try {
+            cold.publish(id, new ColdHistory(List.copyOf(blocks)));
+            hot.evict(id, batch.get(batch.size() - 1).key());
+        } finally {
+            lock.unlock();
+        }
+        return batch.size();
+    }
+
+    // Up to limit entries in [from, to), oldest first: cold blocks, then the hot tier
+    private List<HistoryEntry> readAscending(UUID id, HistoryKey from, HistoryKey to, int limit) {
+        Lock lock = lockFor(id).readLock();
+        lock.lock();
+        try {
+            List<HistoryEntry> result = new ArrayList<>(limit);
+            ColdHistory coldHistory = cold.find(id);
+            HistoryKey hotFrom = from;
+            if (coldHistory != null) {
+                for (Block block : overlapping(coldHistory, from, to)) {
+                    for (HistoryEntry entry : cold.read(block)) {
+                        if (inRange(entry.key(), from, to)) {
+                            if (result.size() == limit) {
+                                return result;
+                            }
+                            result.add(entry);
+                        }
+                    }
+                }
+                hotFrom = max(from, after(coldHistory.last()));
+            }
+            Iterator<HistoryEntry> entries = hot.iterateEntries(id, hotFrom, to);
+            while (entries.hasNext() && result.size() < limit) {
+                result.add(entries.next());
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks that may hold keys in [from, to), in ascending order
+    private static List<Block> overlapping(ColdHistory coldHistory, HistoryKey from, HistoryKey to) {
+        List<Block> blocks = new ArrayList<>();
+        for (Block block : coldHistory.blocks()) {
+            if ((from == null || block.last().compareTo(from) >= 0) && (to == null || block.first().compareTo(to) < 0)) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    private static boolean inRange(HistoryKey key, HistoryKey from, HistoryKey to) {
+        return (from == null || key.compareTo(from) >= 0) && (to == null || key.compareTo(to) < 0);
+    }
+
+    // Smallest key after the given one
+    private static HistoryKey after(HistoryKey key) {
+        return new HistoryKey(key.epochNanos(), key.sequence() + 1);
+    }
+
+    private static HistoryKey max(HistoryKey a, HistoryKey b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static HistoryKey min(HistoryKey a, HistoryKey b) {
+        return a == null ? b : b == null ? a : a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private ReentrantReadWriteLock lockFor(UUID id) {
+        int h = id.hashCode();
+        return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+}
@@ -1,27 +1,55 @@
 package com.example.bankingtransactions.repository;
 
+import com.example.bankingtransactions.model.HistoryKey;
 import com.example.bankingtransactions.model.Transaction;
-import org.springframework.stereotype.Repository;
-
-import java.util.*;
-
-@Repository
-public class TransactionRepository {
-
-    private final Map<UUID, List<Transaction>> transactionsMap = new HashMap<>();
-
-    public Transaction save(Transaction tm) {
-        transactionsMap.computeIfAbsent(tm.getToAccountId(), list -> new ArrayList<>()).add(tm);
-        transactionsMap.computeIfAbsent(tm.getFromAccountId(), list -> new ArrayList<>()).add(tm);
-        return tm;
-    }
-
-    public List<Transaction> findTransactionsByAccountId(UUID id) {
-        return transactionsMap.get(id);
-    }
-
-    public void deleteAll() {
-        transactionsMap.clear();
+import com.example.bankingtransactions.model.TransactionPage;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Transaction history of every account, ordered by timestamp. The storage layout is chosen with
+ * {@code banking.history.store}.
+ */
+public interface TransactionRepository {
+
+    /**
+     * Callers hold the account locks of the accounts involved, so history order matches the order in which
+     * balances were updated.
+     */
+    Transaction save(Transaction tm);
+
+    /**
+     * Saves transactions that did not go through the ledger, such as imported history, so no account locks are held.
+     */
+    default void saveAll(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            save(transaction);
+        }
     }
 
+    /**
+     * Returns a copy of the account's whole history, oldest first, or null if the account has no transactions.
+     */
+    List<Transaction> findTransactionsByAccountId(UUID id);
+
+    /**
+     * Returns up to {@code limit} transactions, newest first, with timestamps in {@code [from, to)} and older than
+     * {@code before}. Any bound may be null.
+     */
+    TransactionPage findPage(UUID id, HistoryKey from, HistoryKey to, HistoryKey before, int limit);
+
+    /**
+     * Iterates the account's transactions with timestamps in {@code [from, to)}, oldest first, without copying them.
+     * The iterator is weakly consistent: it never fails because of concurrent saves.
+     */
+    Iterator<Transaction> iterate(UUID id, HistoryKey from, HistoryKey to);
+
+    /**
+     * Number of transactions stored, each counted once however many accounts it belongs to.
+     */
+    long count();
+
+    void deleteAll();
 }
@@ -1,67 +1,192 @@
 package com.example.bankingtransactions.service;
 
+import com.example.bankingtransactions.audit.AuditEvent;
+import com.example.bankingtransactions.audit.AuditLog;
+import com.example.bankingtransactions.cluster.CrossShardTransfers;
+import com.example.bankingtransactions.cluster.ShardRouter;
 import com.example.bankingtransactions.dto.*;
+import com.example.bankingtransactions.engine.BalanceUpdate;
+import com.example.bankingtransactions.engine.LedgerEngine;
+import com.example.bankingtransactions.engine.LedgerOperations;
+import com.example.bankingtransactions.engine.TransferCommand;
+import com.example.bankingtransactions.enums.AuditEventType;
+import com.example.bankingtransactions.enums.BatchMode;
+import com.example.bankingtransactions.enums.ExportFormat;
+import com.example.bankingtransactions.enums.LedgerOperation;
+import com.example.bankingtransactions.enums.OperationOutcome;
 import com.example.bankingtransactions.enums.TransactionType;
 import com.example.bankingtransactions.exception.AccountNotFoundException;
 import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.exception.LedgerUnavailableException;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.exception.NodeUnavailableException;
 import com.example.bankingtransactions.exception.TransferException;
+import com.example.bankingtransactions.feed.BalanceFeed;
+import com.example.bankingtransactions.idempotency.IdempotencyCache;
+import com.example.bankingtransactions.journal.LedgerJournal;
+import com.example.bankingtransactions.metrics.LedgerMetrics;
 import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.AccountSummary;
+import com.example.bankingtransactions.model.BalanceCheckpoint;
+import com.example.bankingtransactions.model.HistoryKey;
 import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.model.TransactionPage;
 import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
 import com.example.bankingtransactions.repository.TransactionRepository;
+import com.example.bankingtransactions.util.HistoryCursor;
+import com.example.bankingtransactions.util.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AccountService {
 
+    public static final int DEFAULT_HISTORY_PAGE_SIZE = 50;
+    public static final int MAX_HISTORY_PAGE_SIZE = 1000;
+    // Exported rows are flushed to the client in chunks of this size
+    private static final int EXPORT_FLUSH_INTERVAL = 256;
+
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final LedgerJournal ledgerJournal;
+    private final LedgerEngine ledgerEngine;
+    private final ObjectMapper objectMapper;
+    private final LedgerMetrics ledgerMetrics;
+    private final IdempotencyCache idempotencyCache;
+    private final AccountSummaryRepository accountSummaryRepository;
+    private final ShardRouter shardRouter;
+    private final LedgerOperations ledgerOperations;
+    private final AuditLog auditLog;
+    private final BalanceFeed balanceFeed;
+    // Present in cluster mode
+    private final Optional<CrossShardTransfers> crossShardTransfers;
 
     public AccountDto createAccount(CreateAccountRequest request) {
-        if (request.getInitialBalance().scale() > 2) {
-            throw new TransferException("Input amount cannot have more than 2 decimal places");
-        }
+        return ledgerMetrics.record(LedgerOperation.CREATE_ACCOUNT, () -> openAccount(request));
+    }
+
+    private AccountDto openAccount(CreateAccountRequest request) {
+        long initialBalance = Money.toCents(request.getInitialBalance());
 
-        log.info("Creating account with initial balance: {}", roundMoney(request.getInitialBalance()));
         Account account = new Account();
-        account.setId(UUID.randomUUID());
+        account.setId(shardRouter.newAccountId());
         account.setName(request.getName());
-        account.setBalance(roundMoney(request.getInitialBalance()));
+        account.setBalance(initialBalance);
         account.setCreatedAt(LocalDateTime.now());
 
+        long journalOffset = ledgerJournal.appendAccount(account);
+        account.setJournalOffset(journalOffset);
+        accountSummaryRepository.open(account.getId(), initialBalance);
         Account savedAccount = accountRepository.save(account);
-        log.info("Account created successfully with ID: {}", savedAccount.getId());
+        ledgerJournal.awaitDurable(journalOffset);
+        auditLog.publish(AuditEvent.accountCreated(savedAccount));
         return mapToAccountDto(savedAccount, "Account created successfully");
     }
 
     public AccountDto getAccount(UUID accountId) {
-        log.info("Retrieving account with ID: {}", accountId);
+        return ledgerMetrics.record(LedgerOperation.GET_ACCOUNT, () -> findAccount(accountId));
+    }
+
+    private AccountDto findAccount(UUID accountId) {
+        log.debug("Retrieving account with ID: {}", accountId);
         Account account = accountRepository.findById(accountId)
                 .orElseThrow(() -> new AccountNotFoundException(accountId));
-        log.info("Account found: {}", accountId);
         return mapToAccountDto(account, "Account found");
     }
 
-    public TransactionDto transferFunds(TransferRequest transferRequest) {
-        UUID fromAccountId = transferRequest.getFromAccountId();
-        UUID toAccountId = transferRequest.getToAccountId();
-        BigDecimal amount = transferRequest.getAmount();
+    /**
+     * Returns the totals of an account's history, kept up to date as transactions are recorded rather than computed
+     * from the history.
+     */
+    public AccountSummaryDto getAccountSummary(UUID accountId) {
+        return ledgerMetrics.record(LedgerOperation.GET_SUMMARY, () -> findAccountSummary(accountId));
+    }
+
+    private AccountSummaryDto findAccountSummary(UUID accountId) {
+        log.debug("Retrieving summary for account with ID: {}", accountId);
+        accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException(accountId));
+        AccountSummary summary = accountSummaryRepository.findById(accountId)
+                .orElseGet(() -> new AccountSummary(accountId));
+        return new AccountSummaryDto(
+                accountId,
+                "Summary found",
+                "$" + Money.format(summary.getTotalDeposited()),
+                "$" + Money.format(summary.getTotalWithdrawn()),
+                "$" + Money.format(summary.getTotalTransferredIn()),
+                "$" + Money.format(summary.getTotalTransferredOut()),
+                summary.getTransactionCount(),
+                summary.getLastActivity()
+        );
+    }
 
-        if (amount.scale() > 2) {
-            throw new TransferException("Input amount cannot have more than 2 decimal places");
+    /**
+     * Returns the account's balance after every transaction up to and including {@code at}, or its current balance
+     * if {@code at} is null. The balance is derived from the history: the newest checkpoint at or before {@code at}
+     * plus the transactions between the two, so the cost does not grow with the length of the history.
+     */
+    public AccountBalanceDto getBalance(UUID accountId, LocalDateTime at) {
+        return ledgerMetrics.record(LedgerOperation.GET_BALANCE, () -> findBalance(accountId, at));
+    }
+
+    private AccountBalanceDto findBalance(UUID accountId, LocalDateTime at) {
+        log.debug("Retrieving balance of account {} at {}", accountId, at);
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException(accountId));
+        if (at == null) {
+            return new AccountBalanceDto(accountId, "Balance found", "$" + Money.format(account.getBalance()),
+                    LocalDateTime.now());
+        }
+        if (at.isBefore(account.getCreatedAt())) {
+            throw new InvalidRequestException("Account " + accountId + " was opened after " + at);
         }
+        HistoryKey upTo = HistoryKey.startOf(at.plusNanos(1));
+        BalanceCheckpoint checkpoint = accountSummaryRepository.findCheckpoint(accountId, upTo)
+                .orElseThrow(() -> new NodeUnavailableException("History of account " + accountId
+                        + " from before the last snapshot is still being restored"));
+        long balance = checkpoint.balance();
+        Iterator<Transaction> transactions = transactionRepository.iterate(accountId, checkpoint.from(), upTo);
+        while (transactions.hasNext()) {
+            Transaction transaction = transactions.next();
+            if (accountId.equals(transaction.getToAccountId())) {
+                balance += transaction.getAmount();
+            }
+            if (accountId.equals(transaction.getFromAccountId())) {
+                balance -= transaction.getAmount();
+            }
+        }
+        return new AccountBalanceDto(accountId, "Balance found", "$" + Money.format(balance), at);
+    }
 
-        log.info("Processing transfer of ${} from account {} to account {}", roundMoney(amount), fromAccountId, toAccountId);
+    public TransactionDto transferFunds(TransferRequest transferRequest) {
+        return ledgerMetrics.record(LedgerOperation.TRANSFER, () -> transfer(transferRequest));
+    }
+
+    public TransactionDto transferFunds(TransferRequest transferRequest, String idempotencyKey) {
+        return idempotencyCache.execute(idempotencyKey, LedgerOperation.TRANSFER, transferRequest,
+                () -> transferFunds(transferRequest));
+    }
+
+    private TransactionDto transfer(TransferRequest transferRequest) {
+        UUID fromAccountId = transferRequest.getFromAccountId();
+        UUID toAccountId = transferRequest.getToAccountId();
+        long amount = Money.toCents(transferRequest.getAmount());
 
         if (fromAccountId.equals(toAccountId)) {
             throw new TransferException("Transfer failed: Source and destination accounts are the same: " + fromAccountId);
@@ -69,139 +194,441 @@ public class AccountService {
 
         Account fromAccount = accountRepository.findById(fromAccountId)
                 .orElseThrow(() -> new AccountNotFoundException(fromAccountId));
+        if (!shardRouter.isLocal(toAccountId)) {
+            return transferToNode(fromAccount, toAccountId, amount, transferRequest.getDescription());
+        }
         Account toAccount = accountRepository.findById(toAccountId)
                 .orElseThrow(() -> new AccountNotFoundException(toAccountId));
 
-        if (!fromAccount.withdraw(amount)) {
-            throw new InsufficientFundsException(fromAccountId, amount);
-        }
+        BalanceUpdate result = await(ledgerEngine.transfer(fromAccount, toAccount, amount, transferRequest.getDescription()));
+        // Wait for durability after the update is applied, so other operations on the accounts are not held up
+        ledgerJournal.awaitDurable(result.journalOffset());
+        Transaction savedTransaction = result.transaction();
 
-        try {
-            toAccount.deposit(amount);
-        } catch (Exception e) {
-            // If the deposit fails, roll back the withdrawal
-            log.error("Deposit to account {} failed unexpectedly. Rolling back withdrawal from account {}",
-                    toAccountId, fromAccountId, e);
-            fromAccount.deposit(amount);
-            throw new TransferException("Failed to deposit funds into account " + toAccountId + ". Transfer cancelled.");
-        }
-
-        // Create transaction record after successful balance updates
-        Transaction transaction = new Transaction();
-        transaction.setId(UUID.randomUUID());
-        transaction.setFromAccountId(fromAccountId);
-        transaction.setToAccountId(toAccountId);
-        transaction.setAmount(roundMoney(amount));
-        transaction.setType(TransactionType.TRANSFER);
-        transaction.setDescription(transferRequest.getDescription());
-        transaction.setTimestamp(LocalDateTime.now());
-
-        Transaction savedTransaction = transactionRepository.save(transaction);
-
-        log.info("Transfer successful. Transaction ID: {}. New account balances: Account {}: {}, Account {}: {}",
-                savedTransaction.getId(),
-                fromAccountId,
-                roundMoney(fromAccount.getBalance()),
-                toAccountId,
-                roundMoney(toAccount.getBalance())
-        );
+        auditLog.publish(AuditEvent.of(AuditEventType.TRANSFER, savedTransaction, fromAccountId, result.newBalance()));
+        balanceFeed.publish(savedTransaction);
 
         return mapToTransactionDto(savedTransaction, "Transfer successful");
     }
 
-    public List<TransactionDto> getTransactionHistory(UUID accountId) {
-        log.info("Retrieving transaction history for account with ID: {}", accountId);
+    // Transfers to an account owned by another cluster node, which credits it in a second phase
+    private TransactionDto transferToNode(Account fromAccount, UUID toAccountId, long amount, String description) {
+        CrossShardTransfers.Result result = crossShardTransfers.orElseThrow()
+                .transfer(fromAccount, toAccountId, amount, description);
+        Transaction transaction = result.debit().transaction();
+        auditLog.publish(AuditEvent.of(result.credited() ? AuditEventType.TRANSFER : AuditEventType.TRANSFER_PENDING,
+                transaction, fromAccount.getId(), result.debit().newBalance()));
+        balanceFeed.publish(transaction);
+        return mapToTransactionDto(transaction, result.credited()
+                ? "Transfer successful"
+                : "Transfer debited. The destination account will be credited once its node is reachable");
+    }
+
+    /**
+     * Executes a batch of transfers. ALL_OR_NOTHING batches lock every account involved once and apply all of their
+     * transfers or none. BEST_EFFORT transfers are handed to the ledger engine together and succeed or fail
+     * individually, with independent transfers running in parallel.
+     */
+    public BatchTransferResponse transferBatch(BatchTransferRequest request) {
+        return ledgerMetrics.record(LedgerOperation.BATCH_TRANSFER, () -> executeBatch(request));
+    }
+
+    private BatchTransferResponse executeBatch(BatchTransferRequest request) {
+        List<TransferRequest> transfers = request.getTransfers();
+        BatchTransferResult[] results = new BatchTransferResult[transfers.size()];
+        List<BatchItem> items = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            try {
+                items.add(prepareBatchItem(i, transfers.get(i)));
+            } catch (TransferException | AccountNotFoundException e) {
+                results[i] = failedItem(i, e);
+            }
+        }
+
+        if (request.getMode() == BatchMode.ALL_OR_NOTHING) {
+            transferAllOrNothing(items, results);
+        } else {
+            transferBestEffort(items, results);
+        }
+
+        int succeeded = (int) Arrays.stream(results).filter(BatchTransferResult::isSuccess).count();
+        int failed = results.length - succeeded;
+        ledgerMetrics.countTransactions(TransactionType.TRANSFER, OperationOutcome.SUCCESS, succeeded);
+        String message = request.getMode() == BatchMode.ALL_OR_NOTHING && failed > 0
+                ? "Batch rolled back: no transfers were applied"
+                : "Batch processed: " + succeeded + " succeeded, " + failed + " failed";
+        return new BatchTransferResponse(message, request.getMode(), succeeded, failed, Arrays.asList(results));
+    }
+
+    /**
+     * Returns one page of an account's history, newest first, optionally limited to timestamps in [from, to).
+     */
+    public TransactionPageDto getTransactionHistory(UUID accountId, int limit, String cursor,
+                                                    LocalDateTime from, LocalDateTime to) {
+        return ledgerMetrics.record(LedgerOperation.GET_HISTORY, () -> findHistoryPage(accountId, limit, cursor, from, to));
+    }
+
+    private TransactionPageDto findHistoryPage(UUID accountId, int limit, String cursor,
+                                               LocalDateTime from, LocalDateTime to) {
+        log.debug("Retrieving transaction history for account with ID: {}", accountId);
+
+        if (limit < 1 || limit > MAX_HISTORY_PAGE_SIZE) {
+            throw new InvalidRequestException("Limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidRequestException("Start of time range must not be after its end");
+        }
 
         // Check account exists
         accountRepository.findById(accountId)
                 .orElseThrow(() -> new AccountNotFoundException(accountId));
 
-        List<Transaction> transactions = transactionRepository.findTransactionsByAccountId(accountId);
-        if (transactions == null) {
-            transactions = List.of();
+        TransactionPage page = transactionRepository.findPage(
+                accountId,
+                from == null ? null : HistoryKey.startOf(from),
+                to == null ? null : HistoryKey.startOf(to),
+                cursor == null ? null : HistoryCursor.decode(cursor),
+                limit
+        );
+
+        ledgerMetrics.recordHistoryPage(page.transactions().size());
+        List<TransactionDto> transactions = new ArrayList<>(page.transactions().size());
+        for (Transaction transaction : page.transactions()) {
+            transactions.add(mapToTransactionDto(transaction, null));
         }
+        return new TransactionPageDto(
+                "Found " + transactions.size() + " transactions",
+                transactions,
+                page.next() == null ? null : HistoryCursor.encode(page.next())
+        );
+    }
 
-        int transactionsCount = transactions.size();
-        log.info("Found {} transactions for account with ID: {}", transactions.size(), accountId);
-        return transactions.stream()
-                .map(transaction -> mapToTransactionDto(transaction, "Found " + transactionsCount + " transactions"))
-                .toList();
+    /**
+     * Returns a response body that streams an account's history, oldest first, as newline-delimited JSON or CSV.
+     * Transactions are read from the history index one at a time and flushed in small chunks, so memory stays flat
+     * and a slow client simply blocks the writer. Transactions recorded after the export starts are not included.
+     */
+    public StreamingResponseBody exportTransactionHistory(UUID accountId, String format,
+                                                          LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        ExportWriter writer;
+        try {
+            writer = openExport(accountId, format, from, to);
+        } catch (RuntimeException e) {
+            ledgerMetrics.recordExport(System.nanoTime() - start, 0, OperationOutcome.of(e));
+            throw e;
+        }
+        // Timed until the last row is written, since the export streams after this method returns
+        return out -> {
+            long written = 0;
+            OperationOutcome outcome = OperationOutcome.ERROR;
+            try {
+                written = writer.writeTo(out);
+                outcome = OperationOutcome.SUCCESS;
+            } finally {
+                ledgerMetrics.recordExport(System.nanoTime() - start, written, outcome);
+            }
+        };
     }
 
-    public TransactionDto depositFunds(DepositRequest depositRequest) {
-        UUID accountId = depositRequest.getToAccountId();
-        BigDecimal amount = depositRequest.getAmount();
+    private ExportWriter openExport(UUID accountId, String format, LocalDateTime from, LocalDateTime to) {
+        log.debug("Exporting transaction history for account with ID: {}", accountId);
 
-        if (amount.scale() > 2) {
-            throw new TransferException("Input amount cannot have more than 2 decimal places");
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unsupported export format: " + format);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (to == null || to.isAfter(now)) {
+            to = now;
+        }
+        if (from != null && from.isAfter(to)) {
+            throw new InvalidRequestException("Start of time range must not be after its end");
         }
 
-        log.info("Processing deposit of ${} into account {}", roundMoney(amount), accountId);
-        Account account = accountRepository.findById(accountId)
+        // Check account exists
+        accountRepository.findById(accountId)
                 .orElseThrow(() -> new AccountNotFoundException(accountId));
 
-        try {
-            account.deposit(amount);
-        } catch (Exception e) {
-            throw new TransferException("Failed to deposit funds into account " + accountId);
-        }
+        Iterator<Transaction> transactions = transactionRepository.iterate(
+                accountId,
+                from == null ? null : HistoryKey.startOf(from),
+                HistoryKey.startOf(to)
+        );
+        return exportFormat == ExportFormat.CSV
+                ? out -> writeCsv(transactions, out)
+                : out -> writeNdjson(transactions, out);
+    }
+
+    public TransactionDto depositFunds(DepositRequest depositRequest) {
+        return ledgerMetrics.record(LedgerOperation.DEPOSIT, () -> deposit(depositRequest));
+    }
+
+    public TransactionDto depositFunds(DepositRequest depositRequest, String idempotencyKey) {
+        return idempotencyCache.execute(idempotencyKey, LedgerOperation.DEPOSIT, depositRequest,
+                () -> depositFunds(depositRequest));
+    }
+
+    private TransactionDto deposit(DepositRequest depositRequest) {
+        UUID accountId = depositRequest.getToAccountId();
+        long amount = Money.toCents(depositRequest.getAmount());
 
-        // Create transaction record after successful balance update
-        Transaction transaction = new Transaction();
-        transaction.setId(UUID.randomUUID());
-        transaction.setToAccountId(accountId);
-        transaction.setAmount(roundMoney(amount));
-        transaction.setType(TransactionType.DEPOSIT);
-        transaction.setTimestamp(LocalDateTime.now());
+        Account account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException(accountId));
 
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        BalanceUpdate result = await(ledgerEngine.deposit(account, amount));
+        ledgerJournal.awaitDurable(result.journalOffset());
+        Transaction savedTransaction = result.transaction();
+        long newBalance = result.newBalance();
 
-        log.info("Deposit successful. Transaction ID: {}. New balance for account {}: {}",
-                savedTransaction.getId(), accountId, roundMoney(account.getBalance()));
+        auditLog.publish(AuditEvent.of(AuditEventType.DEPOSIT, savedTransaction, accountId, newBalance));
+        balanceFeed.publish(savedTransaction);
 
         return mapToTransactionDto(
                 savedTransaction,
-                "Deposit successful. New balance for account: " + roundMoney(account.getBalance())
+                "Deposit successful. New balance for account: " + Money.format(newBalance)
         );
     }
 
     public TransactionDto withdrawFunds(WithdrawRequest withdrawRequest) {
-        UUID accountId = withdrawRequest.getFromAccountId();
-        BigDecimal amount = withdrawRequest.getAmount();
+        return ledgerMetrics.record(LedgerOperation.WITHDRAW, () -> withdraw(withdrawRequest));
+    }
 
-        if (amount.scale() > 2) {
-            throw new TransferException("Input amount cannot have more than 2 decimal places");
-        }
+    public TransactionDto withdrawFunds(WithdrawRequest withdrawRequest, String idempotencyKey) {
+        return idempotencyCache.execute(idempotencyKey, LedgerOperation.WITHDRAW, withdrawRequest,
+                () -> withdrawFunds(withdrawRequest));
+    }
+
+    private TransactionDto withdraw(WithdrawRequest withdrawRequest) {
+        UUID accountId = withdrawRequest.getFromAccountId();
+        long amount = Money.toCents(withdrawRequest.getAmount());
 
-        log.info("Processing withdrawal of ${} from account {}", roundMoney(amount), accountId);
         Account account = accountRepository.findById(accountId)
                 .orElseThrow(() -> new AccountNotFoundException(accountId));
 
-        if (!account.withdraw(amount)) {
-            throw new InsufficientFundsException(accountId, amount);
-        }
-
-        // Create transaction record after successful balance update
-        Transaction transaction = new Transaction();
-        transaction.setId(UUID.randomUUID());
-        transaction.setFromAccountId(accountId);
-        transaction.setAmount(roundMoney(amount));
-        transaction.setType(TransactionType.WITHDRAWAL);
-        transaction.setTimestamp(LocalDateTime.now());
-
-        Transaction savedTransaction = transactionRepository.save(transaction);
+        BalanceUpdate result = await(ledgerEngine.withdraw(account, amount));
+        ledgerJournal.awaitDurable(result.journalOffset());
+        Transaction savedTransaction = result.transaction();
+        long newBalance = result.newBalance();
 
-        log.info("Withdrawal successful. Transaction ID: {}. New balance for account {}: {}",
-                savedTransaction.getId(), accountId, roundMoney(account.getBalance()));
+        auditLog.publish(AuditEvent.of(AuditEventType.WITHDRAWAL, savedTransaction, accountId, newBalance));
+        balanceFeed.publish(savedTransaction);
 
         return mapToTransactionDto(
                 savedTransaction,
-                "Withdrawal successful. New balance for account: " + roundMoney(account.getBalance())
+                "Withdrawal successful. New balance for account: " + Money.format(newBalance)
         );
     }
 
+    private BatchItem prepareBatchItem(int index, TransferRequest transfer) {
+        long amount = Money.toCents(transfer.getAmount());
+        if (transfer.getFromAccountId().equals(transfer.getToAccountId())) {
+            throw new TransferException("Transfer failed: Source and destination accounts are the same: " + transfer.getFromAccountId());
+        }
+        for (UUID accountId : List.of(transfer.getFromAccountId(), transfer.getToAccountId())) {
+            if (!shardRouter.isLocal(accountId)) {
+                throw new TransferException("Account " + accountId + " is on " + shardRouter.ownerOf(accountId)
+                        + ". Batch transfers must only involve accounts on the node that receives them.");
+            }
+        }
+        Account fromAccount = accountRepository.findById(transfer.getFromAccountId())
+                .orElseThrow(() -> new AccountNotFoundException(transfer.getFromAccountId()));
+        Account toAccount = accountRepository.findById(transfer.getToAccountId())
+                .orElseThrow(() -> new AccountNotFoundException(transfer.getToAccountId()));
+        return new BatchItem(index, fromAccount, toAccount, amount, transfer.getDescription());
+    }
+
+    private void transferAllOrNothing(List<BatchItem> items, BatchTransferResult[] results) {
+        if (items.size() < results.length) {
+            markNotExecuted(items, results);
+            return;
+        }
+        Set<UUID> accountIds = new HashSet<>();
+        for (BatchItem item : items) {
+            accountIds.add(item.from().getId());
+            accountIds.add(item.to().getId());
+        }
+
+        List<Transaction> transactions = new ArrayList<>(items.size());
+        // Balance each transfer left on its source, for the audit trail
+        long[] fromBalances = new long[items.size()];
+        long journalOffset = accountRepository.withAccountLocks(accountIds, () -> {
+            // Check every transfer against running balances before touching any account
+            Map<UUID, Long> balances = new HashMap<>();
+            for (BatchItem item : items) {
+                long fromBalance = balances.getOrDefault(item.from().getId(), item.from().getBalance());
+                long toBalance = balances.getOrDefault(item.to().getId(), item.to().getBalance());
+                if (fromBalance < item.amount()) {
+                    results[item.index()] = failedItem(item.index(),
+                            new InsufficientFundsException(item.from().getId(), item.amount()));
+                    return 0L;
+                }
+                if (toBalance > Long.MAX_VALUE - item.amount()) {
+                    results[item.index()] = failedItem(item.index(), new TransferException(
+                            "Failed to deposit funds into account " + item.to().getId() + ". Transfer cancelled."));
+                    return 0L;
+                }
+                balances.put(item.from().getId(), fromBalance - item.amount());
+                balances.put(item.to().getId(), toBalance + item.amount());
+            }
+
+            for (int i = 0; i < items.size(); i++) {
+                BatchItem item = items.get(i);
+                item.from().withdraw(item.amount());
+                item.to().deposit(item.amount());
+                fromBalances[i] = item.from().getBalance();
+                transactions.add(ledgerOperations.newTransferTransaction(item.from().getId(), item.to().getId(), item.amount(), item.description()));
+            }
+            long offset;
+            try {
+                offset = ledgerJournal.appendTransactions(transactions);
+            } catch (RuntimeException e) {
+                log.error("Failed to write batch of {} transfers to the journal. Rolling back balance changes", items.size(), e);
+                for (int i = items.size() - 1; i >= 0; i--) {
+                    items.get(i).to().withdraw(items.get(i).amount());
+                    items.get(i).from().deposit(items.get(i).amount());
+                }
+                throw new LedgerUnavailableException("Failed to record batch. No transfers were applied.");
+            }
+            for (BatchItem item : items) {
+                item.from().setJournalOffset(offset);
+                item.to().setJournalOffset(offset);
+            }
+            ledgerOperations.recordAll(transactions);
+            return offset;
+        });
+
+        if (transactions.isEmpty()) {
+            markNotExecuted(items, results);
+            return;
+        }
+        ledgerJournal.awaitDurable(journalOffset);
+        for (int i = 0; i < items.size(); i++) {
+            int index = items.get(i).index();
+            results[index] = new BatchTransferResult(index, true,
+                    mapToTransactionDto(transactions.get(i), "Transfer successful"), null);
+            auditLog.publish(AuditEvent.of(AuditEventType.TRANSFER, transactions.get(i), items.get(i).from().getId(),
+                    fromBalances[i]));
+            balanceFeed.publish(transactions.get(i));
+        }
+    }
+
+    private void transferBestEffort(List<BatchItem> items, BatchTransferResult[] results) {
+        List<TransferCommand> transfers = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            transfers.add(new TransferCommand(item.from(), item.to(), item.amount(), item.description()));
+        }
+        List<CompletableFuture<BalanceUpdate>> futures = ledgerEngine.transferAll(transfers);
+        long journalOffset = 0;
+        List<Transaction> transactions = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            int index = items.get(i).index();
+            try {
+                BalanceUpdate update = await(futures.get(i));
+                journalOffset = Math.max(journalOffset, update.journalOffset());
+                transactions.add(update.transaction());
+                results[index] = new BatchTransferResult(index, true,
+                        mapToTransactionDto(update.transaction(), "Transfer successful"), null);
+                auditLog.publish(AuditEvent.of(AuditEventType.TRANSFER, update.transaction(),
+                        items.get(i).from().getId(), update.newBalance()));
+            } catch (InsufficientFundsException | TransferException | LedgerUnavailableException e) {
+                results[index] = failedItem(index, e);
+            }
+        }
+        ledgerJournal.awaitDurable(journalOffset);
+        transactions.forEach(balanceFeed::publish);
+    }
+
+    private void markNotExecuted(List<BatchItem> items, BatchTransferResult[] results) {
+        for (BatchItem item : items) {
+            if (results[item.index()] == null) {
+                results[item.index()] = new BatchTransferResult(item.index(), false, null,
+                        "Not executed: another transfer in the batch failed");
+                ledgerMetrics.countTransactions(TransactionType.TRANSFER, OperationOutcome.REJECTED, 1);
+            }
+        }
+    }
+
+    private BatchTransferResult failedItem(int index, RuntimeException failure) {
+        ledgerMetrics.countTransactions(TransactionType.TRANSFER, OperationOutcome.of(failure), 1);
+        return new BatchTransferResult(index, false, null, failure.getMessage());
+    }
+
+    /**
+     * Waits for the ledger engine, rethrowing business failures as they were raised.
+     */
+    private static BalanceUpdate await(CompletableFuture<BalanceUpdate> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private long writeNdjson(Iterator<Transaction> transactions, OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(TransactionDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Records are separated by newlines rather than Jackson's default space
+            generator.setRootValueSeparator(null);
+            long written = 0;
+            while (transactions.hasNext()) {
+                writer.writeValue(generator, mapToTransactionDto(transactions.next(), null));
+                generator.writeRaw('\n');
+                if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+            return written;
+        }
+    }
+
+    private long writeCsv(Iterator<Transaction> transactions, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        writer.write("id,fromAccountId,toAccountId,amount,type,description,timestamp\n");
+        long written = 0;
+        while (transactions.hasNext()) {
+            Transaction transaction = transactions.next();
+            writer.write(transaction.getId().toString());
+            writer.write(',');
+            writer.write(transaction.getFromAccountId() == null ? "" : transaction.getFromAccountId().toString());
+            writer.write(',');
+            writer.write(transaction.getToAccountId() == null ? "" : transaction.getToAccountId().toString());
+            writer.write(',');
+            writer.write(Money.format(transaction.getAmount()));
+            writer.write(',');
+            writer.write(transaction.getType().name());
+            writer.write(',');
+            writer.write(escapeCsv(transaction.getDescription()));
+            writer.write(',');
+            writer.write(transaction.getTimestamp().toString());
+            writer.write('\n');
+            if (++written % EXPORT_FLUSH_INTERVAL == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return written;
+    }
+
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
     private AccountDto mapToAccountDto(Account account, String message) {
-        return new AccountDto(account.getId(), message, account.getName(), "$" + account.getBalance(), account.getCreatedAt());
+        return new AccountDto(account.getId(), message, account.getName(), "$" + Money.format(account.getBalance()), account.getCreatedAt());
     }
 
     private TransactionDto mapToTransactionDto(Transaction transaction, String message) {
@@ -210,18 +637,24 @@ public class AccountService {
                 message,
                 transaction.getFromAccountId(),
                 transaction.getToAccountId(),
-                "$" + transaction.getAmount(),
+                "$" + Money.format(transaction.getAmount()),
                 transaction.getType(),
                 transaction.getDescription(),
                 transaction.getTimestamp()
         );
     }
 
-    public static BigDecimal roundMoney(BigDecimal value) {
-        if (value == null) {
-            return BigDecimal.ZERO;
-        }
-        return value.setScale(2, RoundingMode.HALF_EVEN);
+    /**
+     * Writes an export to the response and returns the number of transactions written
+     */
+    private interface ExportWriter {
+        long writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * A validated transfer from a batch, with its position in the request
+     */
+    private record BatchItem(int index, Account from, Account to, long amount, String description) {
     }
 
 }
@@ -0,0 +1,36 @@
+package com.example.bankingtransactions.util;
+
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.model.HistoryKey;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque pagination cursors for transaction history. A cursor encodes the history key of the last transaction
+ * returned, so the next page starts strictly after it.
+ */
+public final class HistoryCursor {
+
+    private HistoryCursor() {
+    }
+
+    public static String encode(HistoryKey key) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(key.epochNanos()).putLong(key.sequence());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static HistoryKey decode(String cursor) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != 16) {
+                throw new InvalidRequestException("Invalid cursor: " + cursor);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new HistoryKey(buffer.getLong(), buffer.getLong());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor: " + cursor);
+        }
+    }
+}
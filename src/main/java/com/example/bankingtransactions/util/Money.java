@@ -0,0 +1,53 @@
+package com.example.bankingtransactions.util;
+
+import com.example.bankingtransactions.exception.TransferException;
+
+import java.math.BigDecimal;
+
+/**
+ * Money is held internally as a long number of cents. BigDecimal is only used at the DTO boundary,
+ * when parsing requests and rendering responses.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * Converts a request amount to cents, validating its scale and range.
+     */
+    public static long toCents(BigDecimal amount) {
+        if (amount.scale() > SCALE) {
+            throw new TransferException("Input amount cannot have more than 2 decimal places");
+        }
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new TransferException("Input amount is out of range: " + amount.toPlainString());
+        }
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    /**
+     * Renders cents as a plain decimal string with two decimal places, e.g. 100050 -> "1000.50"
+     */
+    public static String format(long cents) {
+        StringBuilder sb = new StringBuilder(24);
+        if (cents < 0) {
+            sb.append('-');
+        }
+        // Math.abs(Long.MIN_VALUE) overflows, so split before taking the absolute value
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        sb.append(units).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankingtransactions.admission;
+
+import com.example.bankingtransactions.config.AdmissionProperties;
+import com.example.bankingtransactions.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionControlTest {
+
+    private static final UUID ACCOUNT = UUID.randomUUID();
+    private static final UUID OTHER_ACCOUNT = UUID.randomUUID();
+
+    @Test
+    void busyAccountIsRejectedWhileOthersAreAdmitted() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxInFlightPerAccount(2);
+        AdmissionControl admission = new AdmissionControl(properties, new SimpleMeterRegistry());
+
+        admission.admit(List.of(ACCOUNT), () -> admission.admit(List.of(ACCOUNT, ACCOUNT), () -> {
+            assertThatThrownBy(() -> admission.admit(List.of(OTHER_ACCOUNT, ACCOUNT), () -> true))
+                    .isInstanceOf(TooManyRequestsException.class);
+            assertThat(admission.admit(List.of(OTHER_ACCOUNT), () -> true)).isTrue();
+            return true;
+        }));
+        // Everything was released, including the other account's count taken by the rejected request
+        admission.admit(List.of(ACCOUNT), () -> admission.admit(List.of(ACCOUNT), () -> true));
+        admission.admit(List.of(OTHER_ACCOUNT), () -> admission.admit(List.of(OTHER_ACCOUNT), () -> true));
+    }
+
+    @Test
+    void requestsBeyondTheOverallLimitAreRejected() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setInitialLimit(2);
+        properties.setMinLimit(2);
+        properties.setMaxLimit(2);
+        AdmissionControl admission = new AdmissionControl(properties, new SimpleMeterRegistry());
+
+        admission.admit(List.of(), () -> admission.admitBatch(List.of(ACCOUNT), () -> {
+            assertThatThrownBy(() -> admission.admit(List.of(OTHER_ACCOUNT), () -> true))
+                    .isInstanceOf(TooManyRequestsException.class);
+            return true;
+        }));
+        assertThat(admission.admit(List.of(OTHER_ACCOUNT), () -> true)).isTrue();
+    }
+
+    @Test
+    void failedOperationReleasesItsPlace() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxInFlightPerAccount(1);
+        AdmissionControl admission = new AdmissionControl(properties, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> admission.admit(List.of(ACCOUNT), () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(admission.admit(List.of(ACCOUNT), () -> true)).isTrue();
+    }
+
+    @Test
+    void disabledAdmissionRunsEverything() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setEnabled(false);
+        properties.setMaxInFlightPerAccount(1);
+        AdmissionControl admission = new AdmissionControl(properties, new SimpleMeterRegistry());
+
+        assertThat(admission.admit(List.of(ACCOUNT), () -> admission.admit(List.of(ACCOUNT), () -> true))).isTrue();
+    }
+
+    @Test
+    void limitFallsWhenLatencyRisesThenAdaptsToTheNewLatency() {
+        AdaptiveLimit limit = new AdaptiveLimit(100, 10, 1000, 2.0, 0);
+        for (int i = 0; i < 20; i++) {
+            runWindow(limit, 60, 1_000_000);
+        }
+        int settled = limit.getLimit();
+        assertThat(settled).isGreaterThan(100);
+
+        for (int i = 0; i < 2; i++) {
+            runWindow(limit, 60, 20_000_000);
+        }
+        int overloaded = limit.getLimit();
+        assertThat(overloaded).isLessThan(settled * 3 / 4).isGreaterThanOrEqualTo(10);
+
+        // Once the long-run average catches up, the limit probes upwards again
+        for (int i = 0; i < 40; i++) {
+            runWindow(limit, limit.getLimit() / 2 + 1, 20_000_000);
+        }
+        assertThat(limit.getLimit()).isGreaterThan(settled);
+    }
+
+    @Test
+    void limitDoesNotRiseWhileMostlyUnused() {
+        AdaptiveLimit limit = new AdaptiveLimit(100, 10, 1000, 2.0, 0);
+        for (int i = 0; i < 20; i++) {
+            runWindow(limit, 10, 1_000_000);
+        }
+        assertThat(limit.getLimit()).isEqualTo(100);
+    }
+
+    // Starts the given number of requests at once and ends them with the given latency
+    private static void runWindow(AdaptiveLimit limit, int requests, long latencyNanos) {
+        int acquired = 0;
+        while (acquired < requests && limit.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limit.release(latencyNanos);
+        }
+        assertThat(limit.getInFlight()).isZero();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.bankingtransactions.cluster;
+
+import com.example.bankingtransactions.BankingApp;
+import com.example.bankingtransactions.dto.CreateAccountRequest;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.engine.LedgerOperations;
+import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.exception.InvalidRequestException;
+import com.example.bankingtransactions.model.AccountSummary;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import com.example.bankingtransactions.service.AccountService;
+import com.example.bankingtransactions.util.Money;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Two cluster nodes in one JVM, transferring money to each other's accounts.
+ */
+class CrossShardTransfersTest {
+
+    private static final String SECRET = "cross-shard-test-secret";
+    private static final int ACCOUNTS_PER_NODE = 4;
+    private static final long INITIAL_BALANCE = 1_000_00;
+
+    private static Node first;
+    private static Node second;
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        int[] ports = freePorts(4);
+        String nodes = "http://localhost:" + ports[0] + ",http://localhost:" + ports[1];
+        String internalNodes = "http://localhost:" + ports[2] + ",http://localhost:" + ports[3];
+        first = new Node(start(ports[0], nodes, internalNodes));
+        second = new Node(start(ports[1], nodes, internalNodes));
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        first.context.close();
+        second.context.close();
+    }
+
+    @Test
+    void concurrentTransfersBetweenNodesConserveMoney() throws Exception {
+        List<UUID> firstAccounts = first.createAccounts();
+        List<UUID> secondAccounts = second.createAccounts();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                SplittableRandom random = new SplittableRandom(t);
+                boolean fromFirst = t % 2 == 0;
+                workers.add(executor.submit(() -> {
+                    Node from = fromFirst ? first : second;
+                    List<UUID> sources = fromFirst ? firstAccounts : secondAccounts;
+                    List<UUID> destinations = fromFirst ? secondAccounts : firstAccounts;
+                    for (int i = 0; i < 100; i++) {
+                        try {
+                            from.accountService.transferFunds(transfer(sources.get(random.nextInt(sources.size())),
+                                    destinations.get(random.nextInt(destinations.size())),
+                                    1 + random.nextLong(100_00)));
+                        } catch (InsufficientFundsException e) {
+                            // Expected once balances run low
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(first.ledgerOperations.pendingCredits()).isEmpty();
+        assertThat(second.ledgerOperations.pendingCredits()).isEmpty();
+        assertThat(first.total(firstAccounts) + second.total(secondAccounts))
+                .isEqualTo(2 * ACCOUNTS_PER_NODE * INITIAL_BALANCE);
+        first.checkHistories(firstAccounts);
+        second.checkHistories(secondAccounts);
+    }
+
+    @Test
+    void repeatedCommitCreditsOnce() throws Exception {
+        UUID source = first.createAccounts().get(0);
+        UUID destination = second.createAccounts().get(0);
+        first.accountService.transferFunds(transfer(source, destination, 10_00));
+        Transaction transaction = first.transactionRepository.findTransactionsByAccountId(source).get(0);
+        long balance = second.balanceOf(destination);
+
+        String sender = first.shardRouter.getSelf();
+        CompletableFuture<Void> retry = CompletableFuture.runAsync(() ->
+                second.crossShardTransfers.commit(sender, transaction));
+        second.crossShardTransfers.commit(sender, transaction);
+        retry.get();
+
+        assertThat(second.balanceOf(destination)).isEqualTo(balance);
+    }
+
+    @Test
+    void repeatedCompletionRecordsOnce() {
+        UUID source = first.createAccounts().get(0);
+        UUID destination = second.createAccounts().get(0);
+        first.accountService.transferFunds(transfer(source, destination, 10_00));
+        Transaction transaction = first.transactionRepository.findTransactionsByAccountId(source).get(0);
+
+        first.ledgerOperations.completeRemoteCredit(transaction);
+
+        assertThat(first.transactionRepository.findTransactionsByAccountId(source)).hasSize(1);
+        assertThat(first.balanceOf(source)).isEqualTo(INITIAL_BALANCE - 10_00);
+    }
+
+    @Test
+    void commitFromANodeNotOwningTheSourceIsRejected() {
+        UUID source = first.createAccounts().get(0);
+        UUID destination = second.createAccounts().get(0);
+        Transaction transaction = first.ledgerOperations.newTransferTransaction(source, destination, 10_00, null);
+
+        assertThatThrownBy(() -> second.crossShardTransfers.commit(second.shardRouter.getSelf(), transaction))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThat(second.balanceOf(destination)).isEqualTo(INITIAL_BALANCE);
+    }
+
+    @Test
+    void clusterEndpointsAreOnlyServedToNodesWithTheSecret() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        String internal = second.shardRouter.internalUrlOf(second.shardRouter.getSelf());
+        String commit = ClusterClient.COMMIT_PATH;
+
+        assertThat(post(http, second.shardRouter.getSelf() + commit, SECRET).statusCode()).isEqualTo(404);
+        assertThat(post(http, internal + commit, null).statusCode()).isEqualTo(401);
+        assertThat(post(http, internal + commit, "wrong").statusCode()).isEqualTo(401);
+        assertThat(post(http, internal + "/api/accounts", SECRET).statusCode()).isEqualTo(404);
+    }
+
+    private static HttpResponse<String> post(HttpClient http, String url, String secret) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .header(ClusterClient.FORWARDED_HEADER, first.shardRouter.getSelf())
+                .POST(HttpRequest.BodyPublishers.ofString("{}"));
+        if (secret != null) {
+            request.header(ClusterClient.SECRET_HEADER, secret);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static ConfigurableApplicationContext start(int port, String nodes, String internalNodes) {
+        return new SpringApplicationBuilder(BankingApp.class).run(
+                "--server.port=" + port,
+                "--banking.cluster.enabled=true",
+                "--banking.cluster.self=http://localhost:" + port,
+                "--banking.cluster.nodes=" + nodes,
+                "--banking.cluster.internal-nodes=" + internalNodes,
+                "--banking.cluster.secret=" + SECRET,
+                "--banking.cluster.retry-interval-ms=100",
+                "--banking.audit.enabled=false");
+    }
+
+    private static int[] freePorts(int count) throws IOException {
+        int[] ports = new int[count];
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocket socket = new ServerSocket(0);
+                sockets.add(socket);
+                ports[i] = socket.getLocalPort();
+            }
+        } finally {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+        return ports;
+    }
+
+    private static TransferRequest transfer(UUID from, UUID to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountId(from);
+        request.setToAccountId(to);
+        request.setAmount(Money.toBigDecimal(amount));
+        request.setDescription("cross-shard test");
+        return request;
+    }
+
+    private static final class Node {
+
+        private final ConfigurableApplicationContext context;
+        private final AccountService accountService;
+        private final AccountRepository accountRepository;
+        private final TransactionRepository transactionRepository;
+        private final AccountSummaryRepository accountSummaryRepository;
+        private final LedgerOperations ledgerOperations;
+        private final ShardRouter shardRouter;
+        private final CrossShardTransfers crossShardTransfers;
+
+        private Node(ConfigurableApplicationContext context) {
+            this.context = context;
+            this.accountService = context.getBean(AccountService.class);
+            this.accountRepository = context.getBean(AccountRepository.class);
+            this.transactionRepository = context.getBean(TransactionRepository.class);
+            this.accountSummaryRepository = context.getBean(AccountSummaryRepository.class);
+            this.ledgerOperations = context.getBean(LedgerOperations.class);
+            this.shardRouter = context.getBean(ShardRouter.class);
+            this.crossShardTransfers = context.getBean(CrossShardTransfers.class);
+        }
+
+        private List<UUID> createAccounts() {
+            List<UUID> accountIds = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS_PER_NODE; i++) {
+                CreateAccountRequest request = new CreateAccountRequest();
+                request.setName("account-" + i);
+                request.setInitialBalance(Money.toBigDecimal(INITIAL_BALANCE));
+                UUID accountId = accountService.createAccount(request).getId();
+                assertThat(shardRouter.isLocal(accountId)).isTrue();
+                accountIds.add(accountId);
+            }
+            return accountIds;
+        }
+
+        private long balanceOf(UUID accountId) {
+            return accountRepository.findById(accountId).orElseThrow().getBalance();
+        }
+
+        private long total(List<UUID> accountIds) {
+            return accountIds.stream().mapToLong(this::balanceOf).sum();
+        }
+
+        // Each account's balance agrees with its history and summary on this node, debits and credits alike
+        private void checkHistories(List<UUID> accountIds) {
+            for (UUID accountId : accountIds) {
+                long change = 0;
+                List<Transaction> history = transactionRepository.findTransactionsByAccountId(accountId);
+                for (Transaction transaction : history) {
+                    change += accountId.equals(transaction.getToAccountId())
+                            ? transaction.getAmount() : -transaction.getAmount();
+                }
+                AccountSummary summary = accountSummaryRepository.findById(accountId).orElseThrow();
+                assertThat(balanceOf(accountId) - INITIAL_BALANCE).as("change in balance of %s", accountId)
+                        .isEqualTo(change)
+                        .isEqualTo(summary.getTotalTransferredIn() - summary.getTotalTransferredOut());
+                assertThat(summary.getTransactionCount()).as("transactions of %s", accountId)
+                        .isEqualTo(history.size());
+            }
+        }
+    }
+}
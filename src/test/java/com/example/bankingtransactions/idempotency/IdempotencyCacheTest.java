@@ -0,0 +1,147 @@
+package com.example.bankingtransactions.idempotency;
+
+import com.example.bankingtransactions.config.IdempotencyProperties;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.enums.LedgerOperation;
+import com.example.bankingtransactions.exception.IdempotencyKeyReusedException;
+import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.exception.LedgerUnavailableException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest {
+
+    private static final UUID FROM = UUID.randomUUID();
+    private static final UUID TO = UUID.randomUUID();
+
+    private final IdempotencyCache cache = newCache(new IdempotencyProperties());
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    void retryReplaysTheOriginalResult() {
+        String first = cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+        String retried = cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+
+        assertThat(retried).isEqualTo(first);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void amountsAreComparedByValue() {
+        cache.execute("key", LedgerOperation.TRANSFER, transfer("10.0"), this::run);
+        cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+        cache.execute("key", LedgerOperation.TRANSFER, transfer("10"), this::run);
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void keyCannotBeReusedForADifferentRequest() {
+        cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+
+        assertThatThrownBy(() -> cache.execute("key", LedgerOperation.TRANSFER, transfer("11.00"), this::run))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThatThrownBy(() -> cache.execute("key", LedgerOperation.DEPOSIT, transfer("10.00"), this::run))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void rejectedRequestIsReplayedWithTheSameError() {
+        InsufficientFundsException rejection = new InsufficientFundsException(FROM, 10_00);
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), () -> {
+                runs.incrementAndGet();
+                throw rejection;
+            })).isSameAs(rejection);
+        }
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void failureOfTheLedgerIsNotRemembered() {
+        assertThatThrownBy(() -> cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), () -> {
+            runs.incrementAndGet();
+            throw new LedgerUnavailableException("Journal write failed");
+        })).isInstanceOf(LedgerUnavailableException.class);
+
+        cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void retryWhileTheOriginalRunsWaitsForItsResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> original = CompletableFuture.supplyAsync(() ->
+                cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), () -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    return run();
+                }));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> retry = CompletableFuture.supplyAsync(() ->
+                cache.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), this::run));
+
+        Thread.sleep(100);
+        assertThat(retry).isNotDone();
+        release.countDown();
+        assertThat(retry.get(10, TimeUnit.SECONDS)).isEqualTo(original.get(10, TimeUnit.SECONDS));
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void expiredKeyRunsAgain() throws InterruptedException {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setTtlMs(20);
+        IdempotencyCache expiring = newCache(properties);
+
+        expiring.execute("key", LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+        Thread.sleep(50);
+        expiring.execute("key", LedgerOperation.TRANSFER, transfer("11.00"), this::run);
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void withoutAKeyEveryRequestRuns() {
+        cache.execute(null, LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+        cache.execute(null, LedgerOperation.TRANSFER, transfer("10.00"), this::run);
+        assertThat(runs).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    private String run() {
+        return "result-" + runs.incrementAndGet();
+    }
+
+    private static IdempotencyCache newCache(IdempotencyProperties properties) {
+        return new IdempotencyCache(properties, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    private static TransferRequest transfer(String amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountId(FROM);
+        request.setToAccountId(TO);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.BankingApp;
+import com.example.bankingtransactions.dto.BatchTransferRequest;
+import com.example.bankingtransactions.dto.CreateAccountRequest;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.enums.BatchMode;
+import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.model.AccountSummary;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import com.example.bankingtransactions.service.AccountService;
+import com.example.bankingtransactions.util.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Crashes a node by copying its data directory while it is still running, after concurrent transfers and a snapshot
+ * taken in the middle of them, with a torn record after the last one written. The node restarted from the copy must
+ * have the same balances, history and summaries, and must keep appending after the discarded record.
+ */
+class JournalCrashRecoveryTest {
+
+    // Small enough for the journal to span several segments
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int ACCOUNTS = 8;
+    private static final long INITIAL_BALANCE = 500_00;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 300;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void restartAfterCrashRestoresLedger() throws Exception {
+        Path crashed = tempDir.resolve("crashed");
+        Ledger before;
+        List<UUID> accountIds = new ArrayList<>();
+        try (ConfigurableApplicationContext running = start(tempDir.resolve("running"))) {
+            AccountService accountService = running.getBean(AccountService.class);
+            for (int i = 0; i < ACCOUNTS; i++) {
+                CreateAccountRequest request = new CreateAccountRequest();
+                request.setName("account-" + i);
+                request.setInitialBalance(Money.toBigDecimal(INITIAL_BALANCE));
+                accountIds.add(accountService.createAccount(request).getId());
+            }
+            runTransfers(accountService, accountIds, () -> running.getBean(BalanceSnapshotter.class).snapshot());
+
+            before = Ledger.of(running, accountIds);
+            copyDirectory(tempDir.resolve("running"), crashed);
+            tearTail(crashed.resolve("journal"), running.getBean(MappedLedgerJournal.class).getWrittenOffset());
+        }
+        assertThat(Files.list(crashed.resolve("snapshots")).count()).isPositive();
+
+        TransferRequest transfer = transfer(accountIds.get(0), accountIds.get(1), 1_00);
+        try (ConfigurableApplicationContext recovered = start(crashed)) {
+            awaitHistory(recovered);
+            assertThat(Ledger.of(recovered, accountIds)).isEqualTo(before);
+            recovered.getBean(AccountService.class).transferFunds(transfer);
+        }
+
+        try (ConfigurableApplicationContext restarted = start(crashed)) {
+            awaitHistory(restarted);
+            AccountRepository accountRepository = restarted.getBean(AccountRepository.class);
+            assertThat(accountRepository.findById(accountIds.get(0)).orElseThrow().getBalance())
+                    .isEqualTo(before.balances().get(accountIds.get(0)) - 1_00);
+            assertThat(accountRepository.findById(accountIds.get(1)).orElseThrow().getBalance())
+                    .isEqualTo(before.balances().get(accountIds.get(1)) + 1_00);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Path dataDirectory) {
+        return new SpringApplicationBuilder(BankingApp.class)
+                .web(WebApplicationType.NONE)
+                .run("--banking.journal.enabled=true",
+                        "--banking.journal.directory=" + dataDirectory.resolve("journal"),
+                        "--banking.journal.segment-size=" + SEGMENT_SIZE,
+                        "--banking.snapshot.directory=" + dataDirectory.resolve("snapshots"),
+                        "--banking.snapshot.interval-ms=3600000",
+                        "--banking.audit.enabled=false");
+    }
+
+    // Transfers single and batched on several threads, taking a snapshot halfway through
+    private static void runTransfers(AccountService accountService, List<UUID> accountIds, Runnable snapshot)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger done = new AtomicInteger();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                SplittableRandom random = new SplittableRandom(t);
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++, done.incrementAndGet()) {
+                        try {
+                            if (i % 10 == 0) {
+                                BatchTransferRequest batch = new BatchTransferRequest();
+                                batch.setMode(BatchMode.BEST_EFFORT);
+                                batch.setTransfers(List.of(randomTransfer(random, accountIds),
+                                        randomTransfer(random, accountIds)));
+                                accountService.transferBatch(batch);
+                            } else {
+                                accountService.transferFunds(randomTransfer(random, accountIds));
+                            }
+                        } catch (InsufficientFundsException e) {
+                            // Expected once balances run low
+                        }
+                    }
+                }));
+            }
+            while (done.get() < THREADS * TRANSFERS_PER_THREAD / 2) {
+                Thread.sleep(1);
+            }
+            snapshot.run();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TransferRequest randomTransfer(SplittableRandom random, List<UUID> accountIds) {
+        int from = random.nextInt(accountIds.size());
+        int to = random.nextInt(accountIds.size() - 1);
+        return transfer(accountIds.get(from), accountIds.get(to >= from ? to + 1 : to), 1 + random.nextLong(50_00));
+    }
+
+    private static TransferRequest transfer(UUID from, UUID to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountId(from);
+        request.setToAccountId(to);
+        request.setAmount(Money.toBigDecimal(amount));
+        request.setDescription("recovery test");
+        return request;
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.toList()) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy);
+                }
+            }
+        }
+    }
+
+    // Writes the start of a record that never finished, with a length that fits and a checksum that cannot match
+    private static void tearTail(Path journalDirectory, long writtenOffset) throws IOException {
+        long base = writtenOffset - writtenOffset % SEGMENT_SIZE;
+        Path segment = journalDirectory.resolve(String.format("%020d.segment", base));
+        ByteBuffer torn = ByteBuffer.allocate(32);
+        torn.putInt(JournalRecord.HEADER_SIZE + 100).putInt(0x5eed).put((byte) 1);
+        torn.clear();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(torn, writtenOffset - base);
+        }
+    }
+
+    private static void awaitHistory(ConfigurableApplicationContext context) throws InterruptedException {
+        JournalRecovery recovery = context.getBean(JournalRecovery.class);
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (!recovery.isHistoryComplete() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(recovery.isHistoryComplete()).isTrue();
+    }
+
+    /**
+     * What a node knows about the accounts: balances, the ids of the transactions in each account's history and
+     * each account's summary totals.
+     */
+    private record Ledger(Map<UUID, Long> balances, Map<UUID, Set<UUID>> histories, Map<UUID, List<Long>> summaries) {
+
+        static Ledger of(ConfigurableApplicationContext context, List<UUID> accountIds) {
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+            TransactionRepository transactionRepository = context.getBean(TransactionRepository.class);
+            AccountSummaryRepository accountSummaryRepository = context.getBean(AccountSummaryRepository.class);
+            Map<UUID, Long> balances = new HashMap<>();
+            Map<UUID, Set<UUID>> histories = new HashMap<>();
+            Map<UUID, List<Long>> summaries = new HashMap<>();
+            for (UUID accountId : accountIds) {
+                balances.put(accountId, accountRepository.findById(accountId).orElseThrow().getBalance());
+                Set<UUID> history = new HashSet<>();
+                for (Transaction transaction : transactionRepository.findTransactionsByAccountId(accountId)) {
+                    history.add(transaction.getId());
+                }
+                histories.put(accountId, history);
+                AccountSummary summary = accountSummaryRepository.findById(accountId).orElseThrow();
+                summaries.put(accountId, List.of(summary.getTotalTransferredIn(), summary.getTotalTransferredOut(),
+                        summary.getTransactionCount()));
+            }
+            return new Ledger(balances, histories, summaries);
+        }
+    }
+}
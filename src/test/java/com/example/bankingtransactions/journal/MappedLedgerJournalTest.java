@@ -0,0 +1,63 @@
+package com.example.bankingtransactions.journal;
+
+import com.example.bankingtransactions.config.JournalProperties;
+import com.example.bankingtransactions.enums.FsyncPolicy;
+import com.example.bankingtransactions.exception.LedgerUnavailableException;
+import com.example.bankingtransactions.model.Account;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedLedgerJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void groupCommitWaitsForTheNextFlush() throws Exception {
+        MappedLedgerJournal journal = open(5, 5_000);
+        try {
+            long offset = journal.appendAccount(newAccount());
+            journal.awaitDurable(offset);
+            assertThat(journal.getWrittenOffset()).isEqualTo(offset);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void waitForAFlushThatNeverComesTimesOut() throws Exception {
+        MappedLedgerJournal journal = open(3_600_000, 100);
+        try {
+            long offset = journal.appendAccount(newAccount());
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> journal.awaitDurable(offset)).isInstanceOf(LedgerUnavailableException.class);
+            assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(100_000_000L);
+        } finally {
+            journal.close();
+        }
+    }
+
+    private MappedLedgerJournal open(long groupCommitIntervalMs, long durableTimeoutMs) {
+        JournalProperties properties = new JournalProperties();
+        properties.setDirectory(tempDir.toString());
+        properties.setFsyncPolicy(FsyncPolicy.GROUP);
+        properties.setGroupCommitIntervalMs(groupCommitIntervalMs);
+        properties.setDurableTimeoutMs(durableTimeoutMs);
+        properties.setSegmentSize(64 * 1024);
+        MappedLedgerJournal journal = new MappedLedgerJournal(properties);
+        journal.recover(0, record -> {
+        });
+        return journal;
+    }
+
+    private static Account newAccount() {
+        return new Account(UUID.randomUUID(), "account", 100_00, LocalDateTime.now(), 0);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.bankingtransactions.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SplitBalanceTest {
+
+    @Test
+    void updateUnderOneLockOnlyChangesItsSubBalance() {
+        SplitBalance balance = new SplitBalance(4, 100, 0);
+        withLock(balance.lock(2), () -> balance.deposit(30));
+        assertThat(balance.balance(0)).isEqualTo(100);
+        assertThat(balance.balance(2)).isEqualTo(30);
+
+        // Sub-balance 2 only holds 30, even though the account holds 130
+        withLock(balance.lock(2), () -> assertThat(balance.withdraw(40)).isFalse());
+        withLock(balance.lock(2), () -> assertThat(balance.withdraw(30)).isTrue());
+        assertThat(balance.total()).isEqualTo(100);
+    }
+
+    @Test
+    void withdrawalUnderEveryLockSeesTheWholeBalanceAndSpreadsTheRest() {
+        SplitBalance balance = new SplitBalance(4, 100, 0);
+        withLock(balance.lock(1), () -> balance.deposit(3));
+
+        assertThat(withAllLocks(balance, () -> balance.withdraw(104))).isFalse();
+        assertThat(withAllLocks(balance, () -> balance.withdraw(63))).isTrue();
+        assertThat(balance.total()).isEqualTo(40);
+        for (int i = 0; i < balance.size(); i++) {
+            assertThat(balance.balance(i)).isEqualTo(10);
+        }
+    }
+
+    @Test
+    void depositThatWouldOverflowTheTotalIsRefused() {
+        SplitBalance balance = new SplitBalance(2, Long.MAX_VALUE - 10, 0);
+        assertThatThrownBy(() -> withLock(balance.lock(1), () -> balance.deposit(11)))
+                .isInstanceOf(ArithmeticException.class);
+        assertThat(balance.total()).isEqualTo(Long.MAX_VALUE - 10);
+    }
+
+    @Test
+    void journalOffsetIsTheHighestOfTheSubBalances() {
+        SplitBalance balance = new SplitBalance(3, 0, 5);
+        withLock(balance.lock(2), () -> balance.setJournalOffset(42));
+        withLock(balance.lock(1), () -> balance.setJournalOffset(17));
+        assertThat(balance.journalOffset()).isEqualTo(42);
+    }
+
+    @Test
+    void readsNeverSeeATotalTheAccountDidNotHave() throws InterruptedException {
+        // The writer alternates between withdrawing, which rewrites every sub-balance, and depositing the amount
+        // back, so the account only ever holds one of two totals
+        long total = 1_000_003;
+        long amount = 7;
+        SplitBalance balance = new SplitBalance(4, total, 0);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            while (running.get()) {
+                withAllLocks(balance, () -> balance.withdraw(amount));
+                withAllLocks(balance, () -> {
+                    balance.deposit(amount);
+                    return true;
+                });
+            }
+        });
+        writer.start();
+
+        long reads = 0;
+        long deadline = System.nanoTime() + 500_000_000L;
+        try {
+            while (System.nanoTime() < deadline) {
+                assertThat(balance.total()).isIn(total, total - amount);
+                reads++;
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        assertThat(balance.total()).isEqualTo(total);
+        assertThat(reads).isPositive();
+    }
+
+    private static void withLock(ReentrantLock lock, Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean withAllLocks(SplitBalance balance, BooleanSupplier action) {
+        for (int i = 0; i < balance.size(); i++) {
+            balance.lock(i).lock();
+        }
+        try {
+            return action.getAsBoolean();
+        } finally {
+            for (int i = balance.size() - 1; i >= 0; i--) {
+                balance.lock(i).unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.bankingtransactions.service;
+
+import com.example.bankingtransactions.dto.BatchTransferRequest;
+import com.example.bankingtransactions.dto.CreateAccountRequest;
+import com.example.bankingtransactions.dto.DepositRequest;
+import com.example.bankingtransactions.dto.TransferRequest;
+import com.example.bankingtransactions.dto.WithdrawRequest;
+import com.example.bankingtransactions.enums.BatchMode;
+import com.example.bankingtransactions.exception.InsufficientFundsException;
+import com.example.bankingtransactions.model.Account;
+import com.example.bankingtransactions.model.AccountSummary;
+import com.example.bankingtransactions.model.Transaction;
+import com.example.bankingtransactions.repository.AccountRepository;
+import com.example.bankingtransactions.repository.AccountSummaryRepository;
+import com.example.bankingtransactions.repository.TransactionRepository;
+import com.example.bankingtransactions.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs transfers, batches, deposits and withdrawals on many threads against a few accounts, one of them hot, and
+ * checks that no money is created or lost: the total moves only by what was deposited and withdrawn, and every
+ * account's balance agrees with its history and its summary.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "banking.audit.enabled=false",
+        "banking.hot-accounts.ids=" + LedgerConservationTest.HOT_ACCOUNT_ID,
+        "banking.hot-accounts.sub-balances=4"
+})
+class LedgerConservationTest {
+
+    static final String HOT_ACCOUNT_ID = "7b0c2a9e-5d1f-4c3b-9a8e-2f6d4b1c0e7a";
+
+    private static final int ACCOUNTS = 16;
+    private static final long INITIAL_BALANCE = 1_000_00;
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private AccountSummaryRepository accountSummaryRepository;
+
+    @Test
+    void concurrentOperationsConserveMoney() throws Exception {
+        List<UUID> accountIds = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS - 1; i++) {
+            CreateAccountRequest request = new CreateAccountRequest();
+            request.setName("account-" + i);
+            request.setInitialBalance(Money.toBigDecimal(INITIAL_BALANCE));
+            accountIds.add(accountService.createAccount(request).getId());
+        }
+        UUID hotAccountId = UUID.fromString(HOT_ACCOUNT_ID);
+        accountRepository.save(new Account(hotAccountId, "hot", INITIAL_BALANCE, LocalDateTime.now(), 0));
+        accountSummaryRepository.open(hotAccountId, INITIAL_BALANCE);
+        accountIds.add(hotAccountId);
+        assertThat(accountRepository.findById(hotAccountId).orElseThrow().getSplitBalance()).isNotNull();
+
+        AtomicLong netDeposits = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                SplittableRandom random = new SplittableRandom(t);
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        runRandomOperation(random, accountIds, netDeposits);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long total = 0;
+        for (UUID accountId : accountIds) {
+            long balance = accountRepository.findById(accountId).orElseThrow().getBalance();
+            assertThat(balance).as("balance of %s", accountId).isNotNegative();
+            assertThat(balance - INITIAL_BALANCE).as("change in balance of %s", accountId)
+                    .isEqualTo(netChangeInHistory(accountId))
+                    .isEqualTo(netChangeInSummary(accountId));
+            total += balance;
+        }
+        assertThat(total).isEqualTo(ACCOUNTS * INITIAL_BALANCE + netDeposits.get());
+    }
+
+    private void runRandomOperation(SplittableRandom random, List<UUID> accountIds, AtomicLong netDeposits) {
+        int operation = random.nextInt(10);
+        long amount = 1 + random.nextLong(100_00);
+        try {
+            if (operation < 6) {
+                UUID[] pair = randomPair(random, accountIds);
+                accountService.transferFunds(transfer(pair[0], pair[1], amount));
+            } else if (operation < 8) {
+                BatchTransferRequest batch = new BatchTransferRequest();
+                batch.setMode(operation == 6 ? BatchMode.BEST_EFFORT : BatchMode.ALL_OR_NOTHING);
+                List<TransferRequest> transfers = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    UUID[] pair = randomPair(random, accountIds);
+                    transfers.add(transfer(pair[0], pair[1], 1 + random.nextLong(10_00)));
+                }
+                batch.setTransfers(transfers);
+                accountService.transferBatch(batch);
+            } else if (operation == 8) {
+                DepositRequest deposit = new DepositRequest();
+                deposit.setToAccountId(accountIds.get(random.nextInt(accountIds.size())));
+                deposit.setAmount(Money.toBigDecimal(amount));
+                accountService.depositFunds(deposit);
+                netDeposits.addAndGet(amount);
+            } else {
+                WithdrawRequest withdrawal = new WithdrawRequest();
+                withdrawal.setFromAccountId(accountIds.get(random.nextInt(accountIds.size())));
+                withdrawal.setAmount(Money.toBigDecimal(amount));
+                accountService.withdrawFunds(withdrawal);
+                netDeposits.addAndGet(-amount);
+            }
+        } catch (InsufficientFundsException e) {
+            // Expected once balances run low
+        }
+    }
+
+    // Two distinct accounts, the hot one in about half of the pairs
+    private static UUID[] randomPair(SplittableRandom random, List<UUID> accountIds) {
+        int last = accountIds.size() - 1;
+        int from = random.nextBoolean() ? last : random.nextInt(accountIds.size());
+        int to = random.nextInt(last);
+        return new UUID[]{accountIds.get(from), accountIds.get(to >= from ? to + 1 : to)};
+    }
+
+    private static TransferRequest transfer(UUID from, UUID to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountId(from);
+        request.setToAccountId(to);
+        request.setAmount(Money.toBigDecimal(amount));
+        request.setDescription("conservation test");
+        return request;
+    }
+
+    private long netChangeInHistory(UUID accountId) {
+        long change = 0;
+        List<Transaction> history = transactionRepository.findTransactionsByAccountId(accountId);
+        for (Transaction transaction : history == null ? List.<Transaction>of() : history) {
+            if (accountId.equals(transaction.getToAccountId())) {
+                change += transaction.getAmount();
+            }
+            if (accountId.equals(transaction.getFromAccountId())) {
+                change -= transaction.getAmount();
+            }
+        }
+        return change;
+    }
+
+    private long netChangeInSummary(UUID accountId) {
+        AccountSummary summary = accountSummaryRepository.findById(accountId)
+                .orElseGet(() -> new AccountSummary(accountId));
+        return summary.getTotalDeposited() - summary.getTotalWithdrawn() + summary.getTotalTransferredIn()
+                - summary.getTotalTransferredOut();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bankingtransactions.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * The conservation test against the partitioned single-writer engine.
+ */
+@TestPropertySource(properties = {"banking.engine.mode=PARTITIONED", "banking.engine.partitions=4"})
+class PartitionedLedgerConservationTest extends LedgerConservationTest {
+}